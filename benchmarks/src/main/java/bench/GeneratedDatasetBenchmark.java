@@ -0,0 +1,136 @@
+package bench;
+
+import classifier.BatchScorer;
+import classifier.NaiveBayesModel;
+import classifier.NaiveBayesTrainer;
+import data.ColumnInfo;
+import data.EncodedDataset;
+import org.openjdk.jmh.annotations.*;
+import validation.ConfusionMatrix;
+import validation.CrossValidator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Training, scoring and cross validation on a generated dataset far bigger than the bundled ones. JMH crosses every
+ * value of every param, so each shape of dataset that has to stay within EncodedDataset.cellCount gets a subclass
+ * giving its own params (see SyntheticBenchmark and WideSyntheticBenchmark)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public abstract class GeneratedDatasetBenchmark {
+    //the params of the subclass, read once the trial starts
+    private int row_count;
+    private EncodedDataset data;
+    private int[] all_rows;
+    private int[] predictions;
+    private BatchScorer scorer;
+    private ForkJoinPool pool;
+    /**
+     * @return amount of rows to generate
+     */
+    protected abstract int rows();
+    /**
+     * @return amount of feature columns to generate
+     */
+    protected abstract int features();
+    /**
+     * @return amount of values each feature has
+     */
+    protected abstract int cardinality();
+    /**
+     * @return amount of classes
+     */
+    protected abstract int classes();
+    @Setup(Level.Trial)
+    public void setup(){
+        this.row_count = rows();
+        this.data = generate(this.row_count,features(),cardinality(),classes(),42);
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(this.data);
+        trainer.addAll(this.data);
+        this.scorer = new BatchScorer(trainer.build());
+        this.all_rows = new int[this.row_count];
+        for(int x = 0;x<this.row_count;x++){
+            this.all_rows[x] = x;
+        }
+        this.predictions = new int[this.row_count];
+        this.pool = new ForkJoinPool();
+    }
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        this.pool.shutdown();
+    }
+    @Benchmark
+    public NaiveBayesModel train(){
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(this.data);
+        trainer.addAll(this.data);
+        return trainer.build();
+    }
+    @Benchmark
+    public int[] score(){
+        this.scorer.score(this.data,this.all_rows,0,this.row_count,this.predictions,null);
+        return this.predictions;
+    }
+    @Benchmark
+    public ConfusionMatrix crossValidate(){
+        CrossValidator validator = new CrossValidator(10,this.pool);
+        //the same split every time, so the engines being compared do the same work
+        validator.setSeed(1);
+        return validator.run(this.data);
+    }
+    @Benchmark
+    public ConfusionMatrix crossValidateIncremental(){
+        CrossValidator validator = new CrossValidator(10,this.pool);
+        validator.setSeed(1);
+        validator.setIncremental(true);
+        return validator.run(this.data);
+    }
+    /**
+     * Make a dataset straight in encoded form, where each feature leans towards a value picked by the class so there
+     * is something to learn
+     * @param rows amount of rows
+     * @param features amount of feature columns, the class column comes after them
+     * @param cardinality amount of values each feature has
+     * @param classes amount of classes
+     * @param seed seed of the random values
+     * @return the generated dataset
+     */
+    static EncodedDataset generate(int rows, int features, int cardinality, int classes, long seed){
+        //every code lives in one array, so the dataset has to fit in one
+        int cells = EncodedDataset.cellCount(rows,features + 1);
+        StringBuilder header = new StringBuilder();
+        for(int x = 0;x<features;x++){
+            header.append("f").append(x).append(",");
+        }
+        header.append("class");
+        ColumnInfo[] columns = ColumnInfo.parseHeader(header.toString(),4);
+        for(int x = 0;x<features;x++){
+            for(int value = 0;value<cardinality;value++){
+                columns[x].getDictionary().encode(String.valueOf(value));
+            }
+        }
+        for(int value = 0;value<classes;value++){
+            columns[features].getDictionary().encode("c" + value);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] codes = new int[cells];
+        int class_start = features * rows;
+        for(int row = 0;row<rows;row++){
+            codes[class_start + row] = random.nextInt(classes);
+        }
+        for(int x = 0;x<features;x++){
+            for(int row = 0;row<rows;row++){
+                int class_code = codes[class_start + row];
+                //half the time the value the class leans towards, otherwise anything
+                boolean lean = random.nextInt(2) == 0;
+                codes[x * rows + row] = lean ? (class_code + x) % cardinality : random.nextInt(cardinality);
+            }
+        }
+        return new EncodedDataset(columns,features,rows,codes,"?");
+    }
+}
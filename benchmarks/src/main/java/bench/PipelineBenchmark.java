@@ -0,0 +1,131 @@
+package bench;
+
+import classifier.BatchScorer;
+import classifier.NaiveBayesModel;
+import classifier.NaiveBayesTrainer;
+import data.CsvChunkReader;
+import data.DatasetEncoder;
+import data.EncodedDataset;
+import org.openjdk.jmh.annotations.*;
+import util.FileReader;
+import validation.ConfusionMatrix;
+import validation.CrossValidator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each stage of the pipeline Application runs, on the datasets bundled under resources/data
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    @Param({"breast-cancer/breast-cancer-wisconsin.csv", "glass/glass.csv", "iris/iris.csv",
+            "soybean/soybean-small.csv", "voting-records/house-votes-84.csv"})
+    public String dataset;
+    private String missing_value_designation;
+    private ArrayList<String> file;
+    private byte[] file_bytes;
+    //imputed and binned, ready to train on
+    private EncodedDataset prepared;
+    private NaiveBayesModel model;
+    private int[] all_rows;
+    private int[] predictions;
+    private BatchScorer scorer;
+    private ForkJoinPool pool;
+    @Setup(Level.Trial)
+    public void setup() throws IOException{
+        //same missing value designations Main uses
+        this.missing_value_designation = this.dataset.startsWith("voting-records") ? "" : "?";
+        String path = "data/" + this.dataset;
+        this.file = new FileReader(getClass().getClassLoader().getResourceAsStream(path)).getFileContentsAsArrayList();
+        this.file_bytes = (String.join("\n",this.file) + "\n").getBytes("UTF-8");
+        this.prepared = prepare();
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(this.prepared);
+        trainer.addAll(this.prepared);
+        this.model = trainer.build();
+        this.all_rows = new int[this.prepared.getRows()];
+        for(int x = 0;x<this.all_rows.length;x++){
+            this.all_rows[x] = x;
+        }
+        this.predictions = new int[this.all_rows.length];
+        this.scorer = new BatchScorer(this.model);
+        this.pool = new ForkJoinPool();
+    }
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        this.pool.shutdown();
+    }
+    /**
+     * Encoded copy of the file, fresh for every invocation since imputing and binning change the dataset in place
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+        EncodedDataset data;
+        @Setup(Level.Invocation)
+        public void setup(PipelineBenchmark benchmark){
+            this.data = DatasetEncoder.encode(benchmark.file,benchmark.missing_value_designation,4);
+        }
+    }
+    @Benchmark
+    public EncodedDataset encodeLines(){
+        return DatasetEncoder.encode(this.file,this.missing_value_designation,4);
+    }
+    @Benchmark
+    public EncodedDataset encodeStream() throws IOException{
+        InputStream input = new ByteArrayInputStream(this.file_bytes);
+        return CsvChunkReader.readAll(input,this.missing_value_designation,4);
+    }
+    @Benchmark
+    public EncodedDataset imputeMissing(Fresh fresh){
+        fresh.data.imputeMissing();
+        return fresh.data;
+    }
+    @Benchmark
+    public EncodedDataset binContinuousValues(Fresh fresh){
+        fresh.data.binContinuousValues();
+        return fresh.data;
+    }
+    @Benchmark
+    public NaiveBayesModel train(){
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(this.prepared);
+        trainer.addAll(this.prepared);
+        return trainer.build();
+    }
+    @Benchmark
+    public int[] score(){
+        this.scorer.score(this.prepared,this.all_rows,0,this.all_rows.length,this.predictions,null);
+        return this.predictions;
+    }
+    @Benchmark
+    public ConfusionMatrix crossValidate(){
+        CrossValidator validator = new CrossValidator(10,this.pool);
+        //the same split every time, so the engines being compared do the same work
+        validator.setSeed(1);
+        return validator.run(this.prepared);
+    }
+    @Benchmark
+    public ConfusionMatrix crossValidateIncremental(){
+        CrossValidator validator = new CrossValidator(10,this.pool);
+        validator.setSeed(1);
+        validator.setIncremental(true);
+        return validator.run(this.prepared);
+    }
+    /**
+     * @return the file encoded, imputed and binned the same way Application does it
+     */
+    private EncodedDataset prepare(){
+        EncodedDataset data = DatasetEncoder.encode(this.file,this.missing_value_designation,4);
+        data.imputeMissing();
+        data.binContinuousValues();
+        return data;
+    }
+}
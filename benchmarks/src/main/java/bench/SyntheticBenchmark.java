@@ -0,0 +1,38 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generated datasets with many rows and up to a thousand features. The defaults keep a run to a few GB of heap, bigger
+ * sizes can be given on the command line, ex. -p rows=100000000 -p features=10, as long as rows * (features + 1) stays
+ * within Integer.MAX_VALUE cells
+ */
+@State(Scope.Benchmark)
+public class SyntheticBenchmark extends GeneratedDatasetBenchmark {
+    @Param({"1000000"})
+    public int rows;
+    @Param({"10", "100", "1000"})
+    public int features;
+    @Param({"8"})
+    public int cardinality;
+    @Param({"4"})
+    public int classes;
+    @Override
+    protected int rows(){
+        return this.rows;
+    }
+    @Override
+    protected int features(){
+        return this.features;
+    }
+    @Override
+    protected int cardinality(){
+        return this.cardinality;
+    }
+    @Override
+    protected int classes(){
+        return this.classes;
+    }
+}
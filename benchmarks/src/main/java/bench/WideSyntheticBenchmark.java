@@ -0,0 +1,37 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generated datasets with ten thousand features. Every code lives in one array, so rows * (features + 1) has to stay
+ * within Integer.MAX_VALUE cells, which for 10^4 features is at most about 214000 rows
+ */
+@State(Scope.Benchmark)
+public class WideSyntheticBenchmark extends GeneratedDatasetBenchmark {
+    @Param({"100000"})
+    public int rows;
+    @Param({"10000"})
+    public int features;
+    @Param({"8"})
+    public int cardinality;
+    @Param({"4"})
+    public int classes;
+    @Override
+    protected int rows(){
+        return this.rows;
+    }
+    @Override
+    protected int features(){
+        return this.features;
+    }
+    @Override
+    protected int cardinality(){
+        return this.cardinality;
+    }
+    @Override
+    protected int classes(){
+        return this.classes;
+    }
+}
@@ -0,0 +1,798 @@
+import classifier.BatchScorer;
+import classifier.EventModel;
+import classifier.ModelFile;
+import classifier.NaiveBayesModel;
+import classifier.NaiveBayesTrainer;
+import classifier.Predictor;
+import classifier.SparseNaiveBayesTrainer;
+import classifier.SparseScorer;
+import data.ColumnDictionary;
+import data.ColumnInfo;
+import data.DatasetEncoder;
+import data.DatasetGenerator;
+import data.EncodedDataset;
+import data.ImputeStrategy;
+import data.Imputer;
+import data.MappedCsvLoader;
+import data.TextColumnReader;
+import data.TextHasher;
+import distributed.LocalClusterTrainer;
+import serving.ScoringServer;
+import validation.ConfusionMatrix;
+import validation.CrossValidator;
+import validation.ImportanceReport;
+import validation.PermutationImportance;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the classifier without the menu, so it can be scripted and used in pipelines. Options apply to every file given
+ * after them, so one run (and one JVM start) can handle several datasets with different settings, ex.
+ * "cv --folds 10 glass.csv iris.csv --missing '' house-votes-84.csv". A file of "-" is read from standard input.
+ * Results go to standard output as csv, anything else goes to standard error
+ */
+public class CommandLine {
+    private static final String USAGE = String.join("\n",
+            "Usage:",
+            "  train <data> <model>     train on a csv file and save the model",
+            "  cv <data>...             cross validate on each csv file",
+            "  score <model> [data]     write the predicted class of each line, reading standard input by default",
+            "  bench <data>...          time loading, preparing, training, scoring and cross validating each file",
+            "  serve <model>            serve the model over http on this machine",
+            "  importance <data>...     drop in cross validated accuracy when each feature is shuffled",
+            "  generate <data>          write a made up csv file, to standard output for -",
+            "  text <data>...           train on the hashed words of a text column, holding out every --folds th row",
+            "Options, applying to the files after them:",
+            "  --missing <value>        value used to indicate a missing value (default ?)",
+            "  --bins <count>           bins to use when a header says !bin without a count (default 4)",
+            "  --impute <strategy>      mean (default), median, mode or class_mode (train only) for !impute columns",
+            "  --skip-missing           leave missing values out of the likelihood instead of imputing them",
+            "  --threads <count>        threads to use (default the amount of cores)",
+            "  --folds <count>          folds to cross validate with (default 10)",
+            "  --seed <seed>            seed of the fold split, shuffles and generated rows, so a run can be repeated",
+            "  --incremental            cross validate by taking each fold out of one global count",
+            "  --sparse                 cross validate storing only the cells that differ from their column's default",
+            "  --workers <count>        train with this many worker processes instead of threads",
+            "  --repeat <count>         times to run each benchmark or shuffle each feature (default 5), or to split",
+            "                           the folds differently for cv, adding up every split (default 1)",
+            "  --posteriors             also write P(class|row) of every class when scoring",
+            "  --no-header              the data to score has no header line (by default it is skipped if present)",
+            "  --port <port>            port to serve on (default 8080)",
+            "  --rows <count>           rows to generate (default 1000)",
+            "  --features <count>       feature columns to generate (default 10)",
+            "  --classes <count>        classes to generate (default 2)",
+            "  --cardinality <count>    values of each generated discrete feature (default 10)",
+            "  --continuous <count>     how many of the generated features are continuous (default 0)",
+            "  --imbalance <ratio>      each generated class is this many times as likely as the last (default 1)",
+            "  --missing-rate <rate>    fraction of generated feature cells that are missing (default 0)",
+            "  --signal <strength>      how much generated features lean towards their class, 0 to 1 (default 0.5)",
+            "  --text-column <name>     column holding the text for text (default text)",
+            "  --event-model <model>    multinomial (word counts, default) or bernoulli (words present) for text",
+            "  --bits <count>           hash the words of text into 2^bits features, 1 to 30 (default 20)");
+    private InputStream in;
+    private PrintStream out;
+    private PrintStream err;
+    /**
+     * Arguments that don't make sense, as opposed to data that can't be read, so the usage gets printed
+     */
+    private static class UsageException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private UsageException(String message){
+            super(message);
+        }
+    }
+    /**
+     * Settings from the options, each file keeps a copy of the settings given before it
+     */
+    private static class Settings {
+        private String missing_value_designation = "?";
+        private int bins = 4;
+        private ImputeStrategy impute = ImputeStrategy.MEAN;
+        private boolean skip_missing = false;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int folds = 10;
+        private Long seed = null;
+        private boolean incremental = false;
+        private boolean sparse = false;
+        private int workers = 0;
+        //null until given, since each command has its own default
+        private Integer repeat = null;
+        private boolean posteriors = false;
+        private boolean header = true;
+        private int port = 8080;
+        private long rows = 1000;
+        private int features = 10;
+        private int classes = 2;
+        private int cardinality = 10;
+        private int continuous = 0;
+        private double imbalance = 1.0;
+        private double missing_rate = 0.0;
+        private double signal = 0.5;
+        private String text_column = "text";
+        private EventModel event_model = EventModel.MULTINOMIAL;
+        private int bits = 20;
+        private Settings copy(){
+            Settings copy = new Settings();
+            copy.missing_value_designation = this.missing_value_designation;
+            copy.bins = this.bins;
+            copy.impute = this.impute;
+            copy.skip_missing = this.skip_missing;
+            copy.threads = this.threads;
+            copy.folds = this.folds;
+            copy.seed = this.seed;
+            copy.incremental = this.incremental;
+            copy.sparse = this.sparse;
+            copy.workers = this.workers;
+            copy.repeat = this.repeat;
+            copy.posteriors = this.posteriors;
+            copy.header = this.header;
+            copy.port = this.port;
+            copy.rows = this.rows;
+            copy.features = this.features;
+            copy.classes = this.classes;
+            copy.cardinality = this.cardinality;
+            copy.continuous = this.continuous;
+            copy.imbalance = this.imbalance;
+            copy.missing_rate = this.missing_rate;
+            copy.signal = this.signal;
+            copy.text_column = this.text_column;
+            copy.event_model = this.event_model;
+            copy.bits = this.bits;
+            return copy;
+        }
+    }
+    /**
+     * @param in where "-" is read from
+     * @param out where results go
+     * @param err where messages go
+     */
+    public CommandLine(InputStream in, PrintStream out, PrintStream err){
+        this.in = in;
+        this.out = out;
+        this.err = err;
+    }
+    /**
+     * @param args the command followed by its options and files
+     * @return the exit code, 0 on success, 1 if something failed and 2 if the arguments were wrong
+     */
+    public int run(String[] args){
+        try{
+            if(args.length == 0){
+                throw new UsageException("No command given");
+            }
+            ArrayList<String> files = new ArrayList<>();
+            ArrayList<Settings> settings = new ArrayList<>();
+            parseArguments(args,files,settings);
+            switch(args[0]){
+                case "train":
+                    requireFiles(files,2,2);
+                    train(files.get(0),Paths.get(files.get(1)),settings.get(0));
+                    break;
+                case "cv":
+                    requireFiles(files,1,Integer.MAX_VALUE);
+                    this.out.println("file,folds,right,wrong,accuracy");
+                    for(int x = 0;x<files.size();x++){
+                        crossValidate(files.get(x),settings.get(x));
+                    }
+                    break;
+                case "score":
+                    requireFiles(files,1,2);
+                    score(Paths.get(files.get(0)),files.size() > 1 ? files.get(1) : "-",settings.get(0));
+                    break;
+                case "bench":
+                    requireFiles(files,1,Integer.MAX_VALUE);
+                    this.out.println("file,iteration,rows,load_ms,prepare_ms,train_ms,score_ms,cv_ms");
+                    for(int x = 0;x<files.size();x++){
+                        bench(files.get(x),settings.get(x));
+                    }
+                    break;
+                case "importance":
+                    requireFiles(files,1,Integer.MAX_VALUE);
+                    this.out.println("file,column,name,baseline_accuracy,mean_drop,drop_deviation");
+                    for(int x = 0;x<files.size();x++){
+                        importance(files.get(x),settings.get(x));
+                    }
+                    break;
+                case "serve":
+                    requireFiles(files,1,1);
+                    serve(Paths.get(files.get(0)),settings.get(0));
+                    break;
+                case "generate":
+                    requireFiles(files,1,1);
+                    generate(files.get(0),settings.get(0));
+                    break;
+                case "text":
+                    requireFiles(files,1,Integer.MAX_VALUE);
+                    this.out.println("file,event_model,train_rows,test_rows,right,wrong,accuracy");
+                    for(int x = 0;x<files.size();x++){
+                        text(files.get(x),settings.get(x));
+                    }
+                    break;
+                default:
+                    throw new UsageException("Unknown command " + args[0]);
+            }
+            this.out.flush();
+            return 0;
+        }catch(UsageException e){
+            this.err.println(e.getMessage());
+            this.err.println(USAGE);
+            return 2;
+        }catch(IOException | RuntimeException e){
+            this.err.println("Failed: " + e);
+            return 1;
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+    /**
+     * Train on a file and save the model
+     * @param file path of the csv file, or "-" for standard input
+     * @param model_path where to save the model
+     * @param settings the settings of the file
+     * @throws IOException if the file can't be read or the model can't be written
+     */
+    private void train(String file, Path model_path, Settings settings) throws IOException{
+        long start = System.nanoTime();
+        NaiveBayesTrainer trainer;
+        if(settings.workers > 0 && !file.equals("-")){
+            //the workers impute and bin their own rows with the summary merged over every worker
+            if(settings.impute != ImputeStrategy.MEAN || settings.skip_missing){
+                throw new UsageException("--workers only imputes with the mean");
+            }
+            trainer = new LocalClusterTrainer(settings.workers).train(Paths.get(file),
+                    settings.missing_value_designation,settings.bins);
+        }else{
+            EncodedDataset data = load(file,settings);
+            trainer = new NaiveBayesTrainer(data);
+            trainer.addAll(data);
+            if(settings.skip_missing){
+                trainer.setSkipMissing(data.getMissingValueDesignation());
+            }
+        }
+        ModelFile.write(trainer.build(),model_path);
+        this.err.println("Trained on " + trainer.getRowCount() + " rows in " + millis(start) + " ms, saved to "
+                + model_path);
+    }
+    /**
+     * Cross validate on a file, writing a line of results
+     * @param file path of the csv file, or "-" for standard input
+     * @param settings the settings of the file
+     * @throws IOException if the file can't be read
+     */
+    private void crossValidate(String file, Settings settings) throws IOException{
+        if(settings.sparse && settings.skip_missing){
+            throw new UsageException("--sparse can't be used with --skip-missing");
+        }
+        EncodedDataset data = load(file,settings);
+        requireNoClassMode(data,settings);
+        ForkJoinPool pool = new ForkJoinPool(settings.threads);
+        try{
+            CrossValidator validator = crossValidator(settings,pool);
+            //repeated k fold
+            validator.setRepeats(repeat(settings,1));
+            ConfusionMatrix result = settings.sparse ? validator.runSparse(data) : validator.run(data);
+            this.out.println(file + "," + settings.folds + "," + result.getRight() + "," + result.getWrong() + ","
+                    + String.format(Locale.ROOT,"%2.2f",result.getAccuracy() * 100.0));
+        }finally{
+            pool.shutdown();
+        }
+    }
+    /**
+     * Work out how much each feature of a file matters, writing a line per feature
+     * @param file path of the csv file, or "-" for standard input
+     * @param settings the settings of the file
+     * @throws IOException if the file can't be read
+     */
+    private void importance(String file, Settings settings) throws IOException{
+        EncodedDataset data = load(file,settings);
+        requireNoClassMode(data,settings);
+        ForkJoinPool pool = new ForkJoinPool(settings.threads);
+        try{
+            //the shuffles carry on from the validator's stream, so --seed covers them too
+            PermutationImportance importance = new PermutationImportance(crossValidator(settings,pool),
+                    repeat(settings,5));
+            ImportanceReport report = importance.run(data);
+            for(int column = 0;column<report.getColumnCount();column++){
+                if(column == report.getClassIndex()){
+                    continue;
+                }
+                this.out.println(file + "," + column + "," + report.getColumnName(column) + ","
+                        + String.format(Locale.ROOT,"%.4f,%.4f,%.4f",report.getBaselineAccuracy(),
+                        report.getMeanDrop(column),report.getDropDeviation(column)));
+            }
+        }finally{
+            pool.shutdown();
+        }
+    }
+    /**
+     * Write the predicted class of each line, as soon as the line has been read
+     * @param model_path path of a saved model
+     * @param file path of the csv file, or "-" for standard input
+     * @param settings the settings of the file
+     * @throws IOException if the model or file can't be read
+     */
+    private void score(Path model_path, String file, Settings settings) throws IOException{
+        NaiveBayesModel model = ModelFile.read(model_path);
+        Predictor predictor = new Predictor(model,settings.missing_value_designation);
+        double[] posteriors = settings.posteriors ? new double[predictor.getClassCount()] : null;
+        Writer output = new BufferedWriter(new OutputStreamWriter(this.out,StandardCharsets.UTF_8),1 << 16);
+        if(settings.posteriors){
+            output.write("class");
+            for(int class_code = 0;class_code<predictor.getClassCount();class_code++){
+                output.write("," + predictor.className(class_code));
+            }
+            output.write('\n');
+        }
+        try(BufferedReader input = open(file)){
+            String line;
+            boolean first = true;
+            while((line = input.readLine()) != null){
+                if(line.endsWith("\r")){
+                    line = line.substring(0,line.length() - 1);
+                }
+                if(first){
+                    first = false;
+                    if(settings.header && isHeader(line,model.getColumns())){
+                        continue;
+                    }
+                }
+                if(line.isEmpty()){
+                    continue;
+                }
+                int prediction = predictor.predict(line.split(",",-1),posteriors);
+                output.write(predictor.className(prediction));
+                if(posteriors != null){
+                    for(double posterior : posteriors){
+                        output.write(",");
+                        output.write(Double.toString(posterior));
+                    }
+                }
+                output.write('\n');
+                //flush before waiting on more input, so a pipeline gets each prediction as soon as it asked for it
+                if(!input.ready()){
+                    output.flush();
+                }
+            }
+        }
+        output.flush();
+    }
+    /**
+     * Time each stage of the pipeline on a file, writing a line per repeat
+     * @param file path of the csv file
+     * @param settings the settings of the file
+     * @throws IOException if the file can't be read
+     */
+    private void bench(String file, Settings settings) throws IOException{
+        if(file.equals("-")){
+            throw new UsageException("bench needs a file it can read more than once");
+        }
+        ForkJoinPool pool = new ForkJoinPool(settings.threads);
+        try{
+            for(int iteration = 0;iteration<repeat(settings,5);iteration++){
+                long start = System.nanoTime();
+                EncodedDataset data = new MappedCsvLoader(pool).load(Paths.get(file),
+                        settings.missing_value_designation,settings.bins);
+                long loaded = System.nanoTime();
+                prepare(data,settings,pool);
+                long prepared = System.nanoTime();
+                NaiveBayesTrainer trainer = new NaiveBayesTrainer(data);
+                trainer.addAll(data);
+                if(settings.skip_missing){
+                    trainer.setSkipMissing(data.getMissingValueDesignation());
+                }
+                NaiveBayesModel model = trainer.build();
+                long trained = System.nanoTime();
+                int[] rows = new int[data.getRows()];
+                for(int row = 0;row<rows.length;row++){
+                    rows[row] = row;
+                }
+                new BatchScorer(model).score(data,rows,0,rows.length,new int[rows.length],null);
+                long scored = System.nanoTime();
+                crossValidator(settings,pool).run(data);
+                long validated = System.nanoTime();
+                this.out.println(file + "," + iteration + "," + data.getRows() + "," + millis(start,loaded) + ","
+                        + millis(loaded,prepared) + "," + millis(prepared,trained) + "," + millis(trained,scored)
+                        + "," + millis(scored,validated));
+            }
+        }finally{
+            pool.shutdown();
+        }
+    }
+    /**
+     * Serve a model until the process is stopped
+     * @param model_path path of a saved model
+     * @param settings the settings of the model
+     * @throws IOException if the model can't be read or the port can't be listened on
+     * @throws InterruptedException if interrupted while serving
+     */
+    private void serve(Path model_path, Settings settings) throws IOException, InterruptedException{
+        int cores = Runtime.getRuntime().availableProcessors();
+        ScoringServer server = new ScoringServer(ModelFile.read(model_path),settings.missing_value_designation,
+                settings.port,settings.threads * 4,Math.max(1,cores / 2),1024,0);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        this.err.println("Serving " + model_path + " on http://localhost:" + server.getPort());
+        Thread.currentThread().join();
+    }
+    /**
+     * Write a made up csv file, a row at a time so it can be bigger than memory
+     * @param file where to write the csv file, or "-" for standard output
+     * @param settings the settings of the file
+     * @throws IOException if the file can't be written
+     */
+    private void generate(String file, Settings settings) throws IOException{
+        DatasetGenerator generator;
+        try{
+            generator = new DatasetGenerator(settings.rows,settings.features,settings.classes,
+                    settings.seed == null ? 0 : settings.seed);
+            generator.setCardinality(settings.cardinality);
+            generator.setContinuousFeatures(settings.continuous);
+            generator.setClassImbalance(settings.imbalance);
+            generator.setMissingRate(settings.missing_rate);
+            generator.setMissingValueDesignation(settings.missing_value_designation);
+            generator.setSignal(settings.signal);
+        }catch(IllegalArgumentException e){
+            //every setting comes from an option
+            throw new UsageException(e.getMessage());
+        }
+        if(file.equals("-")){
+            generator.write(this.out);
+            return;
+        }
+        try(OutputStream output = Files.newOutputStream(Paths.get(file))){
+            generator.write(output);
+        }
+    }
+    /**
+     * Count the hashed words of a text column a line at a time, so memory only depends on the amount of buckets, then
+     * score the held out lines in a second pass over the file and write a line with the accuracy
+     * @param file path of the csv file
+     * @param settings the settings of the file, every folds th line is held out
+     * @throws IOException if the file can't be read
+     */
+    private void text(String file, Settings settings) throws IOException{
+        if(file.equals("-")){
+            throw new UsageException("text needs a file it can read more than once");
+        }
+        if(settings.folds < 2){
+            throw new UsageException("text needs at least 2 --folds to hold rows out");
+        }
+        TextHasher hasher = new TextHasher(settings.bits);
+        SparseNaiveBayesTrainer trainer = new SparseNaiveBayesTrainer(hasher.getFeatureCount(),new ColumnDictionary(),
+                settings.event_model);
+        try(BufferedReader input = open(file)){
+            TextColumnReader reader = new TextColumnReader(input,settings.text_column);
+            while(reader.next()){
+                if((reader.getRows() - 1) % settings.folds != 0){
+                    //tokenize first, it may swap in bigger arrays
+                    int cells = hasher.tokenize(reader.getText());
+                    trainer.addRow(reader.getClassValue(),hasher.getIndexes(),hasher.getValues(),cells);
+                }
+            }
+        }
+        SparseScorer scorer = new SparseScorer(trainer.build());
+        long right = 0;
+        long wrong = 0;
+        try(BufferedReader input = open(file)){
+            TextColumnReader reader = new TextColumnReader(input,settings.text_column);
+            while(reader.next()){
+                if((reader.getRows() - 1) % settings.folds == 0){
+                    int cells = hasher.tokenize(reader.getText());
+                    int prediction = scorer.predict(hasher.getIndexes(),hasher.getValues(),0,cells,null);
+                    if(scorer.getModel().className(prediction).equals(reader.getClassValue())){
+                        right++;
+                    }else{
+                        wrong++;
+                    }
+                }
+            }
+        }
+        this.out.println(file + "," + settings.event_model.name().toLowerCase(Locale.ROOT) + ","
+                + trainer.getRowCount() + "," + (right + wrong) + "," + right + "," + wrong + ","
+                + String.format(Locale.ROOT,"%2.2f",right + wrong == 0 ? 0.0 : right * 100.0 / (right + wrong)));
+    }
+    /**
+     * Load a file, impute its missing values and bin its continuous columns
+     * @param file path of the csv file, or "-" for standard input
+     * @param settings the settings of the file
+     * @return the dataset, ready to train on
+     * @throws IOException if the file can't be read
+     */
+    private EncodedDataset load(String file, Settings settings) throws IOException{
+        ForkJoinPool pool = new ForkJoinPool(settings.threads);
+        try{
+            EncodedDataset data;
+            if(file.equals("-")){
+                try(BufferedReader input = open(file)){
+                    String header = input.readLine();
+                    if(header == null){
+                        throw new IOException("Standard input has no header");
+                    }
+                    DatasetEncoder encoder = new DatasetEncoder(header,settings.missing_value_designation,
+                            settings.bins);
+                    String line;
+                    while((line = input.readLine()) != null){
+                        if(!line.isEmpty()){
+                            encoder.addLine(line);
+                        }
+                    }
+                    data = encoder.build();
+                }
+            }else{
+                data = new MappedCsvLoader(pool).load(Paths.get(file),settings.missing_value_designation,
+                        settings.bins);
+            }
+            prepare(data,settings,pool);
+            return data;
+        }finally{
+            pool.shutdown();
+        }
+    }
+    /**
+     * Impute the missing values of a dataset with the strategy of the settings, unless they are skipped, and bin its
+     * continuous columns
+     * @param data the dataset, changed in place
+     * @param settings the settings of the file
+     * @param pool the pool big columns are imputed on
+     */
+    private static void prepare(EncodedDataset data, Settings settings, ForkJoinPool pool){
+        if(!settings.skip_missing){
+            Imputer imputer = new Imputer(pool);
+            imputer.setStrategy(settings.impute);
+            imputer.impute(data);
+        }
+        data.binContinuousValues();
+    }
+    /**
+     * The class mode fills each missing cell from the row's own class, and the whole file is imputed before it is split
+     * into folds, so the held out rows would be imputed from the labels they are scored against
+     * @param data the dataset to validate
+     * @param settings the settings of the file
+     */
+    private static void requireNoClassMode(EncodedDataset data, Settings settings){
+        if(settings.skip_missing){
+            return;
+        }
+        for(int column = 0;column<data.getColumnCount();column++){
+            ColumnInfo info = data.getColumn(column);
+            if(!info.shouldImpute() || column == data.getClassIndex()){
+                continue;
+            }
+            if(info.getImputeStrategy() == ImputeStrategy.CLASS_MODE){
+                throw new IllegalArgumentException(info.getName()
+                        + " is imputed with the class mode, which leaks the labels of the held out rows");
+            }
+            if(info.getImputeStrategy() == null && settings.impute == ImputeStrategy.CLASS_MODE){
+                throw new UsageException("--impute class_mode leaks the labels of the held out rows, "
+                        + "only train can use it");
+            }
+        }
+    }
+    /**
+     * @param file path of a file, or "-" for standard input
+     * @return a reader of the file
+     * @throws IOException if the file can't be opened
+     */
+    private BufferedReader open(String file) throws IOException{
+        if(file.equals("-")){
+            return new BufferedReader(new InputStreamReader(this.in,StandardCharsets.UTF_8),1 << 16);
+        }
+        return Files.newBufferedReader(Paths.get(file),StandardCharsets.UTF_8);
+    }
+    /**
+     * @param settings the settings to use
+     * @param pool the pool to run folds on
+     * @return a cross validator set up with the settings
+     */
+    private static CrossValidator crossValidator(Settings settings, ForkJoinPool pool){
+        CrossValidator validator = new CrossValidator(settings.folds,pool);
+        validator.setIncremental(settings.incremental);
+        validator.setSkipMissing(settings.skip_missing);
+        if(settings.seed != null){
+            validator.setSeed(settings.seed);
+        }
+        return validator;
+    }
+    /**
+     * Go through the options and files after the command, giving each file a copy of the settings before it
+     * @param args the arguments, starting with the command
+     * @param files filled in with the files, in order
+     * @param settings filled in with the settings of each file
+     */
+    private static void parseArguments(String[] args, ArrayList<String> files, ArrayList<Settings> settings){
+        Settings current = new Settings();
+        for(int x = 1;x<args.length;x++){
+            String arg = args[x];
+            if(!arg.startsWith("--")){
+                files.add(arg);
+                settings.add(current.copy());
+                continue;
+            }
+            switch(arg){
+                case "--incremental":
+                    current.incremental = true;
+                    continue;
+                case "--sparse":
+                    current.sparse = true;
+                    continue;
+                case "--posteriors":
+                    current.posteriors = true;
+                    continue;
+                case "--no-header":
+                    current.header = false;
+                    continue;
+                case "--skip-missing":
+                    current.skip_missing = true;
+                    continue;
+                default:
+                    break;
+            }
+            if(x + 1 >= args.length){
+                throw new UsageException("No value given for " + arg);
+            }
+            String value = args[++x];
+            switch(arg){
+                case "--missing":
+                    current.missing_value_designation = value;
+                    break;
+                case "--bins":
+                    current.bins = positive(arg,value);
+                    break;
+                case "--impute":
+                    try{
+                        current.impute = ImputeStrategy.parse(value);
+                    }catch(IllegalArgumentException e){
+                        throw new UsageException(e.getMessage());
+                    }
+                    break;
+                case "--threads":
+                    current.threads = positive(arg,value);
+                    break;
+                case "--folds":
+                    current.folds = positive(arg,value);
+                    break;
+                case "--seed":
+                    current.seed = parseLong(arg,value);
+                    break;
+                case "--workers":
+                    current.workers = positive(arg,value);
+                    break;
+                case "--repeat":
+                    current.repeat = positive(arg,value);
+                    break;
+                case "--port":
+                    current.port = (int)parseLong(arg,value);
+                    break;
+                case "--rows":
+                    current.rows = parseLong(arg,value);
+                    break;
+                case "--features":
+                    current.features = positive(arg,value);
+                    break;
+                case "--classes":
+                    current.classes = positive(arg,value);
+                    break;
+                case "--cardinality":
+                    current.cardinality = positive(arg,value);
+                    break;
+                case "--continuous":
+                    current.continuous = nonNegative(arg,value);
+                    break;
+                case "--imbalance":
+                    current.imbalance = parseDouble(arg,value);
+                    break;
+                case "--missing-rate":
+                    current.missing_rate = parseDouble(arg,value);
+                    break;
+                case "--signal":
+                    current.signal = parseDouble(arg,value);
+                    break;
+                case "--text-column":
+                    current.text_column = value;
+                    break;
+                case "--event-model":
+                    if(value.equalsIgnoreCase("multinomial")){
+                        current.event_model = EventModel.MULTINOMIAL;
+                    }else if(value.equalsIgnoreCase("bernoulli")){
+                        current.event_model = EventModel.BERNOULLI;
+                    }else{
+                        throw new UsageException("--event-model needs multinomial or bernoulli, got " + value);
+                    }
+                    break;
+                case "--bits":
+                    current.bits = positive(arg,value);
+                    if(current.bits > 30){
+                        throw new UsageException("--bits needs a number from 1 to 30, got " + value);
+                    }
+                    break;
+                default:
+                    throw new UsageException("Unknown option " + arg);
+            }
+        }
+        //commands without files still get the settings
+        if(settings.isEmpty()){
+            settings.add(current);
+        }
+    }
+    /**
+     * @param line the first line of the input
+     * @param columns the columns of the model
+     * @return if the line is the header of the columns
+     */
+    private static boolean isHeader(String line, ColumnInfo[] columns){
+        //split like ColumnInfo.parseHeader, so a header ending in a comma still has a cell per column
+        String[] cells = line.split(",");
+        if(cells.length != columns.length){
+            return false;
+        }
+        for(int column = 0;column<columns.length;column++){
+            if(!cells[column].split("!")[0].equals(columns[column].getName())){
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * @param settings the settings of a file
+     * @param fallback what the command does when --repeat is not given
+     * @return times to repeat
+     */
+    private static int repeat(Settings settings, int fallback){
+        return settings.repeat == null ? fallback : settings.repeat;
+    }
+    private static void requireFiles(ArrayList<String> files, int min, int max){
+        if(files.size() < min || files.size() > max){
+            throw new UsageException("Wrong amount of files given");
+        }
+    }
+    private static int positive(String option, String value){
+        long parsed = parseLong(option,value);
+        if(parsed < 1 || parsed > Integer.MAX_VALUE){
+            throw new UsageException(option + " needs a positive number, got " + value);
+        }
+        return (int)parsed;
+    }
+    private static int nonNegative(String option, String value){
+        long parsed = parseLong(option,value);
+        if(parsed < 0 || parsed > Integer.MAX_VALUE){
+            throw new UsageException(option + " needs a number of at least 0, got " + value);
+        }
+        return (int)parsed;
+    }
+    private static long parseLong(String option, String value){
+        try{
+            return Long.parseLong(value);
+        }catch(NumberFormatException e){
+            throw new UsageException(option + " needs a number, got " + value);
+        }
+    }
+    private static double parseDouble(String option, String value){
+        try{
+            return Double.parseDouble(value);
+        }catch(NumberFormatException e){
+            throw new UsageException(option + " needs a number, got " + value);
+        }
+    }
+    private static long millis(long start){
+        return millis(start,System.nanoTime());
+    }
+    private static long millis(long start, long end){
+        return (end - start) / 1000000;
+    }
+}
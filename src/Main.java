@@ -2,6 +2,10 @@ import java.util.ArrayList;
 
 public class Main {
     public static void main(String[] args) {
+        //with arguments run a single command for scripts and pipelines, without them ask through the menu
+        if(args.length > 0){
+            System.exit(new CommandLine(System.in,System.out,System.err).run(args));
+        }
         //welcome message for program entry
         String welcome = "Welcome to our naive bayes ML project";
         //Array of options to allow for dynamic option selection and insertion
@@ -11,6 +11,8 @@ public class Menu {
     private String[] options;
     private ArrayList<String> file;
     private int choice;
+    //one scanner for every prompt, a new one each time could lose input the last one had already buffered
+    private Scanner input;
     /**
      * @param welcome - welcome message printed once by the menu
      * @param options - options that build the menu displayed
@@ -18,6 +20,7 @@ public class Menu {
      */
     public Menu(String welcome,String[] options,String[] paths){
         this.options = options;
+        this.input = new Scanner(System.in);
         System.out.println(welcome);
         this.menu = buildMenu();
         //if a valid choice is picked, it will be a number that is not zero
@@ -54,8 +57,7 @@ public class Menu {
             //Print out menu
             System.out.println(this.menu);
             //get choice
-            Scanner choice_input = new Scanner(System.in);
-            String choice = choice_input.next();
+            String choice = this.input.next();
             try{
                 //parse int (can throw NumberFormatException)
                 int int_choice = Integer.parseInt(choice);
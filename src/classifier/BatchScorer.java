@@ -0,0 +1,266 @@
+package classifier;
+
+import data.EncodedDataset;
+
+/**
+ * Scores encoded rows against a model by summing log probabilities, so wide rows do not underflow to zero like
+ * multiplying probabilities does. Gaussian columns add the closed form log density of their value instead of a table
+ * lookup. Rows are scored a block at a time going column by column, matching how the dataset is stored. By default
+ * the table lookups of four columns are summed before being added to a row's scores (a tiled kernel), so each score is
+ * loaded and stored a quarter as often and the four lookups can be in flight at once. Setting the system property
+ * "naivebayes.kernel" to "column" picks the plain kernel adding one column at a time instead. A scorer keeps scratch
+ * space for the block, so use one scorer per thread (the model can be shared)
+ */
+public class BatchScorer {
+    private static final int BLOCK_SIZE = 256;
+    private static final int TILE_COLUMNS = 4;
+    //picked once when the class is loaded
+    private static final boolean TILED = !"column".equals(System.getProperty("naivebayes.kernel"));
+    private NaiveBayesModel model;
+    private int classes;
+    private int class_index;
+    private int[] cardinality;
+    private double[] log_priors;
+    //log P(value|class) with one more value per column for values the model does not know, so a lookup never has to
+    //pick between two tables, (table_offsets[column] + value) * classes + class
+    private double[] log_table;
+    private int[] table_offsets;
+    //columns scored with a table lookup, the class and gaussian columns left out
+    private int[] table_columns;
+    private boolean[] gaussian;
+    private double[] gaussian_means;
+    private double[] gaussian_log_norms;
+    private double[] gaussian_scales;
+    //scratch space, block row * classes + class -> log score
+    private double[] scores;
+    /**
+     * @param model the model to score against
+     */
+    public BatchScorer(NaiveBayesModel model){
+        this.model = model;
+        this.classes = model.getClassCount();
+        this.class_index = model.getClassIndex();
+        this.cardinality = model.getCardinality();
+        this.log_priors = model.getLogPriors();
+        this.gaussian = model.getGaussian();
+        this.gaussian_means = model.getGaussianMeans();
+        this.gaussian_log_norms = model.getGaussianLogNorms();
+        this.gaussian_scales = model.getGaussianScales();
+        this.scores = new double[BLOCK_SIZE * this.classes];
+        buildTable(model.getOffsets(),model.getLogLikelihoods(),model.getLogUnseen());
+    }
+    /**
+     * Score rows[from] until rows[to], writing the prediction for rows[x] into predictions[x - from]
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to score
+     * @param to position in rows to stop scoring at (exclusive)
+     * @param predictions where the predicted class codes go, needs room for to - from predictions
+     * @param posteriors where P(class|row) goes at (x - from) * classes + class, can be null if not wanted
+     */
+    public void score(EncodedDataset data, int[] rows, int from, int to, int[] predictions, double[] posteriors){
+        for(int block_start = from;block_start<to;block_start+=BLOCK_SIZE){
+            int block_end = Math.min(block_start + BLOCK_SIZE,to);
+            scoreBlock(data,rows,block_start,block_end);
+            for(int x = block_start;x<block_end;x++){
+                predictions[x - from] = Posteriors.finish(this.scores,(x - block_start) * this.classes,this.classes,
+                        posteriors,(x - from) * this.classes);
+            }
+        }
+    }
+    /**
+     * Work out the log score of every class for rows[from] until rows[to], without picking a class
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to score
+     * @param to position in rows to stop scoring at (exclusive)
+     * @param log_scores where log P(class) + the sum of log P(value|class) goes, at scores_start + (x - from) * classes
+     *                   + class for rows[x]
+     * @param scores_start where the scores start
+     */
+    public void logScores(EncodedDataset data, int[] rows, int from, int to, double[] log_scores, int scores_start){
+        for(int block_start = from;block_start<to;block_start+=BLOCK_SIZE){
+            int block_end = Math.min(block_start + BLOCK_SIZE,to);
+            scoreBlock(data,rows,block_start,block_end);
+            System.arraycopy(this.scores,0,log_scores,scores_start + (block_start - from) * this.classes,
+                    (block_end - block_start) * this.classes);
+        }
+    }
+    /**
+     * Score a single row given as the code of each column, gaussian columns are left out
+     * @param row code of each column, the class column is ignored and codes the model does not know are allowed
+     * @param posteriors where P(class|row) goes, can be null if not wanted
+     * @return the predicted class code
+     */
+    public int predict(int[] row, double[] posteriors){
+        return predict(row,null,posteriors);
+    }
+    /**
+     * Score a single row given as the code of each column, and the value of each gaussian column
+     * @param row code of each column, the class column is ignored and codes the model does not know are allowed
+     * @param values value of each column in the same places as row, only read for gaussian columns (NaN if missing),
+     *               can be null to leave gaussian columns out
+     * @param posteriors where P(class|row) goes, can be null if not wanted
+     * @return the predicted class code
+     */
+    public int predict(int[] row, double[] values, double[] posteriors){
+        System.arraycopy(this.log_priors,0,this.scores,0,this.classes);
+        for(int column = 0;column<row.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.gaussian[column]){
+                if(values != null){
+                    addDensity(column,values[column],0);
+                }
+                continue;
+            }
+            addColumn(column,row[column],0);
+        }
+        return Posteriors.finish(this.scores,0,this.classes,posteriors,0);
+    }
+    public NaiveBayesModel getModel(){
+        return this.model;
+    }
+    /**
+     * Fill in the scores scratch space for rows[from] until rows[to]
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to score
+     * @param to position in rows to stop scoring at, at most a block after from
+     */
+    private void scoreBlock(EncodedDataset data, int[] rows, int from, int to){
+        for(int x = from;x<to;x++){
+            System.arraycopy(this.log_priors,0,this.scores,(x - from) * this.classes,this.classes);
+        }
+        for(int column = 0;column<this.gaussian.length;column++){
+            if(this.gaussian[column]){
+                double[] values = data.getNumeric(column);
+                for(int x = from;x<to;x++){
+                    addDensity(column,values[rows[x]],(x - from) * this.classes);
+                }
+            }
+        }
+        int tiled = 0;
+        if(TILED){
+            for(;tiled + TILE_COLUMNS<=this.table_columns.length;tiled+=TILE_COLUMNS){
+                addTile(data,rows,from,to,tiled);
+            }
+        }
+        //whatever is left over a column at a time
+        int[] codes = data.getCodes();
+        for(int x = tiled;x<this.table_columns.length;x++){
+            int column = this.table_columns[x];
+            int start = data.columnOffset(column);
+            for(int y = from;y<to;y++){
+                addColumn(column,codes[start + rows[y]],(y - from) * this.classes);
+            }
+        }
+    }
+    /**
+     * Add log P(value|class) of four columns to the scores of rows[from] until rows[to], summing the four lookups
+     * before touching the scores
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to score
+     * @param to position in rows to stop scoring at, at most a block after from
+     * @param first position in table_columns of the first of the four columns
+     */
+    private void addTile(EncodedDataset data, int[] rows, int from, int to, int first){
+        int[] codes = data.getCodes();
+        int column_0 = this.table_columns[first];
+        int column_1 = this.table_columns[first + 1];
+        int column_2 = this.table_columns[first + 2];
+        int column_3 = this.table_columns[first + 3];
+        int start_0 = data.columnOffset(column_0);
+        int start_1 = data.columnOffset(column_1);
+        int start_2 = data.columnOffset(column_2);
+        int start_3 = data.columnOffset(column_3);
+        for(int x = from;x<to;x++){
+            int row = rows[x];
+            int table_0 = tableStart(column_0,codes[start_0 + row]);
+            int table_1 = tableStart(column_1,codes[start_1 + row]);
+            int table_2 = tableStart(column_2,codes[start_2 + row]);
+            int table_3 = tableStart(column_3,codes[start_3 + row]);
+            int score_start = (x - from) * this.classes;
+            for(int class_code = 0;class_code<this.classes;class_code++){
+                this.scores[score_start + class_code] += (this.log_table[table_0 + class_code]
+                        + this.log_table[table_1 + class_code]) + (this.log_table[table_2 + class_code]
+                        + this.log_table[table_3 + class_code]);
+            }
+        }
+    }
+    /**
+     * Add log P(value|class) of one column to a row's scores for every class
+     * @param column the column of the value
+     * @param value the code of the value
+     * @param score_start where the row's scores start in the scratch space
+     */
+    private void addColumn(int column, int value, int score_start){
+        int table_start = tableStart(column,value);
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            this.scores[score_start + class_code] += this.log_table[table_start + class_code];
+        }
+    }
+    /**
+     * @param column the column of the value
+     * @param value the code of the value
+     * @return where log P(value|class) of the first class is in log_table
+     */
+    private int tableStart(int column, int value){
+        //a value we never trained on only gets the smoothing, which is kept right after the known values
+        if(value < 0 || value >= this.cardinality[column]){
+            value = this.cardinality[column];
+        }
+        return (this.table_offsets[column] + value) * this.classes;
+    }
+    /**
+     * Lay the model's tables out the way the kernels read them
+     * @param offsets where each column starts in log_likelihoods, in values
+     * @param log_likelihoods log P(value|class) of the model
+     * @param log_unseen log P(value|class) of the model for values it does not know
+     */
+    private void buildTable(int[] offsets, double[] log_likelihoods, double[] log_unseen){
+        int columns = this.cardinality.length;
+        this.table_offsets = new int[columns];
+        int values = 0;
+        int table_column_count = 0;
+        for(int column = 0;column<columns;column++){
+            this.table_offsets[column] = values;
+            values += this.cardinality[column] + 1;
+            if(column != this.class_index && !this.gaussian[column]){
+                table_column_count++;
+            }
+        }
+        this.log_table = new double[values * this.classes];
+        this.table_columns = new int[table_column_count];
+        table_column_count = 0;
+        for(int column = 0;column<columns;column++){
+            int cardinality = this.cardinality[column];
+            System.arraycopy(log_likelihoods,offsets[column] * this.classes,this.log_table,
+                    this.table_offsets[column] * this.classes,cardinality * this.classes);
+            System.arraycopy(log_unseen,column * this.classes,this.log_table,
+                    (this.table_offsets[column] + cardinality) * this.classes,this.classes);
+            if(column != this.class_index && !this.gaussian[column]){
+                this.table_columns[table_column_count++] = column;
+            }
+        }
+    }
+    /**
+     * Add the log density of a gaussian column's value to a row's scores for every class
+     * @param column the gaussian column
+     * @param value the value, a missing (NaN) value adds nothing
+     * @param score_start where the row's scores start in the scratch space
+     */
+    private void addDensity(int column, double value, int score_start){
+        if(Double.isNaN(value)){
+            return;
+        }
+        int start = column * this.classes;
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            double difference = value - this.gaussian_means[start + class_code];
+            this.scores[score_start + class_code] += this.gaussian_log_norms[start + class_code]
+                    - difference * difference * this.gaussian_scales[start + class_code];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package classifier;
+
+/**
+ * What the values of sparse features stand for, which decides how a SparseNaiveBayesTrainer counts them
+ */
+public enum EventModel {
+    //values are codes, each feature is a categorical column whose default is left out
+    CATEGORICAL,
+    //a feature is either present (any value above 0) or absent, and absence counts as evidence too
+    BERNOULLI,
+    //values are how many times a feature (ex. a word) occurred, only the features that occurred count
+    MULTINOMIAL
+}
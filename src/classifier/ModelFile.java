@@ -0,0 +1,63 @@
+package classifier;
+
+import data.BinaryFormat;
+import data.ColumnInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Binary file holding a trained model, so scoring can start without the csv or retraining. The file holds a header,
+ * the columns (with dictionaries, bin edges and impute values), then the log probability tables and gaussian parameters
+ */
+public class ModelFile {
+    private static final String MAGIC = "NBMD";
+    private static final int VERSION = 2;
+    /**
+     * @param model the model to write
+     * @param path where to write it
+     * @throws IOException if the file can't be written
+     */
+    public static void write(NaiveBayesModel model, Path path) throws IOException{
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))){
+            BinaryFormat.writeHeader(output,MAGIC,VERSION);
+            BinaryFormat.writeColumns(output,model.getColumns());
+            output.writeInt(model.getClassIndex());
+            output.writeInt(model.getClassCount());
+            BinaryFormat.writeInts(output,model.getCardinality());
+            BinaryFormat.writeInts(output,model.getOffsets());
+            BinaryFormat.writeDoubles(output,model.getLogPriors());
+            BinaryFormat.writeDoubles(output,model.getLogLikelihoods());
+            BinaryFormat.writeDoubles(output,model.getLogUnseen());
+            BinaryFormat.writeDoubles(output,model.getGaussianMeans());
+            BinaryFormat.writeDoubles(output,model.getGaussianLogNorms());
+            BinaryFormat.writeDoubles(output,model.getGaussianScales());
+        }
+    }
+    /**
+     * @param path a file written by write
+     * @return the model that was written
+     * @throws IOException if the file can't be read or is not a model file
+     */
+    public static NaiveBayesModel read(Path path) throws IOException{
+        ByteBuffer input = BinaryFormat.map(path);
+        BinaryFormat.readHeader(input,MAGIC,VERSION);
+        ColumnInfo[] columns = BinaryFormat.readColumns(input);
+        int class_index = input.getInt();
+        int classes = input.getInt();
+        int[] cardinality = BinaryFormat.readInts(input);
+        int[] offsets = BinaryFormat.readInts(input);
+        double[] log_priors = BinaryFormat.readDoubles(input);
+        double[] log_likelihoods = BinaryFormat.readDoubles(input);
+        double[] log_unseen = BinaryFormat.readDoubles(input);
+        double[] gaussian_means = BinaryFormat.readDoubles(input);
+        double[] gaussian_log_norms = BinaryFormat.readDoubles(input);
+        double[] gaussian_scales = BinaryFormat.readDoubles(input);
+        return new NaiveBayesModel(columns,class_index,classes,cardinality,offsets,log_priors,log_likelihoods,
+                log_unseen,gaussian_means,gaussian_log_norms,gaussian_scales);
+    }
+}
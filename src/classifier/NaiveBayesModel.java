@@ -0,0 +1,154 @@
+package classifier;
+
+import data.ColumnInfo;
+
+/**
+ * A trained naive bayes classifier, holding log P(class) and log P(value|class) in flat tables, and for gaussian
+ * columns the parameters of the log density of each class. The model never changes once it has been built, so it can
+ * be shared between threads freely
+ */
+public class NaiveBayesModel {
+    private final ColumnInfo[] columns;
+    private final int class_index;
+    private final int classes;
+    private final int[] cardinality;
+    private final int[] offsets;
+    private final double[] log_priors;
+    private final double[] log_likelihoods;
+    private final double[] log_unseen;
+    //which columns are gaussian
+    private final boolean[] gaussian;
+    private final double[] gaussian_means;
+    private final double[] gaussian_log_norms;
+    private final double[] gaussian_scales;
+    /**
+     * @param columns information about each column, including its dictionary
+     * @param class_index the index of the class column
+     * @param classes amount of classes
+     * @param cardinality amount of values of each column the model knows about, 0 for the class column
+     * @param offsets where each column starts in log_likelihoods, in values
+     * @param log_priors log P(class) for each class
+     * @param log_likelihoods log P(value|class), (offsets[column] + value) * classes + class
+     * @param log_unseen log P(value|class) for values the model does not know, column * classes + class
+     * @param gaussian_means mean of each class for gaussian columns, column * classes + class
+     * @param gaussian_log_norms -log(sqrt(2 * pi * variance)) of each class for gaussian columns
+     * @param gaussian_scales 1 / (2 * variance) of each class for gaussian columns
+     */
+    NaiveBayesModel(ColumnInfo[] columns, int class_index, int classes, int[] cardinality, int[] offsets,
+                    double[] log_priors, double[] log_likelihoods, double[] log_unseen, double[] gaussian_means,
+                    double[] gaussian_log_norms, double[] gaussian_scales){
+        this.columns = columns;
+        this.class_index = class_index;
+        this.classes = classes;
+        this.cardinality = cardinality;
+        this.offsets = offsets;
+        this.log_priors = log_priors;
+        this.log_likelihoods = log_likelihoods;
+        this.log_unseen = log_unseen;
+        this.gaussian = new boolean[columns.length];
+        for(int column = 0;column<columns.length;column++){
+            this.gaussian[column] = column != class_index && columns[column].isGaussian();
+        }
+        this.gaussian_means = gaussian_means;
+        this.gaussian_log_norms = gaussian_log_norms;
+        this.gaussian_scales = gaussian_scales;
+    }
+    /**
+     * @param columns columns with the same dictionaries as this model's, ex. copies that won't change
+     * @return a model sharing this model's tables, but with the given columns
+     */
+    NaiveBayesModel withColumns(ColumnInfo[] columns){
+        return new NaiveBayesModel(columns,this.class_index,this.classes,this.cardinality,this.offsets,this.log_priors,
+                this.log_likelihoods,this.log_unseen,this.gaussian_means,this.gaussian_log_norms,this.gaussian_scales);
+    }
+    /**
+     * @param column the column of the value
+     * @param value the code of the value
+     * @param class_code the code of the class
+     * @return log P(value|class)
+     */
+    public double logLikelihood(int column, int value, int class_code){
+        if(value < 0 || value >= this.cardinality[column]){
+            return this.log_unseen[column * this.classes + class_code];
+        }
+        return this.log_likelihoods[(this.offsets[column] + value) * this.classes + class_code];
+    }
+    /**
+     * @param column a gaussian column
+     * @param value the value, NaN if it is missing
+     * @param class_code the code of the class
+     * @return the log density of the value for the class, 0 for a missing value
+     */
+    public double logDensity(int column, double value, int class_code){
+        if(Double.isNaN(value)){
+            return 0;
+        }
+        int index = column * this.classes + class_code;
+        double difference = value - this.gaussian_means[index];
+        return this.gaussian_log_norms[index] - difference * difference * this.gaussian_scales[index];
+    }
+    /**
+     * @param column the column to check
+     * @return if the column is scored with logDensity rather than logLikelihood
+     */
+    public boolean isGaussian(int column){
+        return this.gaussian[column];
+    }
+    /**
+     * @param class_code the code of the class
+     * @return log P(class)
+     */
+    public double logPrior(int class_code){
+        return this.log_priors[class_code];
+    }
+    /**
+     * @param class_code a code the model can predict
+     * @return the name of the class
+     */
+    public String className(int class_code){
+        return this.columns[this.class_index].getDictionary().decode(class_code);
+    }
+    public ColumnInfo[] getColumns(){
+        return this.columns;
+    }
+    public int getColumnCount(){
+        return this.columns.length;
+    }
+    public int getClassIndex(){
+        return this.class_index;
+    }
+    public int getClassCount(){
+        return this.classes;
+    }
+    public int getCardinality(int column){
+        return this.cardinality[column];
+    }
+    //the tables themselves are only handed out within the package, so nothing outside can change them
+    int[] getCardinality(){
+        return this.cardinality;
+    }
+    int[] getOffsets(){
+        return this.offsets;
+    }
+    double[] getLogPriors(){
+        return this.log_priors;
+    }
+    double[] getLogLikelihoods(){
+        return this.log_likelihoods;
+    }
+    double[] getLogUnseen(){
+        return this.log_unseen;
+    }
+    boolean[] getGaussian(){
+        return this.gaussian;
+    }
+    double[] getGaussianMeans(){
+        return this.gaussian_means;
+    }
+    double[] getGaussianLogNorms(){
+        return this.gaussian_log_norms;
+    }
+    double[] getGaussianScales(){
+        return this.gaussian_scales;
+    }
+}
@@ -0,0 +1,523 @@
+package classifier;
+
+import data.ColumnDictionary;
+import data.ColumnInfo;
+import data.EncodedDataset;
+
+import java.util.Arrays;
+
+/**
+ * Trains a naive bayes classifier by counting how often each value of each column shows up with each class. Gaussian
+ * columns instead keep the count, mean and sum of squared differences from the mean (M2) of their values for each
+ * class, updated with Welford's algorithm so one pass is enough. All counts live in primitive arrays, so adding rows
+ * does not allocate anything
+ */
+public class NaiveBayesTrainer {
+    //amount of variance added to every gaussian column, relative to the variance of the whole column
+    private static final double VARIANCE_SMOOTHING = 1e-9;
+    private ColumnInfo[] columns;
+    private int class_index;
+    private int classes;
+    //how many training rows had each class
+    private long[] class_counts;
+    //column -> value * classes + class -> how many training rows had that value and class
+    private long[][] counts;
+    //amount of values each column has room for in counts
+    private int[] cardinality;
+    //column -> class * 3 + (0 count, 1 mean, 2 M2) of the values of a gaussian column, null for the other columns
+    private double[][] gaussian_statistics;
+    //value standing for a missing cell that the model leaves out of the likelihood, null to treat it like any value
+    private String missing_value_designation;
+    /**
+     * @param data the dataset the rows will come from, used to size the counts
+     */
+    public NaiveBayesTrainer(EncodedDataset data){
+        this.columns = data.getColumns();
+        this.class_index = data.getClassIndex();
+        this.classes = 0;
+        this.class_counts = new long[0];
+        this.counts = new long[this.columns.length][0];
+        this.cardinality = new int[this.columns.length];
+        this.gaussian_statistics = new double[this.columns.length][];
+        for(int column = 0;column<this.columns.length;column++){
+            if(this.columns[column].isGaussian() && column != this.class_index){
+                this.gaussian_statistics[column] = new double[0];
+            }
+        }
+        ensureCapacity(data);
+    }
+    /**
+     * Make a copy of another trainer's counts, so the copy can be changed without changing the original
+     * @param other the trainer to copy
+     */
+    public NaiveBayesTrainer(NaiveBayesTrainer other){
+        this.columns = other.columns;
+        this.class_index = other.class_index;
+        this.classes = other.classes;
+        this.class_counts = other.class_counts.clone();
+        this.counts = new long[other.counts.length][];
+        for(int column = 0;column<this.counts.length;column++){
+            this.counts[column] = other.counts[column].clone();
+        }
+        this.cardinality = other.cardinality.clone();
+        this.gaussian_statistics = new double[other.gaussian_statistics.length][];
+        for(int column = 0;column<this.gaussian_statistics.length;column++){
+            if(other.gaussian_statistics[column] != null){
+                this.gaussian_statistics[column] = other.gaussian_statistics[column].clone();
+            }
+        }
+        this.missing_value_designation = other.missing_value_designation;
+    }
+    /**
+     * Put back a trainer that was written out (see TrainerFile)
+     * @param columns information about each column, including its dictionary
+     * @param class_index the index of the class column
+     * @param classes amount of classes
+     * @param class_counts how many rows had each class
+     * @param counts column -> value * classes + class -> how many rows had that value and class
+     * @param cardinality amount of values each column has room for in counts
+     * @param gaussian_statistics column -> class * 3 + (count, mean, M2), null for columns that are not gaussian
+     */
+    NaiveBayesTrainer(ColumnInfo[] columns, int class_index, int classes, long[] class_counts, long[][] counts,
+                      int[] cardinality, double[][] gaussian_statistics){
+        this.columns = columns;
+        this.class_index = class_index;
+        this.classes = classes;
+        this.class_counts = class_counts;
+        this.counts = counts;
+        this.cardinality = cardinality;
+        this.gaussian_statistics = gaussian_statistics;
+    }
+    /**
+     * Count a single row
+     * @param data the dataset holding the row
+     * @param row the row to count
+     */
+    public void addRow(EncodedDataset data, int row){
+        ensureCapacity(data);
+        int class_code = data.classCode(row);
+        this.class_counts[class_code]++;
+        for(int column = 0;column<this.columns.length;column++){
+            //we have already counted the class
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.gaussian_statistics[column] != null){
+                addValue(this.gaussian_statistics[column],class_code,data.getNumeric(column)[row]);
+                continue;
+            }
+            this.counts[column][data.code(row,column) * this.classes + class_code]++;
+        }
+    }
+    /**
+     * Count rows[from] until rows[to], going column by column since the dataset is stored that way
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to count
+     * @param to position in rows to stop counting at (exclusive)
+     */
+    public void addRows(EncodedDataset data, int[] rows, int from, int to){
+        countRows(data,rows,from,to,1);
+    }
+    /**
+     * Take rows that were counted before back out of the counts
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to take out
+     * @param to position in rows to stop taking out at (exclusive)
+     */
+    public void removeRows(EncodedDataset data, int[] rows, int from, int to){
+        countRows(data,rows,from,to,-1);
+    }
+    /**
+     * Add the counts of another trainer to this one. The other trainer can have been counting a different dataset with
+     * the same header (ex. another part of the file, read by another process), in which case its values are matched up
+     * with this one's by what they are, and values this one has never seen are added to its dictionaries
+     * @param other the trainer to add
+     * @throws IllegalArgumentException if the other trainer has different columns
+     */
+    public void merge(NaiveBayesTrainer other){
+        if(other.columns.length != this.columns.length || other.class_index != this.class_index){
+            throw new IllegalArgumentException("Can only merge trainers with the same columns");
+        }
+        //what each of the other trainer's codes is in this trainer, null when both share the same dictionaries
+        int[][] remaps = new int[this.columns.length][];
+        int[] values = other.cardinality.clone();
+        int data_classes = other.classes;
+        if(other.columns != this.columns){
+            for(int column = 0;column<this.columns.length;column++){
+                int size = column == this.class_index ? other.classes : other.cardinality[column];
+                remaps[column] = remap(this.columns[column].getDictionary(),other.columns[column].getDictionary(),size);
+                values[column] = this.columns[column].getDictionary().size();
+            }
+            data_classes = values[this.class_index];
+        }
+        ensureCapacity(data_classes,values);
+        int[] class_remap = remaps[this.class_index];
+        for(int class_code = 0;class_code<other.classes;class_code++){
+            int into_class = class_remap == null ? class_code : class_remap[class_code];
+            this.class_counts[into_class] += other.class_counts[class_code];
+        }
+        for(int column = 0;column<this.columns.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.gaussian_statistics[column] != null){
+                for(int class_code = 0;class_code<other.classes;class_code++){
+                    int into_class = class_remap == null ? class_code : class_remap[class_code];
+                    mergeStatistics(this.gaussian_statistics[column],into_class,other.gaussian_statistics[column],
+                            class_code);
+                }
+                continue;
+            }
+            long[] column_counts = this.counts[column];
+            long[] other_counts = other.counts[column];
+            int[] remap = remaps[column];
+            for(int value = 0;value<other.cardinality[column];value++){
+                int into_value = remap == null ? value : remap[value];
+                for(int class_code = 0;class_code<other.classes;class_code++){
+                    int into_class = class_remap == null ? class_code : class_remap[class_code];
+                    column_counts[into_value * this.classes + into_class] +=
+                            other_counts[value * other.classes + class_code];
+                }
+            }
+        }
+    }
+    /**
+     * Count every row in the dataset
+     * @param data the dataset to count
+     */
+    public void addAll(EncodedDataset data){
+        ensureCapacity(data);
+        int[] codes = data.getCodes();
+        int rows = data.getRows();
+        int class_start = data.columnOffset(this.class_index);
+        for(int row = 0;row<rows;row++){
+            this.class_counts[codes[class_start + row]]++;
+        }
+        for(int column = 0;column<this.columns.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.gaussian_statistics[column] != null){
+                double[] statistics = this.gaussian_statistics[column];
+                double[] values = data.getNumeric(column);
+                for(int row = 0;row<rows;row++){
+                    addValue(statistics,codes[class_start + row],values[row]);
+                }
+                continue;
+            }
+            long[] column_counts = this.counts[column];
+            int start = data.columnOffset(column);
+            for(int row = 0;row<rows;row++){
+                column_counts[codes[start + row] * this.classes + codes[class_start + row]]++;
+            }
+        }
+    }
+    /**
+     * Leave missing cells out of the likelihood instead of treating them as a value of their own, like gaussian
+     * columns already do, for data that was not imputed. A missing cell then adds nothing to the score of any class
+     * and is not counted towards how many values a class had. Only columns where the training data had a missing
+     * cell know its code, elsewhere a missing cell scores like any value the model has never seen
+     * @param missing_value_designation the value standing for a missing cell, null to count it like any other value
+     */
+    public void setSkipMissing(String missing_value_designation){
+        this.missing_value_designation = missing_value_designation;
+    }
+    public ColumnInfo[] getColumns(){
+        return this.columns;
+    }
+    public int getClassIndex(){
+        return this.class_index;
+    }
+    /**
+     * @return amount of rows counted so far
+     */
+    public long getRowCount(){
+        long total = 0;
+        for(long count : this.class_counts){
+            total += count;
+        }
+        return total;
+    }
+    /**
+     * Turn the counts into a model using laplace smoothing
+     * @return the trained model
+     */
+    public NaiveBayesModel build(){
+        return build(1.0);
+    }
+    /**
+     * Turn the counts into a model, P(value|class) = (count + alpha) / (class count + alpha * values in column). Gaussian
+     * columns get the mean and variance of each class, with a tiny part of the variance of the whole column added so a
+     * class whose values are all the same doesn't give an infinite density. When skipping missing cells the missing
+     * value is not one of the values in the column, and its log likelihood is 0 so scoring skips it for free
+     * @param alpha the amount added to every count, 1 is laplace smoothing
+     * @return the trained model
+     */
+    public NaiveBayesModel build(double alpha){
+        int[] model_cardinality = this.cardinality.clone();
+        model_cardinality[this.class_index] = 0;
+        //offsets of each column within the flat likelihood table
+        int[] offsets = new int[this.columns.length + 1];
+        for(int column = 0;column<this.columns.length;column++){
+            offsets[column + 1] = offsets[column] + model_cardinality[column];
+        }
+        double[] log_likelihoods = new double[offsets[this.columns.length] * this.classes];
+        double[] log_unseen = new double[this.columns.length * this.classes];
+        double[] gaussian_means = new double[this.columns.length * this.classes];
+        double[] gaussian_log_norms = new double[this.columns.length * this.classes];
+        double[] gaussian_scales = new double[this.columns.length * this.classes];
+        long total = getRowCount();
+        double[] log_priors = new double[this.classes];
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            log_priors[class_code] = Math.log((double)this.class_counts[class_code] / total);
+        }
+        for(int column = 0;column<this.columns.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.gaussian_statistics[column] != null){
+                buildGaussian(column,gaussian_means,gaussian_log_norms,gaussian_scales);
+                continue;
+            }
+            long[] column_counts = this.counts[column];
+            int values = model_cardinality[column];
+            int missing_code = this.missing_value_designation == null ? -1
+                    : this.columns[column].getDictionary().lookup(this.missing_value_designation);
+            if(missing_code >= values){
+                missing_code = -1;
+            }
+            //the missing value is not one of the values the smoothing spreads over
+            int present_values = missing_code == -1 ? values : values - 1;
+            for(int class_code = 0;class_code<this.classes;class_code++){
+                //amount of times this class had any value in this column
+                long class_total = 0;
+                for(int value = 0;value<values;value++){
+                    if(value != missing_code){
+                        class_total += column_counts[value * this.classes + class_code];
+                    }
+                }
+                double log_denominator = Math.log(class_total + alpha * present_values);
+                for(int value = 0;value<values;value++){
+                    double count = column_counts[value * this.classes + class_code];
+                    log_likelihoods[(offsets[column] + value) * this.classes + class_code] =
+                            value == missing_code ? 0 : Math.log(count + alpha) - log_denominator;
+                }
+                //a value the model has never seen gets the smoothing amount alone
+                log_unseen[column * this.classes + class_code] = Math.log(alpha) - log_denominator;
+            }
+        }
+        return new NaiveBayesModel(this.columns,this.class_index,this.classes,model_cardinality,offsets,log_priors,
+                log_likelihoods,log_unseen,gaussian_means,gaussian_log_norms,gaussian_scales);
+    }
+    /**
+     * Work out the log density parameters of a gaussian column for every class
+     * @param column the gaussian column
+     * @param gaussian_means where the mean of each class goes, column * classes + class
+     * @param gaussian_log_norms where -log(sqrt(2 * pi * variance)) of each class goes
+     * @param gaussian_scales where 1 / (2 * variance) of each class goes
+     */
+    private void buildGaussian(int column, double[] gaussian_means, double[] gaussian_log_norms,
+                               double[] gaussian_scales){
+        double[] statistics = this.gaussian_statistics[column];
+        //the whole column is every class merged together
+        double[] whole = new double[3];
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            mergeStatistics(whole,0,statistics,class_code);
+        }
+        double whole_variance = whole[0] > 0 ? whole[2] / whole[0] : 0;
+        double smoothing = VARIANCE_SMOOTHING * Math.max(whole_variance,1.0);
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            double count = statistics[class_code * 3];
+            //a class with no values in this column says nothing, so it scores 0 for every value
+            if(count == 0){
+                continue;
+            }
+            double variance = statistics[class_code * 3 + 2] / count + smoothing;
+            int index = column * this.classes + class_code;
+            gaussian_means[index] = statistics[class_code * 3 + 1];
+            gaussian_log_norms[index] = -0.5 * Math.log(2 * Math.PI * variance);
+            gaussian_scales[index] = 1 / (2 * variance);
+        }
+    }
+    /**
+     * Add amount to the counts of rows[from] until rows[to]
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to count
+     * @param to position in rows to stop counting at (exclusive)
+     * @param amount 1 to count the rows, -1 to take them back out
+     */
+    private void countRows(EncodedDataset data, int[] rows, int from, int to, long amount){
+        ensureCapacity(data);
+        int[] codes = data.getCodes();
+        int class_start = data.columnOffset(this.class_index);
+        for(int x = from;x<to;x++){
+            this.class_counts[codes[class_start + rows[x]]] += amount;
+        }
+        for(int column = 0;column<this.columns.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.gaussian_statistics[column] != null){
+                double[] statistics = this.gaussian_statistics[column];
+                double[] values = data.getNumeric(column);
+                for(int x = from;x<to;x++){
+                    int row = rows[x];
+                    if(amount > 0){
+                        addValue(statistics,codes[class_start + row],values[row]);
+                    }else{
+                        removeValue(statistics,codes[class_start + row],values[row]);
+                    }
+                }
+                continue;
+            }
+            long[] column_counts = this.counts[column];
+            int start = data.columnOffset(column);
+            for(int x = from;x<to;x++){
+                int row = rows[x];
+                column_counts[codes[start + row] * this.classes + codes[class_start + row]] += amount;
+            }
+        }
+    }
+    /**
+     * Make sure the counts have room for every code the dataset dictionaries have handed out
+     * @param data the dataset rows are coming from
+     */
+    private void ensureCapacity(EncodedDataset data){
+        boolean grown = data.getClassCount() > this.classes;
+        for(int column = 0;column<this.columns.length && !grown;column++){
+            grown = data.getColumn(column).getDictionary().size() > this.cardinality[column];
+        }
+        //nothing new since last time, which is almost always the case
+        if(!grown){
+            return;
+        }
+        int[] values = new int[this.columns.length];
+        for(int column = 0;column<this.columns.length;column++){
+            values[column] = data.getColumn(column).getDictionary().size();
+        }
+        ensureCapacity(data.getClassCount(),values);
+    }
+    /**
+     * Make sure the counts have room for a given amount of classes and values
+     * @param data_classes amount of classes needed
+     * @param values amount of values needed for each column
+     */
+    private void ensureCapacity(int data_classes, int[] values){
+        //more classes changes the layout of every column
+        if(data_classes > this.classes){
+            this.class_counts = Arrays.copyOf(this.class_counts,data_classes);
+            for(int column = 0;column<this.columns.length;column++){
+                long[] grown = new long[this.cardinality[column] * data_classes];
+                for(int value = 0;value<this.cardinality[column];value++){
+                    System.arraycopy(this.counts[column],value * this.classes,grown,value * data_classes,this.classes);
+                }
+                this.counts[column] = grown;
+                //the statistics are class major, so the new classes just go on the end
+                if(this.gaussian_statistics[column] != null){
+                    this.gaussian_statistics[column] = Arrays.copyOf(this.gaussian_statistics[column],data_classes * 3);
+                }
+            }
+            this.classes = data_classes;
+        }
+        for(int column = 0;column<this.columns.length;column++){
+            if(values[column] > this.cardinality[column]){
+                this.counts[column] = Arrays.copyOf(this.counts[column],values[column] * this.classes);
+                this.cardinality[column] = values[column];
+            }
+        }
+    }
+    //the counts themselves are only handed out within the package, so nothing outside can change them
+    int getClasses(){
+        return this.classes;
+    }
+    long[] getClassCounts(){
+        return this.class_counts;
+    }
+    long[][] getCounts(){
+        return this.counts;
+    }
+    int[] getCardinality(){
+        return this.cardinality;
+    }
+    double[][] getGaussianStatistics(){
+        return this.gaussian_statistics;
+    }
+    /**
+     * Add a value to the statistics of a class with Welford's algorithm, missing (NaN) values are skipped
+     * @param statistics class * 3 + (0 count, 1 mean, 2 M2)
+     * @param class_code the class of the value
+     * @param value the value
+     */
+    private static void addValue(double[] statistics, int class_code, double value){
+        if(Double.isNaN(value)){
+            return;
+        }
+        int start = class_code * 3;
+        double count = statistics[start] + 1;
+        double delta = value - statistics[start + 1];
+        statistics[start] = count;
+        statistics[start + 1] += delta / count;
+        statistics[start + 2] += delta * (value - statistics[start + 1]);
+    }
+    /**
+     * Take a value that was added before back out of the statistics of a class, Welford's algorithm run backwards
+     * @param statistics class * 3 + (0 count, 1 mean, 2 M2)
+     * @param class_code the class of the value
+     * @param value the value
+     */
+    private static void removeValue(double[] statistics, int class_code, double value){
+        if(Double.isNaN(value)){
+            return;
+        }
+        int start = class_code * 3;
+        double count = statistics[start] - 1;
+        if(count <= 0){
+            statistics[start] = 0;
+            statistics[start + 1] = 0;
+            statistics[start + 2] = 0;
+            return;
+        }
+        double old_mean = statistics[start + 1];
+        double mean = (old_mean * statistics[start] - value) / count;
+        statistics[start] = count;
+        statistics[start + 1] = mean;
+        //rounding can leave a tiny negative amount behind
+        statistics[start + 2] = Math.max(0,statistics[start + 2] - (value - old_mean) * (value - mean));
+    }
+    /**
+     * Merge the statistics of one class from another trainer into this one's, using Chan's formula for combining M2
+     * @param statistics class * 3 + (0 count, 1 mean, 2 M2) to merge into
+     * @param class_code the class to merge into
+     * @param other statistics of the same layout to merge from
+     * @param other_class the class to merge from
+     */
+    private static void mergeStatistics(double[] statistics, int class_code, double[] other, int other_class){
+        int start = class_code * 3;
+        int other_start = other_class * 3;
+        double other_count = other[other_start];
+        if(other_count == 0){
+            return;
+        }
+        double count = statistics[start] + other_count;
+        double delta = other[other_start + 1] - statistics[start + 1];
+        statistics[start + 2] += other[other_start + 2] + delta * delta * statistics[start] * other_count / count;
+        statistics[start + 1] += delta * other_count / count;
+        statistics[start] = count;
+    }
+    /**
+     * @param into the dictionary to match values up with, values it doesn't have are added
+     * @param from the dictionary the codes come from
+     * @param size amount of codes of from to match up
+     * @return the code in into of each code of from
+     */
+    private static int[] remap(ColumnDictionary into, ColumnDictionary from, int size){
+        int[] remap = new int[size];
+        for(int code = 0;code<size;code++){
+            remap[code] = into.encode(from.decode(code));
+        }
+        return remap;
+    }
+}
@@ -0,0 +1,152 @@
+package classifier;
+
+import data.ColumnInfo;
+import data.DatasetEncoder;
+import data.EncodedDataset;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps a model up to date as labelled rows keep arriving, without retraining on everything seen so far. A writer adds
+ * rows with update or updateBatch, which only adds to the counts, and every so often a new model is built and
+ * published. Readers score against snapshot(), the last model published, which never changes, so they never wait on
+ * the writer or see half of an update. Publishing copies the dictionaries into the new model (copy on write), so the
+ * writer can keep handing out codes for new values while readers decode with the old ones
+ */
+public class OnlineLearner {
+    private ColumnInfo[] columns;
+    private String missing_value_designation;
+    private NaiveBayesTrainer trainer;
+    //publish a new model after this many rows, 0 to only publish when asked
+    private long publish_interval;
+    private long rows_since_publish;
+    private volatile NaiveBayesModel snapshot;
+    /**
+     * Start from rows that have already been encoded, imputed and binned, new rows are imputed with the same values and
+     * binned with the same edges
+     * @param data the rows to start with
+     */
+    public OnlineLearner(EncodedDataset data){
+        this.columns = data.getColumns();
+        this.missing_value_designation = data.getMissingValueDesignation();
+        this.trainer = new NaiveBayesTrainer(data);
+        this.trainer.addAll(data);
+        this.publish_interval = 0;
+        this.rows_since_publish = 0;
+        if(data.getRows() > 0){
+            publish();
+        }
+    }
+    /**
+     * Start with no rows. Binned columns would get their edges from whatever arrives first, so they are not allowed
+     * here, use "!gaussian" for continuous columns or start from a dataset instead
+     * @param header the header line of the file, holding the column names and attributes
+     * @param missing_value_designation the value used to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @throws IllegalArgumentException if a column is binned
+     */
+    public OnlineLearner(String header, String missing_value_designation, int default_bins){
+        this(emptyDataset(header,missing_value_designation,default_bins));
+    }
+    /**
+     * @param publish_interval publish a new model after this many rows have been added, 0 to only publish when asked
+     */
+    public synchronized void setPublishInterval(long publish_interval){
+        this.publish_interval = publish_interval;
+    }
+    /**
+     * Add a single labelled row
+     * @param fields the fields of the row, in the same order as the header
+     */
+    public void update(String[] fields){
+        updateBatch(Collections.singletonList(fields));
+    }
+    /**
+     * Add labelled rows, publishing a new model if the publish interval has been passed
+     * @param rows the fields of each row, in the same order as the header
+     */
+    public synchronized void updateBatch(List<String[]> rows){
+        DatasetEncoder encoder = new DatasetEncoder(this.columns,this.missing_value_designation);
+        for(String[] fields : rows){
+            encoder.addFields(impute(fields));
+        }
+        EncodedDataset batch = encoder.build();
+        //columns binned before keep their edges, so new rows land in the same bins
+        batch.binContinuousValues();
+        this.trainer.addAll(batch);
+        this.rows_since_publish += batch.getRows();
+        if(this.publish_interval > 0 && this.rows_since_publish >= this.publish_interval){
+            publish();
+        }
+    }
+    /**
+     * Build a model of every row added so far and make it the snapshot readers get
+     * @return the model published
+     */
+    public synchronized NaiveBayesModel publish(){
+        NaiveBayesModel built = this.trainer.build();
+        //the model gets its own copy of the columns, since the writer keeps adding to the dictionaries
+        ColumnInfo[] copies = new ColumnInfo[this.columns.length];
+        for(int column = 0;column<copies.length;column++){
+            copies[column] = this.columns[column].copy();
+        }
+        this.snapshot = built.withColumns(copies);
+        this.rows_since_publish = 0;
+        return this.snapshot;
+    }
+    /**
+     * @return the last model published, which never changes, so it can be scored against while rows are added, or
+     * null if nothing has been published yet
+     */
+    public NaiveBayesModel snapshot(){
+        return this.snapshot;
+    }
+    /**
+     * @return amount of rows counted so far, published or not
+     */
+    public synchronized long getRowCount(){
+        return this.trainer.getRowCount();
+    }
+    /**
+     * @param header the header line of the file, holding the column names and attributes
+     * @param missing_value_designation the value used to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return a dataset with the columns of the header and no rows
+     * @throws IllegalArgumentException if a column is binned
+     */
+    private static EncodedDataset emptyDataset(String header, String missing_value_designation, int default_bins){
+        EncodedDataset data = new DatasetEncoder(header,missing_value_designation,default_bins).build();
+        for(ColumnInfo column : data.getColumns()){
+            if(column.shouldBin() && !column.isGaussian()){
+                throw new IllegalArgumentException("Column " + column.getName() + " is binned, its edges have to come "
+                        + "from a dataset");
+            }
+        }
+        return data;
+    }
+    /**
+     * @param fields the fields of a row
+     * @return the fields, with missing values of imputed columns replaced with the value used when they were imputed
+     */
+    private String[] impute(String[] fields){
+        String[] imputed = fields;
+        for(int column = 0;column<this.columns.length;column++){
+            String impute_value = this.columns[column].getImputeValue();
+            if(impute_value == null){
+                continue;
+            }
+            if(column >= fields.length || fields[column].equals(this.missing_value_designation)){
+                if(imputed == fields){
+                    imputed = Arrays.copyOf(fields,Math.max(fields.length,this.columns.length));
+                    for(int x = fields.length;x<imputed.length;x++){
+                        imputed[x] = this.missing_value_designation;
+                    }
+                }
+                imputed[column] = impute_value;
+            }
+        }
+        return imputed;
+    }
+}
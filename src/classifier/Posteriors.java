@@ -0,0 +1,40 @@
+package classifier;
+
+/**
+ * Turns the log scores of a row into its prediction and posteriors, the same way for every scorer
+ */
+final class Posteriors {
+    private Posteriors(){
+    }
+    /**
+     * Pick the class with the highest score, and optionally turn the scores into posteriors
+     * @param scores the added up log scores
+     * @param score_start where the row's scores start
+     * @param classes amount of classes
+     * @param posteriors where the posteriors go, can be null, or scores itself to turn them into posteriors in place
+     * @param posterior_start where the row's posteriors start
+     * @return the class code with the highest score, the first one on a tie
+     */
+    static int finish(double[] scores, int score_start, int classes, double[] posteriors, int posterior_start){
+        int best = 0;
+        for(int class_code = 1;class_code<classes;class_code++){
+            if(scores[score_start + class_code] > scores[score_start + best]){
+                best = class_code;
+            }
+        }
+        if(posteriors != null){
+            //subtract the max before exponentiating so the biggest term is exp(0) and nothing overflows
+            double max = scores[score_start + best];
+            double total = 0;
+            for(int class_code = 0;class_code<classes;class_code++){
+                double exponent = Math.exp(scores[score_start + class_code] - max);
+                posteriors[posterior_start + class_code] = exponent;
+                total += exponent;
+            }
+            for(int class_code = 0;class_code<classes;class_code++){
+                posteriors[posterior_start + class_code] /= total;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,344 @@
+package classifier;
+
+import data.BinSketch;
+import data.ColumnDictionary;
+import data.ColumnInfo;
+import data.NumberParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Scores one row at a time for serving requests, either already encoded, as the raw fields of the row, or as the raw
+ * bytes of a csv line. Raw values go through the same steps training did: missing values are imputed with the value
+ * the column was imputed with, binned columns are parsed and put in their bin, and everything else is looked up in
+ * the dictionaries (never added to them). A predictor never changes once made, and keeps its scratch space per
+ * thread, so one predictor can be shared by every request thread, and nothing is allocated per row
+ */
+public class Predictor {
+    private final NaiveBayesModel model;
+    private final ColumnInfo[] columns;
+    private final int classes;
+    private final int class_index;
+    private final String missing_value_designation;
+    private final byte[] missing_bytes;
+    private final int[] cardinality;
+    private final int[] offsets;
+    private final double[] log_priors;
+    private final double[] log_likelihoods;
+    private final double[] log_unseen;
+    private final boolean[] gaussian;
+    private final double[] gaussian_means;
+    private final double[] gaussian_log_norms;
+    private final double[] gaussian_scales;
+    //value -> code of each column, so a string can be looked up by its cached hash code without making its bytes
+    private final HashMap<String,Integer>[] codes;
+    //code a missing value turns into for each column, -1 if the model doesn't know one
+    private final int[] missing_codes;
+    //number a missing value turns into for each numeric column, NaN if the column wasn't imputed
+    private final double[] missing_numbers;
+    //scratch space for the scores when no posteriors are asked for
+    private final ThreadLocal<double[]> scratch;
+    /**
+     * @param model the model to score against
+     * @param missing_value_designation the value used to indicate a missing value
+     */
+    public Predictor(NaiveBayesModel model, String missing_value_designation){
+        this.model = model;
+        this.classes = model.getClassCount();
+        this.class_index = model.getClassIndex();
+        this.missing_value_designation = missing_value_designation;
+        this.missing_bytes = missing_value_designation.getBytes(StandardCharsets.UTF_8);
+        this.cardinality = model.getCardinality();
+        this.offsets = model.getOffsets();
+        this.log_priors = model.getLogPriors();
+        this.log_likelihoods = model.getLogLikelihoods();
+        this.log_unseen = model.getLogUnseen();
+        this.gaussian = model.getGaussian();
+        this.gaussian_means = model.getGaussianMeans();
+        this.gaussian_log_norms = model.getGaussianLogNorms();
+        this.gaussian_scales = model.getGaussianScales();
+        //copies, so nobody can change the dictionaries while requests are looking values up
+        this.columns = new ColumnInfo[model.getColumnCount()];
+        //java can't make an array of a generic type, so the array is made raw and handed out typed
+        @SuppressWarnings({"unchecked","rawtypes"})
+        HashMap<String,Integer>[] codes = new HashMap[this.columns.length];
+        this.codes = codes;
+        this.missing_codes = new int[this.columns.length];
+        this.missing_numbers = new double[this.columns.length];
+        for(int column = 0;column<this.columns.length;column++){
+            ColumnInfo info = model.getColumns()[column].copy();
+            this.columns[column] = info;
+            ColumnDictionary dictionary = info.getDictionary();
+            this.codes[column] = new HashMap<>();
+            for(int code = 0;code<dictionary.size();code++){
+                this.codes[column].put(dictionary.decode(code),code);
+            }
+            String impute_value = info.getImputeValue();
+            this.missing_numbers[column] = impute_value == null ? Double.NaN : NumberParser.parse(impute_value);
+            if(info.isNumeric() && !Double.isNaN(this.missing_numbers[column]) && info.getBinEdges() != null){
+                this.missing_codes[column] = BinSketch.findBin(info.getBinEdges(),this.missing_numbers[column]);
+            }else{
+                this.missing_codes[column] = dictionary.lookup(impute_value == null ? missing_value_designation
+                        : impute_value);
+            }
+        }
+        this.scratch = ThreadLocal.withInitial(() -> new double[this.classes]);
+    }
+    /**
+     * Score a row given as the code of each column, gaussian columns are left out
+     * @param row code of each column, the class column is ignored and codes the model does not know are allowed
+     * @param posteriors where P(class|row) goes, at least as long as the amount of classes, can be null if not wanted
+     * @return the predicted class code
+     */
+    public int predict(int[] row, double[] posteriors){
+        return predict(row,null,posteriors);
+    }
+    /**
+     * Score a row given as the code of each column, and the value of each gaussian column
+     * @param row code of each column, the class column is ignored and codes the model does not know are allowed
+     * @param values value of each column in the same places as row, only read for gaussian columns (NaN if missing),
+     *               can be null to leave gaussian columns out
+     * @param posteriors where P(class|row) goes, at least as long as the amount of classes, can be null if not wanted
+     * @return the predicted class code
+     */
+    public int predict(int[] row, double[] values, double[] posteriors){
+        double[] scores = start(posteriors);
+        for(int column = 0;column<row.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.gaussian[column]){
+                if(values != null){
+                    addDensity(scores,column,values[column]);
+                }
+                continue;
+            }
+            addCode(scores,column,row[column]);
+        }
+        return Posteriors.finish(scores,0,this.classes,posteriors,0);
+    }
+    /**
+     * Score a row given as its raw fields
+     * @param fields the fields of the row in the same order as the header, the class is ignored and missing trailing
+     *               fields count as missing values
+     * @param posteriors where P(class|row) goes, at least as long as the amount of classes, can be null if not wanted
+     * @return the predicted class code
+     */
+    public int predict(String[] fields, double[] posteriors){
+        double[] scores = start(posteriors);
+        for(int column = 0;column<this.columns.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            String field = column < fields.length ? fields[column] : this.missing_value_designation;
+            if(this.columns[column].isNumeric()){
+                addNumber(scores,column,parseField(field));
+            }else{
+                addCode(scores,column,fieldCode(column,field));
+            }
+        }
+        return Posteriors.finish(scores,0,this.classes,posteriors,0);
+    }
+    /**
+     * Turn the raw fields of a row into what a BatchScorer reads, going through the same steps as predict does
+     * @param fields the fields of the row in the same order as the header, missing trailing fields count as missing
+     * @param row_codes where the code of each column goes, the class column gets 0
+     * @param row_values where the value of each gaussian column goes, in the same places as row_codes
+     * @param row_start where the row starts in row_codes and row_values
+     */
+    public void encode(String[] fields, int[] row_codes, double[] row_values, int row_start){
+        for(int column = 0;column<this.columns.length;column++){
+            row_codes[row_start + column] = 0;
+            row_values[row_start + column] = Double.NaN;
+            if(column == this.class_index){
+                continue;
+            }
+            String field = column < fields.length ? fields[column] : this.missing_value_designation;
+            if(this.gaussian[column]){
+                row_values[row_start + column] = imputeNumber(column,parseField(field));
+            }else if(this.columns[column].isNumeric()){
+                row_codes[row_start + column] = numberCode(column,parseField(field));
+            }else{
+                row_codes[row_start + column] = fieldCode(column,field);
+            }
+        }
+    }
+    /**
+     * Score a row given as a raw csv line, split and looked up straight from its bytes
+     * @param line buffer holding the utf-8 bytes of the line
+     * @param start first byte of the line
+     * @param end byte the line stops at (exclusive), a trailing carriage return is ignored
+     * @param posteriors where P(class|row) goes, at least as long as the amount of classes, can be null if not wanted
+     * @return the predicted class code
+     */
+    public int predict(byte[] line, int start, int end, double[] posteriors){
+        if(end > start && line[end - 1] == '\r'){
+            end--;
+        }
+        double[] scores = start(posteriors);
+        int field_start = start;
+        int column = 0;
+        for(int x = start;x<=end && column<this.columns.length;x++){
+            if(x != end && line[x] != ','){
+                continue;
+            }
+            if(column != this.class_index){
+                if(this.columns[column].isNumeric()){
+                    addNumber(scores,column,NumberParser.parse(line,field_start,x,this.missing_bytes));
+                }else if(isMissing(line,field_start,x)){
+                    addCode(scores,column,this.missing_codes[column]);
+                }else{
+                    addCode(scores,column,this.columns[column].getDictionary().lookup(line,field_start,x));
+                }
+            }
+            column++;
+            field_start = x + 1;
+        }
+        //fields the line doesn't have are missing
+        for(;column<this.columns.length;column++){
+            if(column == this.class_index){
+                continue;
+            }
+            if(this.columns[column].isNumeric()){
+                addNumber(scores,column,Double.NaN);
+            }else{
+                addCode(scores,column,this.missing_codes[column]);
+            }
+        }
+        return Posteriors.finish(scores,0,this.classes,posteriors,0);
+    }
+    /**
+     * @param class_code a code the model can predict
+     * @return the name of the class
+     */
+    public String className(int class_code){
+        return this.columns[this.class_index].getDictionary().decode(class_code);
+    }
+    public int getClassCount(){
+        return this.classes;
+    }
+    public ColumnInfo[] getColumns(){
+        return this.columns;
+    }
+    public String getMissingValueDesignation(){
+        return this.missing_value_designation;
+    }
+    public NaiveBayesModel getModel(){
+        return this.model;
+    }
+    /**
+     * @param posteriors where the caller wants the posteriors, or null
+     * @return where to add up the scores, starting at the log priors
+     */
+    private double[] start(double[] posteriors){
+        double[] scores = posteriors != null ? posteriors : this.scratch.get();
+        System.arraycopy(this.log_priors,0,scores,0,this.classes);
+        return scores;
+    }
+    /**
+     * Add a numeric column's value, imputing a missing value, then putting it in its bin or taking its density
+     * @param scores where the scores are being added up
+     * @param column the numeric column
+     * @param value the parsed value, NaN if missing
+     */
+    private void addNumber(double[] scores, int column, double value){
+        if(this.gaussian[column]){
+            addDensity(scores,column,imputeNumber(column,value));
+        }else{
+            addCode(scores,column,numberCode(column,value));
+        }
+    }
+    /**
+     * @param field a raw field of a numeric column
+     * @return the parsed field, NaN if it is missing or not a number
+     */
+    private double parseField(String field){
+        return field.equals(this.missing_value_designation) ? Double.NaN : NumberParser.parse(field);
+    }
+    /**
+     * @param column a numeric column
+     * @param value the parsed value, NaN if missing
+     * @return the value, or the value the column was imputed with if it is missing
+     */
+    private double imputeNumber(int column, double value){
+        return Double.isNaN(value) ? this.missing_numbers[column] : value;
+    }
+    /**
+     * @param column a binned column
+     * @param value the parsed value, NaN if missing
+     * @return the code of the bin the value (or the imputed value if missing) falls in
+     */
+    private int numberCode(int column, double value){
+        value = imputeNumber(column,value);
+        double[] bin_edges = this.columns[column].getBinEdges();
+        if(Double.isNaN(value) || bin_edges == null){
+            return this.missing_codes[column];
+        }
+        return BinSketch.findBin(bin_edges,value);
+    }
+    /**
+     * @param column a column encoded with its dictionary
+     * @param field the raw field
+     * @return the code of the field, or of the imputed value if it is missing, -1 if the model doesn't know it
+     */
+    private int fieldCode(int column, String field){
+        if(field.equals(this.missing_value_designation)){
+            return this.missing_codes[column];
+        }
+        Integer code = this.codes[column].get(field);
+        return code == null ? -1 : code;
+    }
+    /**
+     * @param scores where the scores are being added up
+     * @param column the column of the value
+     * @param value the code of the value, codes the model doesn't know only get the smoothing
+     */
+    private void addCode(double[] scores, int column, int value){
+        double[] table;
+        int table_start;
+        if(value >= 0 && value < this.cardinality[column]){
+            table = this.log_likelihoods;
+            table_start = (this.offsets[column] + value) * this.classes;
+        }else{
+            table = this.log_unseen;
+            table_start = column * this.classes;
+        }
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            scores[class_code] += table[table_start + class_code];
+        }
+    }
+    /**
+     * @param scores where the scores are being added up
+     * @param column the gaussian column
+     * @param value the value, a missing (NaN) value adds nothing
+     */
+    private void addDensity(double[] scores, int column, double value){
+        if(Double.isNaN(value)){
+            return;
+        }
+        int start = column * this.classes;
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            double difference = value - this.gaussian_means[start + class_code];
+            scores[class_code] += this.gaussian_log_norms[start + class_code]
+                    - difference * difference * this.gaussian_scales[start + class_code];
+        }
+    }
+    /**
+     * @param line buffer holding the field
+     * @param start first byte of the field
+     * @param end byte the field stops at (exclusive)
+     * @return if the field is the missing value designation
+     */
+    private boolean isMissing(byte[] line, int start, int end){
+        if(end - start != this.missing_bytes.length){
+            return false;
+        }
+        for(int x = 0;x<this.missing_bytes.length;x++){
+            if(line[start + x] != this.missing_bytes[x]){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,125 @@
+package classifier;
+
+import data.ColumnDictionary;
+
+/**
+ * A naive bayes classifier over sparse rows. Rather than summing log P(value|class) over every feature, it starts from
+ * the log score of a row where every feature has its default, worked out once when the model is built, and only adds
+ * log P(value|class) - log P(default|class) for the features a row stores. Bernoulli features are the same with the
+ * values present and absent, and multinomial features add log P(feature|class) once for every time the feature
+ * occurred. Scoring a row takes time in proportion to its stored cells. The model never changes once it has been
+ * built, so it can be shared between threads freely
+ */
+public class SparseNaiveBayesModel {
+    private final EventModel event_model;
+    private final ColumnDictionary class_dictionary;
+    private final int classes;
+    private final int features;
+    private final int[] cardinality;
+    private final int[] defaults;
+    private final int[] offsets;
+    //log P(class) + the sum of log P(default|class) over every feature
+    private final double[] all_defaults;
+    //(offsets[feature] + value) * classes + class -> log P(value|class) - log P(default|class), for bernoulli features
+    //feature * classes + class -> log P(present|class) - log P(absent|class), and for multinomial log P(feature|class)
+    private final double[] log_ratios;
+    //feature * classes + class -> log P(value|class) - log P(default|class) for a value the model does not know
+    private final double[] unseen_ratios;
+    /**
+     * @param event_model what the values of the features stand for
+     * @param class_dictionary dictionary of the class codes
+     * @param classes amount of classes
+     * @param features amount of features
+     * @param cardinality amount of values each feature can have, the default included
+     * @param defaults value of each feature in rows that leave it out
+     * @param offsets where each feature starts in log_ratios, in values
+     * @param all_defaults log score of each class for a row with nothing but defaults
+     * @param log_ratios log P(value|class) - log P(default|class), (offsets[feature] + value) * classes + class
+     * @param unseen_ratios log P(value|class) - log P(default|class) for unknown values, feature * classes + class
+     */
+    SparseNaiveBayesModel(EventModel event_model, ColumnDictionary class_dictionary, int classes, int features,
+                          int[] cardinality, int[] defaults, int[] offsets, double[] all_defaults, double[] log_ratios,
+                          double[] unseen_ratios){
+        this.event_model = event_model;
+        this.class_dictionary = class_dictionary;
+        this.classes = classes;
+        this.features = features;
+        this.cardinality = cardinality;
+        this.defaults = defaults;
+        this.offsets = offsets;
+        this.all_defaults = all_defaults;
+        this.log_ratios = log_ratios;
+        this.unseen_ratios = unseen_ratios;
+    }
+    /**
+     * Work out the log score of every class for a row
+     * @param indexes feature of each cell
+     * @param values value of each cell
+     * @param start where the row's cells start
+     * @param end where the row's cells end (exclusive)
+     * @param scores where the log score of each class goes, starting at scores_start
+     * @param scores_start where the scores start
+     */
+    public void logScores(int[] indexes, int[] values, int start, int end, double[] scores, int scores_start){
+        System.arraycopy(this.all_defaults,0,scores,scores_start,this.classes);
+        if(this.event_model != EventModel.CATEGORICAL){
+            boolean multinomial = this.event_model == EventModel.MULTINOMIAL;
+            for(int x = start;x<end;x++){
+                int feature = indexes[x];
+                if(feature >= this.features || values[x] <= 0){
+                    continue;
+                }
+                //a bernoulli feature counts once however big its value
+                double times = multinomial ? values[x] : 1;
+                int table_start = feature * this.classes;
+                for(int class_code = 0;class_code<this.classes;class_code++){
+                    scores[scores_start + class_code] += times * this.log_ratios[table_start + class_code];
+                }
+            }
+            return;
+        }
+        for(int x = start;x<end;x++){
+            int feature = indexes[x];
+            int value = values[x];
+            //a feature the model never saw says nothing about the class
+            if(feature >= this.features || value == this.defaults[feature]){
+                continue;
+            }
+            double[] table;
+            int table_start;
+            if(value >= 0 && value < this.cardinality[feature]){
+                table = this.log_ratios;
+                table_start = (this.offsets[feature] + value) * this.classes;
+            }else{
+                table = this.unseen_ratios;
+                table_start = feature * this.classes;
+            }
+            for(int class_code = 0;class_code<this.classes;class_code++){
+                scores[scores_start + class_code] += table[table_start + class_code];
+            }
+        }
+    }
+    /**
+     * @param class_code a code the model can predict
+     * @return the name of the class
+     */
+    public String className(int class_code){
+        return this.class_dictionary.decode(class_code);
+    }
+    /**
+     * @param class_code the code of the class
+     * @return the log score of the class for a row with nothing but defaults
+     */
+    public double allDefaultsScore(int class_code){
+        return this.all_defaults[class_code];
+    }
+    public EventModel getEventModel(){
+        return this.event_model;
+    }
+    public int getClassCount(){
+        return this.classes;
+    }
+    public int getFeatureCount(){
+        return this.features;
+    }
+}
@@ -0,0 +1,395 @@
+package classifier;
+
+import data.ColumnDictionary;
+import data.SparseDataset;
+
+import java.util.Arrays;
+
+/**
+ * Trains a naive bayes classifier on a SparseDataset, only ever touching the cells that are stored. How often each
+ * feature had its default with each class is never counted, it is whatever is left of the class count once the other
+ * values have been counted, so training takes time in proportion to the stored cells rather than rows * features.
+ * What gets counted depends on the event model: the rows with each value for categorical features, the rows a feature
+ * is present in for bernoulli features, and the total of the values (ex. word counts) for multinomial features
+ */
+public class SparseNaiveBayesTrainer {
+    private EventModel event_model;
+    private int features;
+    private int classes;
+    //classes there is room for in counts, grown ahead of the classes a row at a time brings
+    private int class_capacity;
+    private ColumnDictionary class_dictionary;
+    private int[] cardinality;
+    private int[] defaults;
+    //where each feature's values start in counts, in values
+    private int[] offsets;
+    //how many training rows had each class
+    private long[] class_counts;
+    //(offsets[feature] + value) * class_capacity + class -> how many training rows had that value and class, 0 for
+    //defaults, for bernoulli and multinomial features every feature has a single value counting presence or the
+    //values' total
+    private long[] counts;
+    //class -> total of every multinomial value counted with the class
+    private long[] value_totals;
+    /**
+     * Count categorical features
+     * @param data the dataset the rows will come from, used to size the counts
+     */
+    public SparseNaiveBayesTrainer(SparseDataset data){
+        this(data,EventModel.CATEGORICAL);
+    }
+    /**
+     * @param data the dataset the rows will come from, used to size the counts
+     * @param event_model what the values of the features stand for, bernoulli and multinomial features have a default
+     *                    of 0
+     * @throws IllegalArgumentException if bernoulli or multinomial features have a default other than 0, or there are
+     *                                  too many values to count
+     */
+    public SparseNaiveBayesTrainer(SparseDataset data, EventModel event_model){
+        this.event_model = event_model;
+        this.features = data.getFeatureCount();
+        this.classes = data.getClassCount();
+        this.class_dictionary = data.getClassDictionary();
+        this.cardinality = data.getCardinality().clone();
+        this.defaults = data.getDefaults().clone();
+        if(event_model != EventModel.CATEGORICAL){
+            //one count per feature, how many rows it was in or its total
+            for(int feature = 0;feature<this.features;feature++){
+                if(this.defaults[feature] != 0){
+                    throw new IllegalArgumentException(event_model + " features need a default of 0");
+                }
+                this.cardinality[feature] = 1;
+            }
+        }
+        this.offsets = new int[this.features + 1];
+        for(int feature = 0;feature<this.features;feature++){
+            this.offsets[feature + 1] = this.offsets[feature] + this.cardinality[feature];
+        }
+        this.class_capacity = this.classes;
+        this.class_counts = new long[this.classes];
+        this.counts = new long[tableSize(this.offsets[this.features],this.classes)];
+        this.value_totals = new long[this.classes];
+    }
+    /**
+     * Count bernoulli or multinomial features of rows that are never stored as a dataset, ex. documents hashed while
+     * they are read (see addRow), so memory only depends on the amount of features and classes
+     * @param features amount of features, ex. the buckets of a TextHasher
+     * @param class_dictionary dictionary to encode the classes with, classes are added as rows bring them
+     * @param event_model BERNOULLI or MULTINOMIAL
+     * @throws IllegalArgumentException if the event model is categorical, which needs the values of a dataset, or
+     *                                  there are too many features to count
+     */
+    public SparseNaiveBayesTrainer(int features, ColumnDictionary class_dictionary, EventModel event_model){
+        if(event_model == EventModel.CATEGORICAL){
+            throw new IllegalArgumentException("Categorical features need a dataset to size their values");
+        }
+        //checked before anything is allocated for the features
+        int size = tableSize(features,class_dictionary.size());
+        this.event_model = event_model;
+        this.features = features;
+        this.classes = class_dictionary.size();
+        this.class_dictionary = class_dictionary;
+        this.cardinality = new int[features];
+        Arrays.fill(this.cardinality,1);
+        this.defaults = new int[features];
+        this.offsets = new int[features + 1];
+        for(int feature = 0;feature<features;feature++){
+            this.offsets[feature + 1] = feature + 1;
+        }
+        this.class_capacity = this.classes;
+        this.class_counts = new long[this.classes];
+        this.counts = new long[size];
+        this.value_totals = new long[this.classes];
+    }
+    /**
+     * Count a single row of bernoulli or multinomial features straight from its cells
+     * @param class_value the class of the row
+     * @param indexes feature of each cell, each feature at most once
+     * @param values value of each cell
+     * @param length amount of cells
+     * @throws IllegalStateException if the features are categorical
+     * @throws IllegalArgumentException if a feature is out of range
+     */
+    public void addRow(String class_value, int[] indexes, int[] values, int length){
+        if(this.event_model == EventModel.CATEGORICAL){
+            throw new IllegalStateException("Categorical rows have to come from a dataset");
+        }
+        for(int x = 0;x<length;x++){
+            if(indexes[x] < 0 || indexes[x] >= this.features){
+                throw new IllegalArgumentException("Feature " + indexes[x] + " is out of range");
+            }
+        }
+        int class_code = this.class_dictionary.encode(class_value);
+        ensureClasses(this.class_dictionary.size());
+        countRow(class_code,indexes,values,0,length,1);
+    }
+    /**
+     * Count every row in the dataset
+     * @param data the dataset to count, with the same shape as the one the trainer was made with
+     */
+    public void addAll(SparseDataset data){
+        checkShape(data);
+        int[] indexes = data.getIndexes();
+        int[] values = data.getValues();
+        for(int row = 0;row<data.getRows();row++){
+            countRow(data.classCode(row),indexes,values,data.rowStart(row),data.rowEnd(row),1);
+        }
+    }
+    /**
+     * Count rows[from] until rows[to]
+     * @param data the dataset holding the rows, with the same shape as the one the trainer was made with
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to count
+     * @param to position in rows to stop counting at (exclusive)
+     */
+    public void addRows(SparseDataset data, int[] rows, int from, int to){
+        countRows(data,rows,from,to,1);
+    }
+    /**
+     * Take rows that were counted before back out of the counts
+     * @param data the dataset holding the rows, with the same shape as the one the trainer was made with
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to take out
+     * @param to position in rows to stop taking out at (exclusive)
+     */
+    public void removeRows(SparseDataset data, int[] rows, int from, int to){
+        countRows(data,rows,from,to,-1);
+    }
+    /**
+     * Add the counts of another trainer to this one
+     * @param other a trainer made with a dataset of the same shape
+     * @throws IllegalArgumentException if the other trainer has a different shape
+     */
+    public void merge(SparseNaiveBayesTrainer other){
+        if(other.offsets[other.features] != this.offsets[this.features] || other.classes != this.classes
+                || other.features != this.features || other.event_model != this.event_model){
+            throw new IllegalArgumentException("Can only merge trainers with the same shape");
+        }
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            this.class_counts[class_code] += other.class_counts[class_code];
+            this.value_totals[class_code] += other.value_totals[class_code];
+        }
+        //the trainers may have grown room for a different amount of classes
+        for(int value = 0;value<this.offsets[this.features];value++){
+            for(int class_code = 0;class_code<this.classes;class_code++){
+                this.counts[value * this.class_capacity + class_code] += other.counts[value * other.class_capacity
+                        + class_code];
+            }
+        }
+    }
+    /**
+     * @return amount of rows counted so far
+     */
+    public long getRowCount(){
+        long total = 0;
+        for(long count : this.class_counts){
+            total += count;
+        }
+        return total;
+    }
+    /**
+     * Turn the counts into a model using laplace smoothing
+     * @return the trained model
+     */
+    public SparseNaiveBayesModel build(){
+        return build(1.0);
+    }
+    /**
+     * Turn the counts into a model. For categorical features P(value|class) = (count + alpha) / (class count + alpha *
+     * values of the feature), the same as NaiveBayesTrainer gives a dense column, and bernoulli features are the same
+     * with two values, present and absent. The model keeps the score of a row holding only defaults for each class,
+     * and for every other value how much it changes that score. For multinomial features P(feature|class) = (total +
+     * alpha) / (total of every feature + alpha * features), and a row holding only defaults scores the prior alone
+     * @param alpha the amount added to every count, 1 is laplace smoothing
+     * @return the trained model
+     */
+    public SparseNaiveBayesModel build(double alpha){
+        long total = getRowCount();
+        double[] all_defaults = new double[this.classes];
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            all_defaults[class_code] = Math.log((double)this.class_counts[class_code] / total);
+        }
+        double[] log_ratios = new double[tableSize(this.offsets[this.features],this.classes)];
+        double[] unseen_ratios = new double[tableSize(this.features,this.classes)];
+        if(this.event_model == EventModel.MULTINOMIAL){
+            buildMultinomial(alpha,log_ratios);
+        }else if(this.event_model == EventModel.BERNOULLI){
+            buildBernoulli(alpha,all_defaults,log_ratios);
+        }else{
+            buildCategorical(alpha,all_defaults,log_ratios,unseen_ratios);
+        }
+        return new SparseNaiveBayesModel(this.event_model,this.class_dictionary,this.classes,this.features,
+                this.cardinality,this.defaults,this.offsets,all_defaults,log_ratios,unseen_ratios);
+    }
+    public EventModel getEventModel(){
+        return this.event_model;
+    }
+    /**
+     * @param alpha the amount added to every count
+     * @param all_defaults where the sum of log P(default|class) of every feature is added to
+     * @param log_ratios where log P(value|class) - log P(default|class) goes
+     * @param unseen_ratios where log P(value|class) - log P(default|class) of values the model does not know goes
+     */
+    private void buildCategorical(double alpha, double[] all_defaults, double[] log_ratios, double[] unseen_ratios){
+        for(int feature = 0;feature<this.features;feature++){
+            int values = this.cardinality[feature];
+            int start = this.offsets[feature];
+            for(int class_code = 0;class_code<this.classes;class_code++){
+                //every row has some value for every feature, so the class count is the total of the feature's values
+                long class_total = this.class_counts[class_code];
+                double log_denominator = Math.log(class_total + alpha * values);
+                long default_count = class_total;
+                for(int value = 0;value<values;value++){
+                    default_count -= this.counts[(start + value) * this.class_capacity + class_code];
+                }
+                double log_default = Math.log(default_count + alpha) - log_denominator;
+                all_defaults[class_code] += log_default;
+                for(int value = 0;value<values;value++){
+                    double count = this.counts[(start + value) * this.class_capacity + class_code];
+                    log_ratios[(start + value) * this.classes + class_code] = value == this.defaults[feature] ? 0
+                            : Math.log(count + alpha) - log_denominator - log_default;
+                }
+                //a value the model has never seen gets the smoothing amount alone
+                unseen_ratios[feature * this.classes + class_code] = Math.log(alpha) - log_denominator - log_default;
+            }
+        }
+    }
+    /**
+     * @param alpha the amount added to every count
+     * @param all_defaults where the sum of log P(absent|class) of every feature is added to
+     * @param log_ratios where log P(present|class) - log P(absent|class) goes
+     */
+    private void buildBernoulli(double alpha, double[] all_defaults, double[] log_ratios){
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            double log_denominator = Math.log(this.class_counts[class_code] + 2 * alpha);
+            for(int feature = 0;feature<this.features;feature++){
+                long present = this.counts[feature * this.class_capacity + class_code];
+                double log_present = Math.log(present + alpha) - log_denominator;
+                double log_absent = Math.log(this.class_counts[class_code] - present + alpha) - log_denominator;
+                all_defaults[class_code] += log_absent;
+                log_ratios[feature * this.classes + class_code] = log_present - log_absent;
+            }
+        }
+    }
+    /**
+     * @param alpha the amount added to every count
+     * @param log_ratios where log P(feature|class) goes, which a row adds once for every time the feature occurred
+     */
+    private void buildMultinomial(double alpha, double[] log_ratios){
+        for(int class_code = 0;class_code<this.classes;class_code++){
+            double log_denominator = Math.log(this.value_totals[class_code] + alpha * this.features);
+            for(int feature = 0;feature<this.features;feature++){
+                double total = this.counts[feature * this.class_capacity + class_code];
+                log_ratios[feature * this.classes + class_code] = Math.log(total + alpha) - log_denominator;
+            }
+        }
+    }
+    /**
+     * Add amount to the counts of rows[from] until rows[to]
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to count
+     * @param to position in rows to stop counting at (exclusive)
+     * @param amount 1 to count the rows, -1 to take them back out
+     */
+    private void countRows(SparseDataset data, int[] rows, int from, int to, long amount){
+        checkShape(data);
+        int[] indexes = data.getIndexes();
+        int[] values = data.getValues();
+        for(int x = from;x<to;x++){
+            int row = rows[x];
+            countRow(data.classCode(row),indexes,values,data.rowStart(row),data.rowEnd(row),amount);
+        }
+    }
+    /**
+     * Add amount to the counts of one row's cells
+     * @param class_code the class of the row
+     * @param indexes feature of each cell
+     * @param values value of each cell
+     * @param start where the row's cells start
+     * @param end where the row's cells end (exclusive)
+     * @param amount 1 to count the row, -1 to take it back out
+     */
+    private void countRow(int class_code, int[] indexes, int[] values, int start, int end, long amount){
+        this.class_counts[class_code] += amount;
+        if(this.event_model == EventModel.MULTINOMIAL){
+            for(int x = start;x<end;x++){
+                this.counts[indexes[x] * this.class_capacity + class_code] += amount * values[x];
+                this.value_totals[class_code] += amount * values[x];
+            }
+            return;
+        }
+        if(this.event_model == EventModel.BERNOULLI){
+            //SparseDatasetBuilder keeps one cell per feature in a row, so each cell is one row the feature is in
+            for(int x = start;x<end;x++){
+                if(values[x] > 0){
+                    this.counts[indexes[x] * this.class_capacity + class_code] += amount;
+                }
+            }
+            return;
+        }
+        for(int x = start;x<end;x++){
+            int feature = indexes[x];
+            //a stored default would be counted twice, once here and once as what is left of the class count
+            if(values[x] != this.defaults[feature]){
+                this.counts[(this.offsets[feature] + values[x]) * this.class_capacity + class_code] += amount;
+            }
+        }
+    }
+    /**
+     * Make room for more classes, which changes the layout of every feature's counts, so the room is doubled to only
+     * copy the counts a few times however many classes the rows bring
+     * @param data_classes amount of classes needed
+     * @throws IllegalArgumentException if there are too many values and classes to count
+     */
+    private void ensureClasses(int data_classes){
+        if(data_classes <= this.class_capacity){
+            this.classes = Math.max(this.classes,data_classes);
+            return;
+        }
+        int values = this.offsets[this.features];
+        int capacity = Math.max(data_classes,this.class_capacity * 2);
+        //don't let the doubling be what makes the counts too big
+        if((long)values * capacity > Integer.MAX_VALUE){
+            capacity = data_classes;
+        }
+        long[] grown = new long[tableSize(values,capacity)];
+        for(int value = 0;value<values;value++){
+            System.arraycopy(this.counts,value * this.class_capacity,grown,value * capacity,this.classes);
+        }
+        this.counts = grown;
+        this.class_counts = Arrays.copyOf(this.class_counts,capacity);
+        this.value_totals = Arrays.copyOf(this.value_totals,capacity);
+        this.class_capacity = capacity;
+        this.classes = data_classes;
+    }
+    /**
+     * @param values amount of values, or features with a single count
+     * @param classes amount of classes
+     * @return size of a table with an entry for each value and class
+     * @throws IllegalArgumentException if the table would not fit in an array
+     */
+    private static int tableSize(int values, int classes){
+        long size = (long)values * classes;
+        if(size > Integer.MAX_VALUE){
+            throw new IllegalArgumentException(values + " values of " + classes + " classes are too many to count, "
+                    + "at most " + Integer.MAX_VALUE + " fit in a trainer");
+        }
+        return (int)size;
+    }
+    /**
+     * @param data a dataset rows are coming from
+     * @throws IllegalArgumentException if the dataset has more features, values or classes than the trainer
+     */
+    private void checkShape(SparseDataset data){
+        boolean fits = data.getFeatureCount() <= this.features && data.getClassCount() <= this.classes;
+        //bernoulli and multinomial features take any value
+        for(int feature = 0;feature<data.getFeatureCount() && fits && this.event_model == EventModel.CATEGORICAL;
+            feature++){
+            fits = data.getCardinality()[feature] <= this.cardinality[feature];
+        }
+        if(!fits){
+            throw new IllegalArgumentException("The dataset has more features, values or classes than the trainer");
+        }
+    }
+}
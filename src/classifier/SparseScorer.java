@@ -0,0 +1,57 @@
+package classifier;
+
+import data.SparseDataset;
+
+/**
+ * Scores sparse rows against a SparseNaiveBayesModel, each row starting from the all defaults score and only adjusted
+ * for the cells it stores. A scorer keeps scratch space for the scores, so use one scorer per thread (the model can be
+ * shared)
+ */
+public class SparseScorer {
+    private SparseNaiveBayesModel model;
+    private int classes;
+    //scratch space, class -> log score
+    private double[] scores;
+    /**
+     * @param model the model to score against
+     */
+    public SparseScorer(SparseNaiveBayesModel model){
+        this.model = model;
+        this.classes = model.getClassCount();
+        this.scores = new double[this.classes];
+    }
+    /**
+     * Score rows[from] until rows[to], writing the prediction for rows[x] into predictions[x - from]
+     * @param data the dataset holding the rows
+     * @param rows indexes of rows within the dataset
+     * @param from first position in rows to score
+     * @param to position in rows to stop scoring at (exclusive)
+     * @param predictions where the predicted class codes go, needs room for to - from predictions
+     * @param posteriors where P(class|row) goes at (x - from) * classes + class, can be null if not wanted
+     */
+    public void score(SparseDataset data, int[] rows, int from, int to, int[] predictions, double[] posteriors){
+        int[] indexes = data.getIndexes();
+        int[] values = data.getValues();
+        for(int x = from;x<to;x++){
+            int row = rows[x];
+            this.model.logScores(indexes,values,data.rowStart(row),data.rowEnd(row),this.scores,0);
+            predictions[x - from] = Posteriors.finish(this.scores,0,this.classes,posteriors,(x - from) * this.classes);
+        }
+    }
+    /**
+     * Score a single row given as its cells
+     * @param indexes feature of each cell
+     * @param values value of each cell
+     * @param start where the row's cells start
+     * @param end where the row's cells end (exclusive)
+     * @param posteriors where P(class|row) goes, can be null if not wanted
+     * @return the predicted class code
+     */
+    public int predict(int[] indexes, int[] values, int start, int end, double[] posteriors){
+        this.model.logScores(indexes,values,start,end,this.scores,0);
+        return Posteriors.finish(this.scores,0,this.classes,posteriors,0);
+    }
+    public SparseNaiveBayesModel getModel(){
+        return this.model;
+    }
+}
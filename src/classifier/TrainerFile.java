@@ -0,0 +1,66 @@
+package classifier;
+
+import data.BinaryFormat;
+import data.ColumnInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Binary file holding the counts of a trainer rather than a finished model, so training can be split between
+ * processes and the counts merged afterwards. The file holds a header, the columns (with dictionaries, bin edges and
+ * impute values), then the class counts, the value counts of each column and the statistics of gaussian columns
+ */
+public class TrainerFile {
+    private static final String MAGIC = "NBTR";
+    private static final int VERSION = 1;
+    /**
+     * @param trainer the trainer to write
+     * @param path where to write it
+     * @throws IOException if the file can't be written
+     */
+    public static void write(NaiveBayesTrainer trainer, Path path) throws IOException{
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))){
+            BinaryFormat.writeHeader(output,MAGIC,VERSION);
+            BinaryFormat.writeColumns(output,trainer.getColumns());
+            output.writeInt(trainer.getClassIndex());
+            output.writeInt(trainer.getClasses());
+            BinaryFormat.writeLongs(output,trainer.getClassCounts());
+            BinaryFormat.writeInts(output,trainer.getCardinality());
+            for(long[] column_counts : trainer.getCounts()){
+                BinaryFormat.writeLongs(output,column_counts);
+            }
+            for(double[] statistics : trainer.getGaussianStatistics()){
+                BinaryFormat.writeDoubles(output,statistics);
+            }
+        }
+    }
+    /**
+     * @param path a file written by write
+     * @return a trainer with the counts that were written, which can be merged with others or built into a model
+     * @throws IOException if the file can't be read or is not a trainer file
+     */
+    public static NaiveBayesTrainer read(Path path) throws IOException{
+        ByteBuffer input = BinaryFormat.map(path);
+        BinaryFormat.readHeader(input,MAGIC,VERSION);
+        ColumnInfo[] columns = BinaryFormat.readColumns(input);
+        int class_index = input.getInt();
+        int classes = input.getInt();
+        long[] class_counts = BinaryFormat.readLongs(input);
+        int[] cardinality = BinaryFormat.readInts(input);
+        long[][] counts = new long[columns.length][];
+        for(int column = 0;column<columns.length;column++){
+            counts[column] = BinaryFormat.readLongs(input);
+        }
+        double[][] gaussian_statistics = new double[columns.length][];
+        for(int column = 0;column<columns.length;column++){
+            gaussian_statistics[column] = BinaryFormat.readDoubles(input);
+        }
+        return new NaiveBayesTrainer(columns,class_index,classes,class_counts,counts,cardinality,
+                gaussian_statistics);
+    }
+}
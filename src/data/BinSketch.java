@@ -0,0 +1,264 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Summary of a continuous column gathered while the file is parsed, so binning doesn't need passes of its own. It keeps
+ * the min and max for equal width bins, and optionally a fixed size uniform sample of the values for equal frequency
+ * (quantile) bins. The sample keeps the values with the smallest random priorities, so two sketches of different parts
+ * of a file can be merged into a sketch of both, which lets each thread or chunk keep its own. A priority comes from
+ * the value and the row it is on within the whole file, so however the file is split up the merged sample is the same
+ */
+public class BinSketch {
+    private double min;
+    private double max;
+    private long count;
+    private double sum;
+    //amount of values the sample keeps, 0 when no sample is kept
+    private int sample_size;
+    //max heap on priority of the values currently kept
+    private double[] sample_values;
+    private long[] sample_priorities;
+    private int sampled;
+    /**
+     * @param sample_size amount of values to sample for quantile bins, 0 to only keep the min and max
+     */
+    public BinSketch(int sample_size){
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        this.count = 0;
+        this.sum = 0;
+        this.sample_size = sample_size;
+        this.sample_values = new double[sample_size];
+        this.sample_priorities = new long[sample_size];
+        this.sampled = 0;
+    }
+    /**
+     * Put back a sketch that was written out (see BinaryFormat)
+     * @param min smallest value seen
+     * @param max biggest value seen
+     * @param count amount of values seen
+     * @param sum total of the values seen
+     * @param sample_size amount of values the sample keeps
+     * @param sample_values the sampled values, in heap order
+     * @param sample_priorities the priorities of the sampled values
+     */
+    BinSketch(double min, double max, long count, double sum, int sample_size, double[] sample_values,
+              long[] sample_priorities){
+        this.min = min;
+        this.max = max;
+        this.count = count;
+        this.sum = sum;
+        this.sample_size = sample_size;
+        this.sample_values = Arrays.copyOf(sample_values,sample_size);
+        this.sample_priorities = Arrays.copyOf(sample_priorities,sample_size);
+        this.sampled = sample_values.length;
+    }
+    /**
+     * @param value a value of the column, NaN (missing) values are skipped
+     * @param row the row of the value within the whole file, counting from 0
+     */
+    public void add(double value, long row){
+        if(Double.isNaN(value)){
+            return;
+        }
+        if(value < this.min){
+            this.min = value;
+        }
+        if(value > this.max){
+            this.max = value;
+        }
+        this.count++;
+        this.sum += value;
+        sample(value,row);
+    }
+    /**
+     * Only offer a value to the sample, for a reader that gathers the rest of the sketch before it knows where its rows
+     * are in the file (see MappedCsvLoader)
+     * @param value a value of the column, NaN (missing) values are skipped
+     * @param row the row of the value within the whole file, counting from 0
+     */
+    public void sample(double value, long row){
+        if(this.sample_size > 0 && !Double.isNaN(value)){
+            //priority from mixing the value with its row, so equal values get different ones
+            offer(value,mix(Double.doubleToLongBits(value) ^ mix(row)));
+        }
+    }
+    /**
+     * Add everything another sketch has seen to this one
+     * @param other a sketch of another part of the same column
+     */
+    public void merge(BinSketch other){
+        this.min = Math.min(this.min,other.min);
+        this.max = Math.max(this.max,other.max);
+        this.count += other.count;
+        this.sum += other.sum;
+        for(int x = 0;x<other.sampled;x++){
+            offer(other.sample_values[x],other.sample_priorities[x]);
+        }
+    }
+    /**
+     * Work out the upper edge of each bin, a value goes in the first bin whose edge it is at or below
+     * @param bins amount of bins
+     * @param quantile true for bins holding close to the same amount of values, false for bins of the same width
+     * @return the upper edge of each bin, the last edge being the max
+     */
+    public double[] edges(int bins, boolean quantile){
+        double[] edges = new double[bins];
+        //nothing but missing values, every edge is as good as any other
+        if(this.count == 0){
+            return edges;
+        }
+        if(quantile && this.sampled > 0){
+            double[] sorted = Arrays.copyOf(this.sample_values,this.sampled);
+            Arrays.sort(sorted);
+            for(int y = 0;y<bins;y++){
+                edges[y] = sorted[Math.max(0,(int)((long)(y + 1) * sorted.length / bins) - 1)];
+            }
+        }else{
+            double interval = (this.max - this.min) / bins;
+            for(int y = 0;y<bins;y++){
+                edges[y] = this.min + (interval * (y + 1));
+            }
+        }
+        //the last edge is the max, so rounding can't push a value out of every bin
+        edges[bins - 1] = this.max;
+        return edges;
+    }
+    /**
+     * @param edges upper edge of each bin, in order
+     * @param value the value to bin, not NaN
+     * @return the first bin whose edge the value is at or below, values above the last edge go in the last bin
+     */
+    public static int findBin(double[] edges, double value){
+        int low = 0;
+        int high = edges.length - 1;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(value <= edges[middle]){
+                high = middle;
+            }else{
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+    /**
+     * @param fraction how far through the sorted sample the value is, 0.5 for the median
+     * @return the sampled value at that point (the lower one when it falls between two), NaN if nothing was sampled
+     */
+    public double quantile(double fraction){
+        if(this.sampled == 0){
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(this.sample_values,this.sampled);
+        Arrays.sort(sorted);
+        return sorted[(int)((sorted.length - 1) * fraction)];
+    }
+    /**
+     * @return the value showing up most often in the sample (the smallest on a tie), NaN if nothing was sampled
+     */
+    public double mode(){
+        if(this.sampled == 0){
+            return Double.NaN;
+        }
+        double[] sorted = Arrays.copyOf(this.sample_values,this.sampled);
+        Arrays.sort(sorted);
+        double mode = sorted[0];
+        int best = 0;
+        //equal values sit next to each other once sorted, so each run is one value
+        for(int start = 0;start<sorted.length;){
+            int end = start + 1;
+            while(end < sorted.length && sorted[end] == sorted[start]){
+                end++;
+            }
+            if(end - start > best){
+                best = end - start;
+                mode = sorted[start];
+            }
+            start = end;
+        }
+        return mode;
+    }
+    /**
+     * @return if the sketch has sampled any values, which quantile and mode need
+     */
+    public boolean hasSample(){
+        return this.sampled > 0;
+    }
+    public double getMin(){
+        return this.min;
+    }
+    public double getMax(){
+        return this.max;
+    }
+    public long getCount(){
+        return this.count;
+    }
+    /**
+     * @return the mean of every value added, NaN if there were none
+     */
+    public double getMean(){
+        return this.count == 0 ? Double.NaN : this.sum / this.count;
+    }
+    //what is needed to write the sketch out is only handed out within the package
+    double getSum(){
+        return this.sum;
+    }
+    int getSampleSize(){
+        return this.sample_size;
+    }
+    double[] getSampleValues(){
+        return Arrays.copyOf(this.sample_values,this.sampled);
+    }
+    long[] getSamplePriorities(){
+        return Arrays.copyOf(this.sample_priorities,this.sampled);
+    }
+    /**
+     * Keep a value in the sample if its priority is one of the smallest seen
+     * @param value the value
+     * @param priority its random priority
+     */
+    private void offer(double value, long priority){
+        if(this.sampled < this.sample_size){
+            //room left, add to the end and move up the heap
+            int x = this.sampled++;
+            while(x > 0 && this.sample_priorities[(x - 1) / 2] < priority){
+                this.sample_values[x] = this.sample_values[(x - 1) / 2];
+                this.sample_priorities[x] = this.sample_priorities[(x - 1) / 2];
+                x = (x - 1) / 2;
+            }
+            this.sample_values[x] = value;
+            this.sample_priorities[x] = priority;
+        }else if(this.sample_size > 0 && priority < this.sample_priorities[0]){
+            //replace the biggest priority and move down the heap
+            int x = 0;
+            while(true){
+                int child = x * 2 + 1;
+                if(child >= this.sampled){
+                    break;
+                }
+                if(child + 1 < this.sampled && this.sample_priorities[child + 1] > this.sample_priorities[child]){
+                    child++;
+                }
+                if(this.sample_priorities[child] <= priority){
+                    break;
+                }
+                this.sample_values[x] = this.sample_values[child];
+                this.sample_priorities[x] = this.sample_priorities[child];
+                x = child;
+            }
+            this.sample_values[x] = value;
+            this.sample_priorities[x] = priority;
+        }
+    }
+    /**
+     * @param value the bits to mix
+     * @return the bits well mixed, so nearby inputs give unrelated outputs
+     */
+    private static long mix(long value){
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
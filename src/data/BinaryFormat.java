@@ -0,0 +1,227 @@
+package data;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Pieces shared by the binary dataset and model files. Everything is written big endian with a DataOutputStream and
+ * read back out of a memory mapped ByteBuffer, which is big endian by default
+ */
+public class BinaryFormat {
+    /**
+     * @param output where to write
+     * @param value the string to write, as its length in bytes then its utf-8 bytes, -1 for null
+     * @throws IOException if the write fails
+     */
+    public static void writeString(DataOutputStream output, String value) throws IOException{
+        if(value == null){
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+    /**
+     * @param input where to read from
+     * @return a string written by writeString
+     */
+    public static String readString(ByteBuffer input){
+        int length = input.getInt();
+        if(length == -1){
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        return new String(bytes,StandardCharsets.UTF_8);
+    }
+    /**
+     * Write a magic number and version, so a reader can tell what kind of file it has been given
+     * @param output where to write
+     * @param magic four characters naming the kind of file
+     * @param version version of the file layout
+     * @throws IOException if the write fails
+     */
+    public static void writeHeader(DataOutputStream output, String magic, int version) throws IOException{
+        output.write(magic.getBytes(StandardCharsets.US_ASCII));
+        output.writeInt(version);
+    }
+    /**
+     * @param input where to read from
+     * @param magic four characters naming the kind of file expected
+     * @param version the version of the file layout this code can read
+     * @throws IOException if the file is some other kind or version
+     */
+    public static void readHeader(ByteBuffer input, String magic, int version) throws IOException{
+        byte[] found = new byte[4];
+        input.get(found);
+        if(!magic.equals(new String(found,StandardCharsets.US_ASCII))){
+            throw new IOException("Not a " + magic + " file");
+        }
+        int found_version = input.getInt();
+        if(found_version != version){
+            throw new IOException("Can't read " + magic + " version " + found_version + ", expected " + version);
+        }
+    }
+    /**
+     * Write everything we know about the columns: header cell, bins, bin edges, impute value and dictionary
+     * @param output where to write
+     * @param columns the columns to write
+     * @throws IOException if the write fails
+     */
+    public static void writeColumns(DataOutputStream output, ColumnInfo[] columns) throws IOException{
+        output.writeInt(columns.length);
+        for(ColumnInfo column : columns){
+            writeString(output,column.getHeaderCell());
+            output.writeInt(column.getBins());
+            double[] bin_edges = column.getBinEdges();
+            writeDoubles(output,bin_edges);
+            writeString(output,column.getImputeValue());
+            ColumnDictionary dictionary = column.getDictionary();
+            output.writeInt(dictionary.size());
+            for(int code = 0;code<dictionary.size();code++){
+                writeString(output,dictionary.decode(code));
+            }
+        }
+    }
+    /**
+     * @param input where to read from
+     * @return columns written by writeColumns, with dictionaries handing out the same codes as before
+     */
+    public static ColumnInfo[] readColumns(ByteBuffer input){
+        ColumnInfo[] columns = new ColumnInfo[input.getInt()];
+        for(int x = 0;x<columns.length;x++){
+            String header_cell = readString(input);
+            int bins = input.getInt();
+            columns[x] = new ColumnInfo(header_cell,bins);
+            columns[x].setBinEdges(readDoubles(input));
+            columns[x].setImputeValue(readString(input));
+            //adding the values in code order gives each one the code it had
+            int size = input.getInt();
+            ColumnDictionary dictionary = new ColumnDictionary();
+            for(int code = 0;code<size;code++){
+                dictionary.encode(readString(input));
+            }
+            columns[x].setDictionary(dictionary);
+        }
+        return columns;
+    }
+    /**
+     * @param output where to write
+     * @param values the values to write, as the length then each value, -1 for null
+     * @throws IOException if the write fails
+     */
+    public static void writeDoubles(DataOutputStream output, double[] values) throws IOException{
+        output.writeInt(values == null ? -1 : values.length);
+        if(values != null){
+            for(double value : values){
+                output.writeDouble(value);
+            }
+        }
+    }
+    /**
+     * @param input where to read from
+     * @return values written by writeDoubles
+     */
+    public static double[] readDoubles(ByteBuffer input){
+        int length = input.getInt();
+        if(length == -1){
+            return null;
+        }
+        double[] values = new double[length];
+        input.asDoubleBuffer().get(values);
+        input.position(input.position() + length * 8);
+        return values;
+    }
+    /**
+     * @param output where to write
+     * @param values the values to write, as the length then each value
+     * @throws IOException if the write fails
+     */
+    public static void writeInts(DataOutputStream output, int[] values) throws IOException{
+        output.writeInt(values.length);
+        for(int value : values){
+            output.writeInt(value);
+        }
+    }
+    /**
+     * @param input where to read from
+     * @return values written by writeInts
+     */
+    public static int[] readInts(ByteBuffer input){
+        int[] values = new int[input.getInt()];
+        input.asIntBuffer().get(values);
+        input.position(input.position() + values.length * 4);
+        return values;
+    }
+    /**
+     * @param output where to write
+     * @param values the values to write, as the length then each value
+     * @throws IOException if the write fails
+     */
+    public static void writeLongs(DataOutputStream output, long[] values) throws IOException{
+        output.writeInt(values.length);
+        for(long value : values){
+            output.writeLong(value);
+        }
+    }
+    /**
+     * @param input where to read from
+     * @return values written by writeLongs
+     */
+    public static long[] readLongs(ByteBuffer input){
+        long[] values = new long[input.getInt()];
+        input.asLongBuffer().get(values);
+        input.position(input.position() + values.length * 8);
+        return values;
+    }
+    /**
+     * @param output where to write
+     * @param sketch the sketch to write, or null
+     * @throws IOException if the write fails
+     */
+    public static void writeSketch(DataOutputStream output, BinSketch sketch) throws IOException{
+        output.writeBoolean(sketch != null);
+        if(sketch == null){
+            return;
+        }
+        output.writeDouble(sketch.getMin());
+        output.writeDouble(sketch.getMax());
+        output.writeLong(sketch.getCount());
+        output.writeDouble(sketch.getSum());
+        output.writeInt(sketch.getSampleSize());
+        writeDoubles(output,sketch.getSampleValues());
+        writeLongs(output,sketch.getSamplePriorities());
+    }
+    /**
+     * @param input where to read from
+     * @return a sketch written by writeSketch, which can be merged and added to like the original
+     */
+    public static BinSketch readSketch(ByteBuffer input){
+        if(input.get() == 0){
+            return null;
+        }
+        double min = input.getDouble();
+        double max = input.getDouble();
+        long count = input.getLong();
+        double sum = input.getDouble();
+        int sample_size = input.getInt();
+        return new BinSketch(min,max,count,sum,sample_size,readDoubles(input),readLongs(input));
+    }
+    /**
+     * @param path the file to map
+     * @return the whole file mapped read only
+     * @throws IOException if the file can't be mapped
+     */
+    public static MappedByteBuffer map(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)){
+            return channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+        }
+    }
+}
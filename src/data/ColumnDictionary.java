@@ -0,0 +1,234 @@
+package data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps the distinct values of a single column to dense integer codes, handed out in the order the values are first
+ * seen, so the rest of the pipeline can work on primitive codes instead of strings. Values are looked up by their
+ * utf-8 bytes in an open addressing table, so a file can be encoded straight from its bytes without making a string
+ * for every cell, a string is only made the first time a value is seen
+ */
+public class ColumnDictionary {
+    //code -> utf-8 bytes of the value
+    private byte[][] keys;
+    //code -> the value
+    private String[] values;
+    //code -> hash of the value
+    private int[] hashes;
+    //open addressing table of codes, -1 marks an empty slot, the length is always a power of two
+    private int[] table;
+    private int size;
+    public ColumnDictionary(){
+        this.keys = new byte[16][];
+        this.values = new String[16];
+        this.hashes = new int[16];
+        this.table = new int[32];
+        Arrays.fill(this.table,-1);
+        this.size = 0;
+    }
+    /**
+     * Get the code of a value, adding it to the dictionary if it has not been seen before
+     * @param value the raw value from the file
+     * @return the dense code relating to the value
+     */
+    public int encode(String value){
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return encode(bytes,0,bytes.length);
+    }
+    /**
+     * Get the code of a value held in bytes[start] until bytes[end], adding it if it has not been seen before
+     * @param bytes buffer holding the utf-8 bytes of the value
+     * @param start first byte of the value
+     * @param end byte to stop at (exclusive)
+     * @return the dense code relating to the value
+     */
+    public int encode(byte[] bytes, int start, int end){
+        int hash = hash(bytes,start,end);
+        int slot = find(bytes,start,end,hash);
+        if(this.table[slot] != -1){
+            return this.table[slot];
+        }
+        //first time we have seen this value, hand out the next code
+        int code = this.size;
+        if(code == this.keys.length){
+            this.keys = Arrays.copyOf(this.keys,code * 2);
+            this.values = Arrays.copyOf(this.values,code * 2);
+            this.hashes = Arrays.copyOf(this.hashes,code * 2);
+        }
+        this.keys[code] = Arrays.copyOfRange(bytes,start,end);
+        this.values[code] = new String(this.keys[code],StandardCharsets.UTF_8);
+        this.hashes[code] = hash;
+        this.table[slot] = code;
+        this.size++;
+        //keep the table at most half full so probing stays short
+        if(this.size * 2 > this.table.length){
+            rehash();
+        }
+        return code;
+    }
+    /**
+     * Get the code of a value held in bytes.get(start) until bytes.get(end), adding it if it has not been seen before.
+     * The buffer is read with absolute gets, so a memory mapped file can be encoded without copying it
+     * @param bytes buffer holding the utf-8 bytes of the value
+     * @param start first byte of the value
+     * @param end byte to stop at (exclusive)
+     * @return the dense code relating to the value
+     */
+    public int encode(ByteBuffer bytes, int start, int end){
+        int hash = 0x811c9dc5;
+        for(int x = start;x<end;x++){
+            hash = (hash ^ bytes.get(x)) * 0x01000193;
+        }
+        hash = hash ^ (hash >>> 16);
+        int mask = this.table.length - 1;
+        int slot = hash & mask;
+        while(this.table[slot] != -1){
+            int code = this.table[slot];
+            if(this.hashes[code] == hash && matches(this.keys[code],bytes,start,end)){
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        //first time we have seen this value, copy it out so the normal path can add it
+        byte[] value = new byte[end - start];
+        for(int x = start;x<end;x++){
+            value[x - start] = bytes.get(x);
+        }
+        return encode(value,0,value.length);
+    }
+    /**
+     * Get the code of a value without adding it
+     * @param value the raw value to look up
+     * @return the code of the value, or -1 if the value is not in the dictionary
+     */
+    public int lookup(String value){
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return lookup(bytes,0,bytes.length);
+    }
+    /**
+     * Get the code of a value held in bytes[start] until bytes[end] without adding it
+     * @param bytes buffer holding the utf-8 bytes of the value
+     * @param start first byte of the value
+     * @param end byte to stop at (exclusive)
+     * @return the code of the value, or -1 if the value is not in the dictionary
+     */
+    public int lookup(byte[] bytes, int start, int end){
+        return this.table[find(bytes,start,end,hash(bytes,start,end))];
+    }
+    /**
+     * @param code a code handed out by this dictionary
+     * @return the raw value the code relates to
+     */
+    public String decode(int code){
+        if(code < 0 || code >= this.size){
+            throw new IndexOutOfBoundsException("No value for code " + code);
+        }
+        return this.values[code];
+    }
+    /**
+     * @return a dictionary with the same codes, which doesn't change when this one does
+     */
+    public ColumnDictionary copy(){
+        ColumnDictionary copy = new ColumnDictionary();
+        //the bytes of a value are never changed once added, so they can be shared
+        copy.keys = this.keys.clone();
+        copy.values = this.values.clone();
+        copy.hashes = this.hashes.clone();
+        copy.table = this.table.clone();
+        copy.size = this.size;
+        return copy;
+    }
+    /**
+     * @return the amount of distinct values, which is also the next code that would be handed out
+     */
+    public int size(){
+        return this.size;
+    }
+    /**
+     * Find the slot of the table that holds the value, or the empty slot it would go in
+     * @param bytes buffer holding the value
+     * @param start first byte of the value
+     * @param end byte to stop at (exclusive)
+     * @param hash hash of the value
+     * @return index into the table
+     */
+    private int find(byte[] bytes, int start, int end, int hash){
+        int mask = this.table.length - 1;
+        int slot = hash & mask;
+        while(this.table[slot] != -1){
+            int code = this.table[slot];
+            if(this.hashes[code] == hash && matches(this.keys[code],bytes,start,end)){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    /**
+     * Double the size of the table and put every code back in
+     */
+    private void rehash(){
+        this.table = new int[this.table.length * 2];
+        Arrays.fill(this.table,-1);
+        int mask = this.table.length - 1;
+        for(int code = 0;code<this.size;code++){
+            int slot = this.hashes[code] & mask;
+            while(this.table[slot] != -1){
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = code;
+        }
+    }
+    /**
+     * @param key the bytes of a stored value
+     * @param bytes buffer holding the value being looked up
+     * @param start first byte of the value
+     * @param end byte to stop at (exclusive)
+     * @return if the stored value and the one being looked up are the same
+     */
+    private static boolean matches(byte[] key, byte[] bytes, int start, int end){
+        if(key.length != end - start){
+            return false;
+        }
+        for(int x = 0;x<key.length;x++){
+            if(key[x] != bytes[start + x]){
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * @param key the bytes of a stored value
+     * @param bytes buffer holding the value being looked up
+     * @param start first byte of the value
+     * @param end byte to stop at (exclusive)
+     * @return if the stored value and the one being looked up are the same
+     */
+    private static boolean matches(byte[] key, ByteBuffer bytes, int start, int end){
+        if(key.length != end - start){
+            return false;
+        }
+        for(int x = 0;x<key.length;x++){
+            if(key[x] != bytes.get(start + x)){
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * @param bytes buffer holding the value
+     * @param start first byte of the value
+     * @param end byte to stop at (exclusive)
+     * @return a well mixed hash of the bytes
+     */
+    private static int hash(byte[] bytes, int start, int end){
+        int hash = 0x811c9dc5;
+        for(int x = start;x<end;x++){
+            hash = (hash ^ bytes[x]) * 0x01000193;
+        }
+        //spread the high bits down, since the table only uses the low ones
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,201 @@
+package data;
+
+import java.util.ArrayList;
+
+/**
+ * Everything we know about a single column: its name and the attributes given to it in the header of the file
+ * (ex. "Bare Nuclei!impute!rounded_impute", "RI: refractive index!bin-6!quantile" or "Na: Sodium!gaussian"), and the
+ * dictionary of its values. Columns that are binned or modelled as gaussian are parsed as numbers instead of going
+ * through the dictionary, and have a sketch of their values gathered while parsing
+ */
+public class ColumnInfo {
+    //amount of values a sketch keeps for working out quantile bins
+    private static final int QUANTILE_SAMPLE_SIZE = 4096;
+    private String header_cell;
+    private String name;
+    private ArrayList<String> attributes;
+    private boolean is_class;
+    private int bins;
+    private boolean quantile;
+    private boolean gaussian;
+    private boolean impute;
+    private boolean rounded_impute;
+    //strategy given in the header as "!impute-median", null when the Imputer picks
+    private ImputeStrategy impute_strategy;
+    private ColumnDictionary dictionary;
+    //min, max and sample of the values of a numeric column, null for other columns
+    private BinSketch sketch;
+    //filled in once the column has been binned, the upper edge of each bin
+    private double[] bin_edges;
+    //filled in once the column has been imputed, the value missing cells were given
+    private String impute_value;
+    /**
+     * @param header_cell the cell of the header relating to this column
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     */
+    public ColumnInfo(String header_cell, int default_bins){
+        this.header_cell = header_cell;
+        //everything before the first "!" is the name, everything after are attributes
+        String[] split = header_cell.split("!");
+        this.name = split[0];
+        this.attributes = new ArrayList<>();
+        for(int x = 1;x<split.length;x++){
+            this.attributes.add(split[x]);
+        }
+        //class column is indicated by the name starting with "class"
+        this.is_class = this.name.regionMatches(true,0,"class",0,5);
+        this.impute = hasAttribute("impute");
+        this.rounded_impute = hasAttribute("rounded_impute");
+        String strategy = getAttributeValue("impute");
+        this.impute_strategy = strategy == null ? null : ImputeStrategy.parse(strategy);
+        if(hasAttribute("bin")){
+            String count = getAttributeValue("bin");
+            this.bins = count == null ? default_bins : Integer.parseInt(count);
+            if(this.bins < 1){
+                throw new IllegalArgumentException("Column " + this.name + " needs at least one bin");
+            }
+        }
+        this.quantile = hasAttribute("quantile");
+        this.gaussian = hasAttribute("gaussian");
+        this.dictionary = new ColumnDictionary();
+        if(isNumeric()){
+            //a median or mode is taken from the sample too
+            boolean sampled = this.quantile || this.impute_strategy == ImputeStrategy.MEDIAN
+                    || this.impute_strategy == ImputeStrategy.MODE;
+            this.sketch = new BinSketch(sampled ? QUANTILE_SAMPLE_SIZE : 0);
+        }
+    }
+    /**
+     * Turn the header line of a file into information about each column
+     * @param header the header line of the file
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return information about each column
+     */
+    public static ColumnInfo[] parseHeader(String header, int default_bins){
+        String[] header_cells = header.split(",");
+        ColumnInfo[] columns = new ColumnInfo[header_cells.length];
+        for(int x = 0;x<header_cells.length;x++){
+            columns[x] = new ColumnInfo(header_cells[x],default_bins);
+        }
+        return columns;
+    }
+    /**
+     * @param columns information about each column
+     * @return the index of the first column named class
+     * @throws IllegalArgumentException if there is no class column
+     */
+    public static int findClassIndex(ColumnInfo[] columns){
+        for(int x = 0;x<columns.length;x++){
+            if(columns[x].isClass()){
+                return x;
+            }
+        }
+        throw new IllegalArgumentException("Could not find class column in header");
+    }
+    /**
+     * @return a copy of the column whose dictionary, bin edges and impute value don't change when this column's do, the
+     * sketch is left empty since it is only needed while binning
+     */
+    public ColumnInfo copy(){
+        ColumnInfo copy = new ColumnInfo(this.header_cell,this.bins);
+        copy.dictionary = this.dictionary.copy();
+        copy.bin_edges = this.bin_edges == null ? null : this.bin_edges.clone();
+        copy.impute_value = this.impute_value;
+        return copy;
+    }
+    /**
+     * Checks the header of the column for an attribute, "bin" will also match "bin-6"
+     * @param attribute the attribute we are searching for
+     * @return if the attribute was found
+     */
+    public boolean hasAttribute(String attribute){
+        for(String current : this.attributes){
+            if(current.equals(attribute) || current.startsWith(attribute + "-")){
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Get the value given to an attribute, so "bin-6" gives "6"
+     * @param attribute the attribute we want the value of
+     * @return the value of the attribute, or null if it has none
+     */
+    public String getAttributeValue(String attribute){
+        for(String current : this.attributes){
+            if(current.startsWith(attribute + "-")){
+                return current.substring(attribute.length() + 1);
+            }
+        }
+        return null;
+    }
+    public String getHeaderCell(){
+        return this.header_cell;
+    }
+    public String getName(){
+        return this.name;
+    }
+    public boolean isClass(){
+        return this.is_class;
+    }
+    public boolean shouldBin(){
+        return this.bins > 0;
+    }
+    /**
+     * @return if the values of the column are parsed as numbers rather than encoded with the dictionary
+     */
+    public boolean isNumeric(){
+        return shouldBin() || this.gaussian;
+    }
+    /**
+     * @return if the column is modelled as a normal distribution for each class rather than binned or counted
+     */
+    public boolean isGaussian(){
+        return this.gaussian;
+    }
+    public int getBins(){
+        return this.bins;
+    }
+    /**
+     * @return if the bins should hold close to the same amount of values, rather than be the same width
+     */
+    public boolean isQuantile(){
+        return this.quantile;
+    }
+    public boolean shouldImpute(){
+        return this.impute;
+    }
+    /**
+     * @return the strategy the header gives for imputing the column, null if it gives none
+     */
+    public ImputeStrategy getImputeStrategy(){
+        return this.impute_strategy;
+    }
+    public boolean shouldRoundImpute(){
+        return this.rounded_impute;
+    }
+    public BinSketch getSketch(){
+        return this.sketch;
+    }
+    public void setSketch(BinSketch sketch){
+        this.sketch = sketch;
+    }
+    public ColumnDictionary getDictionary(){
+        return this.dictionary;
+    }
+    public void setDictionary(ColumnDictionary dictionary){
+        this.dictionary = dictionary;
+    }
+    public double[] getBinEdges(){
+        return this.bin_edges;
+    }
+    public void setBinEdges(double[] bin_edges){
+        this.bin_edges = bin_edges;
+    }
+    public String getImputeValue(){
+        return this.impute_value;
+    }
+    public void setImputeValue(String impute_value){
+        this.impute_value = impute_value;
+    }
+}
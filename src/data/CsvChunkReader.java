@@ -0,0 +1,238 @@
+package data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a csv file from a stream a chunk of rows at a time, splitting lines and fields on the raw bytes and encoding
+ * each field straight into its column dictionary, so no string is made for a line or a field. Only one buffer of the
+ * file and one chunk of rows is held at a time, and nothing more is read until the next chunk is asked for, so any size
+ * of file can be worked through with a fixed amount of memory (apart from the dictionaries themselves)
+ */
+public class CsvChunkReader {
+    private InputStream input_stream;
+    private byte[] buffer;
+    //bytes buffer[position] until buffer[limit] have been read but not parsed yet
+    private int position;
+    private int limit;
+    private boolean end_of_stream;
+    private ColumnInfo[] columns;
+    private int class_index;
+    private String missing_value_designation;
+    private byte[] missing_bytes;
+    private int chunk_rows;
+    //rows handed out in earlier chunks
+    private long rows_read;
+    //row major codes of the chunk being parsed
+    private int[] row_codes;
+    //column major codes of the chunk handed out, reused for every chunk
+    private int[] codes;
+    //row major values of numeric columns of the chunk being parsed
+    private double[] row_values;
+    //values of each numeric column of the chunk handed out, null for the other columns, reused for every chunk
+    private double[][] numeric;
+    /**
+     * Reads the header of the file straight away
+     * @param input_stream input stream relating to file data
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @param chunk_rows the most rows a chunk will have
+     * @throws IOException if the stream can't be read or has no header
+     */
+    public CsvChunkReader(InputStream input_stream, String missing_value_designation, int default_bins,
+                          int chunk_rows) throws IOException{
+        this.input_stream = input_stream;
+        this.buffer = new byte[1 << 20];
+        this.position = 0;
+        this.limit = 0;
+        this.end_of_stream = false;
+        this.missing_value_designation = missing_value_designation;
+        this.missing_bytes = missing_value_designation.getBytes(StandardCharsets.UTF_8);
+        this.chunk_rows = chunk_rows;
+        this.rows_read = 0;
+        //the header is small, it is fine to turn it into a string
+        int header_end = nextLineEnd();
+        if(header_end == -1){
+            throw new IOException("File has no header");
+        }
+        String header = new String(this.buffer,this.position,trimLine(this.position,header_end) - this.position,
+                StandardCharsets.UTF_8);
+        this.position = Math.min(header_end + 1,this.limit);
+        this.columns = ColumnInfo.parseHeader(header,default_bins);
+        this.class_index = ColumnInfo.findClassIndex(this.columns);
+        this.row_codes = new int[chunk_rows * this.columns.length];
+        this.codes = new int[chunk_rows * this.columns.length];
+        this.row_values = new double[chunk_rows * this.columns.length];
+        this.numeric = new double[this.columns.length][];
+        for(int x = 0;x<this.columns.length;x++){
+            if(this.columns[x].isNumeric()){
+                this.numeric[x] = new double[chunk_rows];
+            }
+        }
+    }
+    /**
+     * Parse up to chunk_rows more rows. The chunk shares its columns (and dictionaries) with every other chunk of the
+     * file, and its codes are overwritten by the next call, so use it (ex. count it into a trainer) before asking for
+     * the next one
+     * @return the next chunk of rows, or null if the whole file has been read
+     * @throws IOException if the stream can't be read
+     */
+    public EncodedDataset nextChunk() throws IOException{
+        int width = this.columns.length;
+        int rows = 0;
+        while(rows < this.chunk_rows){
+            int line_end = nextLineEnd();
+            if(line_end == -1){
+                break;
+            }
+            int content_end = trimLine(this.position,line_end);
+            //skip blank lines
+            if(content_end > this.position){
+                encodeLine(this.columns,this.missing_value_designation,this.missing_bytes,this.buffer,this.position,
+                        content_end,this.row_codes,this.row_values,rows * width,this.rows_read + rows);
+                rows++;
+            }
+            this.position = Math.min(line_end + 1,this.limit);
+        }
+        if(rows == 0){
+            return null;
+        }
+        this.rows_read += rows;
+        //turn the chunk column major, with the columns packed for the amount of rows we actually got
+        for(int row = 0;row<rows;row++){
+            for(int x = 0;x<width;x++){
+                this.codes[x * rows + row] = this.row_codes[row * width + x];
+            }
+        }
+        for(int x = 0;x<width;x++){
+            if(this.numeric[x] != null){
+                for(int row = 0;row<rows;row++){
+                    this.numeric[x][row] = this.row_values[row * width + x];
+                }
+            }
+        }
+        //binning a chunk lets go of its values, so it gets its own copy of which arrays it has
+        return new EncodedDataset(this.columns,this.class_index,rows,this.codes,this.numeric.clone(),
+                this.missing_value_designation);
+    }
+    public ColumnInfo[] getColumns(){
+        return this.columns;
+    }
+    public int getClassIndex(){
+        return this.class_index;
+    }
+    /**
+     * Read a whole stream into one encoded dataset, a chunk at a time
+     * @param input_stream input stream relating to file data
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return the encoded dataset
+     * @throws IOException if the stream can't be read
+     */
+    public static EncodedDataset readAll(InputStream input_stream, String missing_value_designation,
+                                         int default_bins) throws IOException{
+        CsvChunkReader reader = new CsvChunkReader(input_stream,missing_value_designation,default_bins,4096);
+        DatasetEncoder encoder = new DatasetEncoder(reader.getColumns(),missing_value_designation);
+        EncodedDataset chunk = reader.nextChunk();
+        while(chunk != null){
+            encoder.addChunk(chunk);
+            chunk = reader.nextChunk();
+        }
+        return encoder.build();
+    }
+    /**
+     * Split one line on commas and encode each field, extra fields are ignored and missing ones count as missing.
+     * Fields of numeric columns are parsed and added to the sketch of the column instead, and get a code of 0
+     * @param columns information about each column, holding the dictionaries and sketches
+     * @param missing_value_designation the value used to indicate a missing value
+     * @param missing_bytes utf-8 bytes of the missing value designation
+     * @param bytes buffer holding the line
+     * @param start first byte of the line
+     * @param end byte the line stops at (exclusive), without the line break
+     * @param row_codes where the codes go
+     * @param row_values where the values of numeric columns go, in the same places as row_codes
+     * @param row_start where the codes of this line start in row_codes
+     * @param row the row of the line within the whole file
+     */
+    static void encodeLine(ColumnInfo[] columns, String missing_value_designation, byte[] missing_bytes, byte[] bytes,
+                           int start, int end, int[] row_codes, double[] row_values, int row_start, long row){
+        int field_start = start;
+        int column = 0;
+        for(int x = start;x<=end && column<columns.length;x++){
+            if(x == end || bytes[x] == ','){
+                ColumnInfo info = columns[column];
+                if(info.isNumeric()){
+                    double value = NumberParser.parse(bytes,field_start,x,missing_bytes);
+                    info.getSketch().add(value,row);
+                    row_values[row_start + column] = value;
+                    row_codes[row_start + column] = 0;
+                }else{
+                    row_codes[row_start + column] = info.getDictionary().encode(bytes,field_start,x);
+                }
+                column++;
+                field_start = x + 1;
+            }
+        }
+        for(;column<columns.length;column++){
+            if(columns[column].isNumeric()){
+                row_values[row_start + column] = Double.NaN;
+                row_codes[row_start + column] = 0;
+            }else{
+                row_codes[row_start + column] = columns[column].getDictionary().encode(missing_value_designation);
+            }
+        }
+    }
+    /**
+     * Find the end of the line starting at position, reading more of the stream if needed
+     * @return index of the line break, the end of the data if the last line has none, or -1 if there is nothing left
+     * @throws IOException if the stream can't be read
+     */
+    private int nextLineEnd() throws IOException{
+        int searched = this.position;
+        while(true){
+            for(int x = searched;x<this.limit;x++){
+                if(this.buffer[x] == '\n'){
+                    return x;
+                }
+            }
+            if(this.end_of_stream){
+                return this.position < this.limit ? this.limit : -1;
+            }
+            searched = this.limit - this.position;
+            fill();
+        }
+    }
+    /**
+     * Move the unparsed bytes to the front of the buffer and read more of the stream after them, growing the buffer
+     * only if a single line doesn't fit in it
+     * @throws IOException if the stream can't be read
+     */
+    private void fill() throws IOException{
+        int remaining = this.limit - this.position;
+        System.arraycopy(this.buffer,this.position,this.buffer,0,remaining);
+        this.position = 0;
+        this.limit = remaining;
+        if(this.limit == this.buffer.length){
+            this.buffer = Arrays.copyOf(this.buffer,this.buffer.length * 2);
+        }
+        int read = this.input_stream.read(this.buffer,this.limit,this.buffer.length - this.limit);
+        if(read == -1){
+            this.end_of_stream = true;
+        }else{
+            this.limit += read;
+        }
+    }
+    /**
+     * @param start first byte of the line
+     * @param end index of the line break
+     * @return end, moved back over a carriage return if there is one
+     */
+    private int trimLine(int start, int end){
+        if(end > start && this.buffer[end - 1] == '\r'){
+            return end - 1;
+        }
+        return end;
+    }
+}
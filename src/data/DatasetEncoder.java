@@ -0,0 +1,155 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds an EncodedDataset one line at a time, giving each cell the code its column dictionary has for it, or for
+ * numeric columns parsing the cell and adding it to the sketch of the column
+ */
+public class DatasetEncoder {
+    private ColumnInfo[] columns;
+    private int class_index;
+    private String missing_value_designation;
+    //codes of each column while we are still growing, joined together when built
+    private int[][] column_codes;
+    //values of each numeric column while we are still growing, null for the other columns
+    private double[][] column_values;
+    private int rows;
+    /**
+     * @param header the header line of the file, holding the column names and attributes
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     */
+    public DatasetEncoder(String header, String missing_value_designation, int default_bins){
+        this(ColumnInfo.parseHeader(header,default_bins),missing_value_designation);
+    }
+    /**
+     * @param columns information about each column, values are added to their dictionaries
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     */
+    public DatasetEncoder(ColumnInfo[] columns, String missing_value_designation){
+        this.columns = columns;
+        this.class_index = ColumnInfo.findClassIndex(columns);
+        this.missing_value_designation = missing_value_designation;
+        this.column_codes = new int[this.columns.length][64];
+        this.column_values = new double[this.columns.length][];
+        for(int x = 0;x<this.columns.length;x++){
+            if(this.columns[x].isNumeric()){
+                this.column_values[x] = new double[64];
+            }
+        }
+        this.rows = 0;
+    }
+    /**
+     * Encode a single unsplit csv line
+     * @param line the line of the file
+     */
+    public void addLine(String line){
+        addFields(line.split(","));
+    }
+    /**
+     * Encode a line that has already been split into its fields, missing trailing fields count as missing values
+     * @param fields the fields of the line
+     */
+    public void addFields(String[] fields){
+        ensureCapacity(this.rows + 1);
+        for(int x = 0;x<this.columns.length;x++){
+            String value = x < fields.length ? fields[x] : this.missing_value_designation;
+            if(this.column_values[x] != null){
+                double parsed = value.equals(this.missing_value_designation) ? Double.NaN : NumberParser.parse(value);
+                this.columns[x].getSketch().add(parsed,this.rows);
+                this.column_values[x][this.rows] = parsed;
+                this.column_codes[x][this.rows] = 0;
+            }else{
+                this.column_codes[x][this.rows] = this.columns[x].getDictionary().encode(value);
+            }
+        }
+        this.rows++;
+    }
+    /**
+     * Add a row that has already been encoded with this encoder's columns, the values of numeric columns should already
+     * be in their sketch
+     * @param row_codes buffer holding the code of each column
+     * @param row_values buffer holding the value of each numeric column, in the same places as row_codes
+     * @param start where the row starts in row_codes and row_values
+     */
+    public void addCodes(int[] row_codes, double[] row_values, int start){
+        ensureCapacity(this.rows + 1);
+        for(int x = 0;x<this.columns.length;x++){
+            this.column_codes[x][this.rows] = row_codes[start + x];
+            if(this.column_values[x] != null){
+                this.column_values[x][this.rows] = row_values[start + x];
+            }
+        }
+        this.rows++;
+    }
+    /**
+     * Add every row of an already encoded chunk, which has to share this encoder's columns
+     * @param chunk the rows to add
+     */
+    public void addChunk(EncodedDataset chunk){
+        if(chunk.getColumns() != this.columns){
+            throw new IllegalArgumentException("Chunk was not encoded with the same columns");
+        }
+        ensureCapacity((long)this.rows + chunk.getRows());
+        for(int x = 0;x<this.columns.length;x++){
+            System.arraycopy(chunk.getCodes(),chunk.columnOffset(x),this.column_codes[x],this.rows,chunk.getRows());
+            if(this.column_values[x] != null){
+                System.arraycopy(chunk.getNumeric(x),0,this.column_values[x],this.rows,chunk.getRows());
+            }
+        }
+        this.rows += chunk.getRows();
+    }
+    /**
+     * @return the encoded dataset of every line added so far
+     */
+    public EncodedDataset build(){
+        int[] codes = new int[EncodedDataset.cellCount(this.rows,this.columns.length)];
+        double[][] numeric = new double[this.columns.length][];
+        //lay the columns one after another
+        for(int x = 0;x<this.columns.length;x++){
+            System.arraycopy(this.column_codes[x],0,codes,x * this.rows,this.rows);
+            if(this.column_values[x] != null){
+                numeric[x] = Arrays.copyOf(this.column_values[x],this.rows);
+            }
+        }
+        return new EncodedDataset(this.columns,this.class_index,this.rows,codes,numeric,
+                this.missing_value_designation);
+    }
+    /**
+     * Grow the codes of each column by doubling, so adding rows is amortized constant time
+     * @param rows the amount of rows we need room for
+     */
+    private void ensureCapacity(long rows){
+        int capacity = this.column_codes[0].length;
+        if(rows <= capacity){
+            return;
+        }
+        //fail as soon as the rows can't fit in a dataset, not once every line has been read
+        EncodedDataset.cellCount(rows,this.columns.length);
+        while(capacity < rows){
+            capacity = (int)Math.min(capacity * 2L,Integer.MAX_VALUE);
+        }
+        for(int x = 0;x<this.columns.length;x++){
+            this.column_codes[x] = Arrays.copyOf(this.column_codes[x],capacity);
+            if(this.column_values[x] != null){
+                this.column_values[x] = Arrays.copyOf(this.column_values[x],capacity);
+            }
+        }
+    }
+    /**
+     * Encode a whole file, where the first line of the file is the header
+     * @param file the lines of the file
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return the encoded dataset
+     */
+    public static EncodedDataset encode(ArrayList<String> file, String missing_value_designation, int default_bins){
+        DatasetEncoder encoder = new DatasetEncoder(file.get(0),missing_value_designation,default_bins);
+        for(int x = 1;x<file.size();x++){
+            encoder.addLine(file.get(x));
+        }
+        return encoder.build();
+    }
+}
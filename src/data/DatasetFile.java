@@ -0,0 +1,130 @@
+package data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary cache of an encoded dataset, so repeated runs over the same data can skip parsing the csv. The file holds a
+ * header, the columns (with dictionaries, bin edges and impute values), then every code in column major order, then
+ * the values of any numeric columns that have not been binned yet
+ */
+public class DatasetFile {
+    private static final String MAGIC = "NBDS";
+    private static final int VERSION = 2;
+    //codes are read and written this many at a time
+    private static final int CODES_PER_WINDOW = 1 << 26;
+    /**
+     * @param data the dataset to write
+     * @param path where to write it
+     * @throws IOException if the file can't be written
+     */
+    public static void write(EncodedDataset data, Path path) throws IOException{
+        ByteArrayOutputStream meta_bytes = new ByteArrayOutputStream();
+        DataOutputStream meta = new DataOutputStream(meta_bytes);
+        BinaryFormat.writeHeader(meta,MAGIC,VERSION);
+        BinaryFormat.writeString(meta,data.getMissingValueDesignation());
+        BinaryFormat.writeColumns(meta,data.getColumns());
+        meta.writeInt(data.getRows());
+        for(int x = 0;x<data.getColumnCount();x++){
+            meta.writeBoolean(data.getNumeric(x) != null);
+        }
+        meta.flush();
+        try(FileChannel channel = FileChannel.open(path,StandardOpenOption.CREATE,StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            writeFully(channel,ByteBuffer.wrap(meta_bytes.toByteArray()));
+            //the codes are written straight out of the array a window at a time
+            int length = data.getRows() * data.getColumnCount();
+            ByteBuffer window = ByteBuffer.allocateDirect(Math.min(length,CODES_PER_WINDOW) * 4);
+            for(int start = 0;start<length;start+=CODES_PER_WINDOW){
+                int count = Math.min(CODES_PER_WINDOW,length - start);
+                window.clear();
+                window.asIntBuffer().put(data.getCodes(),start,count);
+                window.limit(count * 4);
+                writeFully(channel,window);
+            }
+            for(int x = 0;x<data.getColumnCount();x++){
+                if(data.getNumeric(x) != null){
+                    writeValues(channel,data.getNumeric(x),data.getRows());
+                }
+            }
+        }
+    }
+    /**
+     * @param path a file written by write
+     * @return the dataset that was written
+     * @throws IOException if the file can't be read or is not a dataset file
+     */
+    public static EncodedDataset read(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)){
+            //the columns come first, they will fit in the first window of the file
+            long size = channel.size();
+            MappedByteBuffer meta = channel.map(FileChannel.MapMode.READ_ONLY,0,Math.min(size,Integer.MAX_VALUE));
+            BinaryFormat.readHeader(meta,MAGIC,VERSION);
+            String missing_value_designation = BinaryFormat.readString(meta);
+            ColumnInfo[] columns = BinaryFormat.readColumns(meta);
+            int rows = meta.getInt();
+            boolean[] has_numeric = new boolean[columns.length];
+            for(int x = 0;x<columns.length;x++){
+                has_numeric[x] = meta.get() != 0;
+            }
+            int[] codes = new int[EncodedDataset.cellCount(rows,columns.length)];
+            long position = meta.position();
+            for(int start = 0;start<codes.length;start+=CODES_PER_WINDOW){
+                int count = Math.min(CODES_PER_WINDOW,codes.length - start);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,position,count * 4L);
+                window.asIntBuffer().get(codes,start,count);
+                position += count * 4L;
+            }
+            //the sketches are not written, they are made again from the values
+            double[][] numeric = new double[columns.length][];
+            for(int x = 0;x<columns.length;x++){
+                if(has_numeric[x]){
+                    numeric[x] = new double[rows];
+                    for(int start = 0;start<rows;start+=CODES_PER_WINDOW){
+                        int count = Math.min(CODES_PER_WINDOW,rows - start);
+                        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,position,count * 8L);
+                        window.asDoubleBuffer().get(numeric[x],start,count);
+                        position += count * 8L;
+                    }
+                    for(int row = 0;row<rows;row++){
+                        columns[x].getSketch().add(numeric[x][row],row);
+                    }
+                }
+            }
+            return new EncodedDataset(columns,ColumnInfo.findClassIndex(columns),rows,codes,numeric,
+                    missing_value_designation);
+        }
+    }
+    /**
+     * @param channel where to write
+     * @param values values of a numeric column
+     * @param rows amount of the values to write
+     * @throws IOException if the write fails
+     */
+    private static void writeValues(FileChannel channel, double[] values, int rows) throws IOException{
+        ByteBuffer window = ByteBuffer.allocateDirect(Math.min(rows,CODES_PER_WINDOW) * 8);
+        for(int start = 0;start<rows;start+=CODES_PER_WINDOW){
+            int count = Math.min(CODES_PER_WINDOW,rows - start);
+            window.clear();
+            window.asDoubleBuffer().put(values,start,count);
+            window.limit(count * 8);
+            writeFully(channel,window);
+        }
+    }
+    /**
+     * @param channel where to write
+     * @param buffer bytes to write, from its position to its limit
+     * @throws IOException if the write fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException{
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Writes made up csv files in the same header dialect as the bundled datasets, for testing at sizes the bundled ones
+ * can't reach. Every feature leans towards a value (or for continuous features a mean) picked by the class, so there
+ * is a real conditional structure to learn, and how strongly it leans is configurable. Rows are written as they are
+ * made, so the file can be as big as the disk allows
+ */
+public class DatasetGenerator {
+    private long rows;
+    private int features;
+    private int classes;
+    private long seed;
+    private int cardinality;
+    private int continuous_features;
+    private double class_imbalance;
+    private double missing_rate;
+    private String missing_value_designation;
+    private double signal;
+    /**
+     * @param rows amount of rows to write
+     * @param features amount of feature columns, the class column is written after them
+     * @param classes amount of classes
+     * @param seed seed of the random values, the same seed always writes the same file
+     * @throws IllegalArgumentException if rows is negative, or there is not at least one feature and one class
+     */
+    public DatasetGenerator(long rows, int features, int classes, long seed){
+        if(rows < 0){
+            throw new IllegalArgumentException("Rows can't be negative, got " + rows);
+        }
+        if(features < 1){
+            throw new IllegalArgumentException("Features has to be at least 1, got " + features);
+        }
+        if(classes < 1){
+            throw new IllegalArgumentException("Classes has to be at least 1, got " + classes);
+        }
+        this.rows = rows;
+        this.features = features;
+        this.classes = classes;
+        this.seed = seed;
+        this.cardinality = 10;
+        this.continuous_features = 0;
+        this.class_imbalance = 1.0;
+        this.missing_rate = 0.0;
+        this.missing_value_designation = "?";
+        this.signal = 0.5;
+    }
+    /**
+     * @param cardinality amount of values each discrete feature has
+     * @throws IllegalArgumentException if cardinality is less than 1
+     */
+    public void setCardinality(int cardinality){
+        if(cardinality < 1){
+            throw new IllegalArgumentException("Cardinality has to be at least 1, got " + cardinality);
+        }
+        this.cardinality = cardinality;
+    }
+    /**
+     * @param continuous_features how many of the features are continuous, these come first and are flagged "!bin" and
+     *                            "!bin-6" in turn, the rest are discrete values flagged "!impute"
+     * @throws IllegalArgumentException if continuous_features is not between 0 and the amount of features
+     */
+    public void setContinuousFeatures(int continuous_features){
+        if(continuous_features < 0 || continuous_features > this.features){
+            throw new IllegalArgumentException("Continuous features has to be between 0 and " + this.features
+                    + ", got " + continuous_features);
+        }
+        this.continuous_features = continuous_features;
+    }
+    /**
+     * @param class_imbalance each class is this many times as likely as the one before it, 1 gives balanced classes
+     * @throws IllegalArgumentException if class_imbalance is not a positive number
+     */
+    public void setClassImbalance(double class_imbalance){
+        //written so NaN fails too
+        if(!(class_imbalance > 0) || Double.isInfinite(class_imbalance)){
+            throw new IllegalArgumentException("Class imbalance has to be a positive number, got "
+                    + class_imbalance);
+        }
+        this.class_imbalance = class_imbalance;
+    }
+    /**
+     * @param missing_rate fraction of feature cells written as missing
+     * @throws IllegalArgumentException if missing_rate is not between 0 and 1
+     */
+    public void setMissingRate(double missing_rate){
+        if(!(missing_rate >= 0 && missing_rate <= 1)){
+            throw new IllegalArgumentException("Missing rate has to be between 0 and 1, got " + missing_rate);
+        }
+        this.missing_rate = missing_rate;
+    }
+    /**
+     * @param missing_value_designation the value written for missing cells
+     * @throws IllegalArgumentException if the value would split a cell or a line
+     */
+    public void setMissingValueDesignation(String missing_value_designation){
+        if(missing_value_designation.contains(",") || missing_value_designation.contains("\n")
+                || missing_value_designation.contains("\r")){
+            throw new IllegalArgumentException("The missing value can't hold a comma or a line break, got "
+                    + missing_value_designation);
+        }
+        this.missing_value_designation = missing_value_designation;
+    }
+    /**
+     * @param signal chance a discrete feature takes the value its class leans towards instead of a uniformly random one,
+     *               and the distance between class means of continuous features in standard deviations
+     * @throws IllegalArgumentException if signal is not between 0 and 1
+     */
+    public void setSignal(double signal){
+        if(!(signal >= 0 && signal <= 1)){
+            throw new IllegalArgumentException("Signal has to be between 0 and 1, got " + signal);
+        }
+        this.signal = signal;
+    }
+    /**
+     * Write the header and every row
+     * @param output where to write the csv, it is not closed
+     * @throws IOException if the write fails
+     */
+    public void write(OutputStream output) throws IOException{
+        BufferedOutputStream buffered = new BufferedOutputStream(output,1 << 20);
+        buffered.write(header().getBytes(StandardCharsets.UTF_8));
+        //chance of each class, added up so a class can be picked with one random number
+        double[] class_cumulative = new double[this.classes];
+        double total = 0;
+        for(int x = 0;x<this.classes;x++){
+            total += Math.pow(this.class_imbalance,x);
+            class_cumulative[x] = total;
+        }
+        byte[] missing = this.missing_value_designation.getBytes(StandardCharsets.UTF_8);
+        SplittableRandom random = new SplittableRandom(this.seed);
+        //one line is built up here and written at once
+        byte[] line = new byte[64];
+        for(long row = 0;row<this.rows;row++){
+            int class_code = pickClass(class_cumulative,random.nextDouble() * total);
+            int length = 0;
+            for(int x = 0;x<this.features;x++){
+                //make sure a feature, a comma and the class always fit
+                if(length + 64 + missing.length > line.length){
+                    line = Arrays.copyOf(line,line.length * 2);
+                }
+                if(random.nextDouble() < this.missing_rate){
+                    System.arraycopy(missing,0,line,length,missing.length);
+                    length += missing.length;
+                }else if(x < this.continuous_features){
+                    //normal around a mean that moves with the class
+                    double value = 10 + class_code * this.signal + gaussian(random);
+                    length = writeDecimal(line,length,value);
+                }else{
+                    int value = random.nextDouble() < this.signal ? (class_code + x) % this.cardinality
+                            : random.nextInt(this.cardinality);
+                    length = writeInt(line,length,value);
+                }
+                line[length++] = ',';
+            }
+            if(length + 32 > line.length){
+                line = Arrays.copyOf(line,line.length * 2);
+            }
+            line[length++] = 'c';
+            length = writeInt(line,length,class_code);
+            line[length++] = '\n';
+            buffered.write(line,0,length);
+        }
+        buffered.flush();
+    }
+    /**
+     * @return the header line, naming every column and giving it its attributes
+     */
+    private String header(){
+        StringBuilder header = new StringBuilder();
+        for(int x = 0;x<this.features;x++){
+            header.append("feature ").append(x);
+            if(x < this.continuous_features){
+                header.append(x % 2 == 0 ? "!bin" : "!bin-6");
+            }else{
+                header.append("!impute");
+            }
+            header.append(",");
+        }
+        header.append("class\n");
+        return header.toString();
+    }
+    /**
+     * @param class_cumulative chance of each class, added up
+     * @param pick a random number between 0 and the total chance
+     * @return the class the number falls in
+     */
+    private static int pickClass(double[] class_cumulative, double pick){
+        for(int x = 0;x<class_cumulative.length - 1;x++){
+            if(pick < class_cumulative[x]){
+                return x;
+            }
+        }
+        return class_cumulative.length - 1;
+    }
+    /**
+     * Standard normal value using the polar method, since SplittableRandom does not make them itself
+     * @param random where the uniform values come from
+     * @return a normally distributed value with mean 0 and standard deviation 1
+     */
+    private static double gaussian(SplittableRandom random){
+        double x;
+        double y;
+        double radius;
+        do{
+            x = random.nextDouble() * 2 - 1;
+            y = random.nextDouble() * 2 - 1;
+            radius = x * x + y * y;
+        }while(radius >= 1 || radius == 0);
+        return x * Math.sqrt(-2 * Math.log(radius) / radius);
+    }
+    /**
+     * @param line where to write
+     * @param length where in line to start writing
+     * @param value a positive number to write
+     * @return where in line the number stops
+     */
+    private static int writeInt(byte[] line, int length, long value){
+        if(value == 0){
+            line[length] = '0';
+            return length + 1;
+        }
+        int digits = 0;
+        for(long left = value;left>0;left/=10){
+            digits++;
+        }
+        for(int x = digits - 1;x>=0;x--){
+            line[length + x] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+        return length + digits;
+    }
+    /**
+     * @param line where to write
+     * @param length where in line to start writing
+     * @param value the number to write, to two decimal places
+     * @return where in line the number stops
+     */
+    private static int writeDecimal(byte[] line, int length, double value){
+        long hundredths = Math.round(value * 100);
+        if(hundredths < 0){
+            line[length++] = '-';
+            hundredths = -hundredths;
+        }
+        length = writeInt(line,length,hundredths / 100);
+        line[length++] = '.';
+        line[length++] = (byte)('0' + (hundredths / 10) % 10);
+        line[length++] = (byte)('0' + hundredths % 10);
+        return length;
+    }
+}
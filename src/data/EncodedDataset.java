@@ -0,0 +1,231 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A dataset where every cell has been replaced by the code its column dictionary gave it. The codes are stored in
+ * one flat column major array, so column x of row y lives at codes[x * rows + y]. Numeric columns hold their parsed
+ * values until they are binned, with NaN for missing values, and a code of 0 until then
+ */
+public class EncodedDataset {
+    //below this many rows binning a column isn't worth splitting up between threads
+    private static final int PARALLEL_ROWS = 1 << 16;
+    private ColumnInfo[] columns;
+    private int class_index;
+    private int rows;
+    private int[] codes;
+    //values of each numeric column that has not been binned yet, null for every other column
+    private double[][] numeric;
+    private String missing_value_designation;
+    /**
+     * @param columns information about each column, including its dictionary
+     * @param class_index the index of the class column
+     * @param rows amount of rows present
+     * @param codes column major codes, of length columns * rows
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     */
+    public EncodedDataset(ColumnInfo[] columns, int class_index, int rows, int[] codes, String missing_value_designation){
+        this(columns,class_index,rows,codes,new double[columns.length][],missing_value_designation);
+    }
+    /**
+     * @param columns information about each column, including its dictionary
+     * @param class_index the index of the class column
+     * @param rows amount of rows present
+     * @param codes column major codes, of length columns * rows
+     * @param numeric values of each numeric column not binned yet (at least rows long), null for the other columns
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     */
+    public EncodedDataset(ColumnInfo[] columns, int class_index, int rows, int[] codes, double[][] numeric,
+                          String missing_value_designation){
+        this.columns = columns;
+        this.class_index = class_index;
+        this.rows = rows;
+        this.codes = codes;
+        this.numeric = numeric;
+        this.missing_value_designation = missing_value_designation;
+    }
+    /**
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return the code stored in the cell
+     */
+    public int code(int row, int column){
+        return this.codes[column * this.rows + row];
+    }
+    /**
+     * @param row the row we want the class of
+     * @return the code of the class of the row
+     */
+    public int classCode(int row){
+        return this.codes[this.class_index * this.rows + row];
+    }
+    /**
+     * @param column the column we want the start of
+     * @return the index in getCodes() where the column starts
+     */
+    public int columnOffset(int column){
+        return column * this.rows;
+    }
+    /**
+     * The codes of every column live in one array, so a dataset can hold at most Integer.MAX_VALUE cells
+     * @param rows amount of rows
+     * @param columns amount of columns
+     * @return amount of cells, the length of the codes array
+     * @throws IllegalArgumentException if there are too many cells to fit in one array
+     */
+    public static int cellCount(long rows, int columns){
+        long cells = rows * columns;
+        if(cells > Integer.MAX_VALUE){
+            throw new IllegalArgumentException(rows + " rows of " + columns + " columns is too many cells, at most "
+                    + Integer.MAX_VALUE + " fit in a dataset");
+        }
+        return (int)cells;
+    }
+    public int[] getCodes(){
+        return this.codes;
+    }
+    public int getRows(){
+        return this.rows;
+    }
+    public int getColumnCount(){
+        return this.columns.length;
+    }
+    public ColumnInfo getColumn(int column){
+        return this.columns[column];
+    }
+    public ColumnInfo[] getColumns(){
+        return this.columns;
+    }
+    public int getClassIndex(){
+        return this.class_index;
+    }
+    /**
+     * @param column the column we want the values of
+     * @return the parsed values of the column, or null if it is not numeric or has already been binned
+     */
+    public double[] getNumeric(int column){
+        return this.numeric[column];
+    }
+    /**
+     * @return the amount of distinct classes present
+     */
+    public int getClassCount(){
+        return this.columns[this.class_index].getDictionary().size();
+    }
+    public String getMissingValueDesignation(){
+        return this.missing_value_designation;
+    }
+    /**
+     * Impute missing data in the columns the header flags with "!impute", using the strategy the header gives (ex.
+     * "!impute-median") or else the mean value of the column. Numeric columns take the mean from their sketch and only
+     * round it when flagged with "!rounded_impute", the rest use the rounded mean. Since every distinct value is only
+     * parsed once, those work off of a count of each code rather than every cell. Big columns are imputed by a few
+     * threads at once, see Imputer
+     */
+    public void imputeMissing(){
+        new Imputer(ForkJoinPool.commonPool()).impute(this);
+    }
+    /**
+     * Shuffle the cells of a column in place (Fisher-Yates), which keeps how often each value shows up but breaks any
+     * link between the column and the class. A numeric column not binned yet has its values shuffled the same way
+     * @param column the column to shuffle, which can't be the class column
+     * @param random where the swaps come from, seed it to shuffle the same way every time
+     * @throws IllegalArgumentException if the column is the class column
+     */
+    public void permuteColumn(int column, SplittableRandom random){
+        if(column == this.class_index){
+            throw new IllegalArgumentException("The class column can't be permuted");
+        }
+        int start = columnOffset(column);
+        double[] values = this.numeric[column];
+        for(int row = this.rows - 1;row>0;row--){
+            int swap = random.nextInt(row + 1);
+            int held = this.codes[start + row];
+            this.codes[start + row] = this.codes[start + swap];
+            this.codes[start + swap] = held;
+            if(values != null){
+                double held_value = values[row];
+                values[row] = values[swap];
+                values[swap] = held_value;
+            }
+        }
+    }
+    /**
+     * Bin the numeric columns flagged with "!bin" using the edges their sketch gives, the same width apart or holding
+     * close to the same amount of values each when flagged with "!quantile". The column gets a new dictionary where
+     * the codes are the bin numbers, and missing values get the code after the bins. A column that already has edges
+     * (ex. another chunk of the same file was binned first) keeps them, so every chunk is binned the same way. Columns
+     * with enough rows have their bins assigned by a few threads at once, each taking a range of rows
+     */
+    public void binContinuousValues(){
+        for(int column = 0;column<this.columns.length;column++){
+            ColumnInfo info = this.columns[column];
+            //Only bin numeric columns that have not been binned yet, gaussian columns keep their values
+            if(this.numeric[column] == null || info.isGaussian()){
+                continue;
+            }
+            int bins = info.getBins();
+            double[] bin_edges = info.getBinEdges();
+            ColumnDictionary binned = info.getDictionary();
+            if(bin_edges == null){
+                bin_edges = info.getSketch().edges(bins,info.isQuantile());
+                //the new dictionary has the bins first, so bin y gets code y
+                binned = new ColumnDictionary();
+                for(int y = 0;y<bins;y++){
+                    binned.encode(String.valueOf(y));
+                }
+            }
+            final double[] edges = bin_edges;
+            boolean any_missing = false;
+            if(this.rows < PARALLEL_ROWS){
+                any_missing = assignBins(column,edges,0,this.rows);
+            }else{
+                ForkJoinPool pool = ForkJoinPool.commonPool();
+                int parts = pool.getParallelism();
+                final int current = column;
+                ArrayList<ForkJoinTask<Boolean>> tasks = new ArrayList<>();
+                for(int x = 0;x<parts;x++){
+                    final int from = (int)((long)this.rows * x / parts);
+                    final int to = (int)((long)this.rows * (x + 1) / parts);
+                    tasks.add(pool.submit(() -> assignBins(current,edges,from,to)));
+                }
+                for(ForkJoinTask<Boolean> task : tasks){
+                    any_missing |= task.join();
+                }
+            }
+            //missing values were given the code after the bins, which the missing value designation now gets
+            if(any_missing){
+                binned.encode(this.missing_value_designation);
+            }
+            info.setDictionary(binned);
+            info.setBinEdges(bin_edges);
+            this.numeric[column] = null;
+        }
+    }
+    /**
+     * Give a range of rows of a numeric column the code of the bin their value falls in
+     * @param column the numeric column to bin
+     * @param bin_edges upper edge of each bin
+     * @param from first row to bin
+     * @param to row to stop at (exclusive)
+     * @return if any of the rows were missing, these get the code after the bins
+     */
+    private boolean assignBins(int column, double[] bin_edges, int from, int to){
+        double[] values = this.numeric[column];
+        int start = columnOffset(column);
+        boolean any_missing = false;
+        for(int row = from;row<to;row++){
+            double value = values[row];
+            if(Double.isNaN(value)){
+                this.codes[start + row] = bin_edges.length;
+                any_missing = true;
+            }else{
+                this.codes[start + row] = BinSketch.findBin(bin_edges,value);
+            }
+        }
+        return any_missing;
+    }
+}
@@ -0,0 +1,31 @@
+package data;
+
+/**
+ * What a missing cell is replaced with, picked per column in the header (ex. "Bare Nuclei!impute-median") or for every
+ * "!impute" column without one by the Imputer
+ */
+public enum ImputeStrategy {
+    //the mean of the column, numeric columns round it when flagged "!rounded_impute" and the rest always round it
+    MEAN,
+    //the middle value of the column, numeric columns take it from a sample of their values
+    MEDIAN,
+    //the value showing up most often, numeric columns take it from a sample of their values
+    MODE,
+    //the value showing up most often with the row's class (the class mean for numeric columns), rows scored later
+    //have no class to go on so they get the mode (or mean) of the whole column
+    CLASS_MODE;
+    /**
+     * @param name the name of a strategy in any case, ex. "median" or "class_mode"
+     * @return the strategy
+     * @throws IllegalArgumentException if there is no strategy with the name
+     */
+    public static ImputeStrategy parse(String name){
+        for(ImputeStrategy strategy : values()){
+            if(strategy.name().equalsIgnoreCase(name)){
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown impute strategy " + name
+                + ", expected mean, median, mode or class_mode");
+    }
+}
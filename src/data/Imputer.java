@@ -0,0 +1,480 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Fills in the missing cells of the columns the header flags with "!impute", in place on the encoded data. One pass
+ * over each column finds its missing cells, keeping them as a bitmap, and gathers what the strategy needs (counts of
+ * each code, per class counts or sums, or a sample of the values). Columns with enough rows are split into ranges of
+ * rows gathered at the same time and then merged, and every column is gathered at the same time as the others. A
+ * second pass only visits the cells the bitmap marks as missing.
+ * A column takes the strategy its header gives (ex. "!impute-median"), or the imputer's strategy when it gives none
+ */
+public class Imputer {
+    //below this many rows splitting a column up between threads isn't worth it
+    private static final int PARALLEL_ROWS = 1 << 16;
+    //amount of values sampled for a median or mode of a numeric column whose sketch keeps no sample
+    private static final int SAMPLE_SIZE = 4096;
+    private ForkJoinPool pool;
+    private ImputeStrategy strategy;
+    //column -> value to fill the missing cells of a column that is not numeric with, worked out from more than this
+    //dataset (ex. counts merged over workers), null to work them out from the dataset
+    private String[] fixed_values;
+    /**
+     * What one range of rows of a column adds up to, merged over the ranges once they are all done
+     */
+    private static class Statistics {
+        //categorical columns: how many cells had each code, and code * classes + class for class mode
+        private long[] code_counts;
+        private long[] class_code_counts;
+        //numeric columns: sample of the values for a median or mode, and count and sum of each class for class mode
+        private BinSketch sketch;
+        private long[] class_counts;
+        private double[] class_sums;
+        private void merge(Statistics other){
+            if(this.code_counts != null){
+                for(int x = 0;x<this.code_counts.length;x++){
+                    this.code_counts[x] += other.code_counts[x];
+                }
+            }
+            if(this.class_code_counts != null){
+                for(int x = 0;x<this.class_code_counts.length;x++){
+                    this.class_code_counts[x] += other.class_code_counts[x];
+                }
+            }
+            if(this.sketch != null){
+                this.sketch.merge(other.sketch);
+            }
+            if(this.class_counts != null){
+                for(int x = 0;x<this.class_counts.length;x++){
+                    this.class_counts[x] += other.class_counts[x];
+                    this.class_sums[x] += other.class_sums[x];
+                }
+            }
+        }
+    }
+    /**
+     * @param pool the pool big columns are split up on
+     */
+    public Imputer(ForkJoinPool pool){
+        this.pool = pool;
+        this.strategy = ImputeStrategy.MEAN;
+        this.fixed_values = null;
+    }
+    /**
+     * @param strategy strategy of the "!impute" columns whose header gives none (default mean)
+     */
+    public void setStrategy(ImputeStrategy strategy){
+        this.strategy = strategy;
+    }
+    /**
+     * Fill the columns that are not numeric with values worked out elsewhere (see fillValue) instead of from the
+     * dataset, ex. from the counts of every worker's part of a file, so every part is filled the same way
+     * @param fixed_values column -> value the missing cells are filled with, null to leave the column as it is
+     */
+    public void setFixedValues(String[] fixed_values){
+        this.fixed_values = fixed_values;
+    }
+    /**
+     * Impute every column flagged "!impute", setting the impute value of each so rows scored later are imputed the same
+     * way. Numeric columns must not have been binned yet
+     * @param data the dataset to impute, changed in place
+     * @return column -> bitmap of the cells that were missing, bit row % 64 of word row / 64, null for columns that
+     * were not imputed
+     */
+    public long[][] impute(EncodedDataset data){
+        int columns = data.getColumnCount();
+        int rows = data.getRows();
+        int chunks = rows < PARALLEL_ROWS ? 1 : Math.max(1,this.pool.getParallelism());
+        //ranges start on a multiple of 64 rows so no two share a word of the bitmap
+        int[] chunk_starts = new int[chunks + 1];
+        for(int chunk = 1;chunk<chunks;chunk++){
+            chunk_starts[chunk] = (int)((long)rows * chunk / chunks) & ~63;
+        }
+        chunk_starts[chunks] = rows;
+        long[][] missing = new long[columns][];
+        ImputeStrategy[] strategies = new ImputeStrategy[columns];
+        int[] missing_codes = new int[columns];
+        ArrayList<ForkJoinTask<Statistics>> tasks = new ArrayList<>();
+        for(int column = 0;column<columns;column++){
+            ColumnInfo info = data.getColumn(column);
+            if(!info.shouldImpute() || column == data.getClassIndex()){
+                continue;
+            }
+            missing_codes[column] = data.getNumeric(column) == null
+                    ? info.getDictionary().lookup(data.getMissingValueDesignation()) : -1;
+            if(data.getNumeric(column) == null && this.fixed_values != null){
+                if(this.fixed_values[column] == null){
+                    continue;
+                }
+                //set even when nothing is missing here, since it was worked out from more than this dataset
+                info.setImputeValue(this.fixed_values[column]);
+            }
+            //nothing is missing from this column
+            if(data.getNumeric(column) == null && missing_codes[column] == -1){
+                continue;
+            }
+            strategies[column] = info.getImputeStrategy() != null ? info.getImputeStrategy() : this.strategy;
+            missing[column] = new long[(rows + 63) >>> 6];
+            for(int chunk = 0;chunk<chunks;chunk++){
+                final int current = column;
+                final int from = chunk_starts[chunk];
+                final int to = chunk_starts[chunk + 1];
+                final long[] bitmap = missing[column];
+                final ImputeStrategy strategy = strategies[column];
+                final int missing_code = missing_codes[column];
+                tasks.add(this.pool.submit(() -> gather(data,current,strategy,missing_code,bitmap,from,to)));
+            }
+        }
+        //merge in range order, then work out what each column is filled with
+        int task = 0;
+        //column -> class -> code or value to fill in, a single entry when the class does not matter
+        int[][] fill_codes = new int[columns][];
+        double[][] fill_values = new double[columns][];
+        for(int column = 0;column<columns;column++){
+            if(missing[column] == null){
+                continue;
+            }
+            Statistics statistics = tasks.get(task++).join();
+            for(int chunk = 1;chunk<chunks;chunk++){
+                statistics.merge(tasks.get(task++).join());
+            }
+            if(data.getNumeric(column) != null){
+                fill_values[column] = numericFill(data,column,strategies[column],statistics);
+            }else if(this.fixed_values != null){
+                int code = data.getColumn(column).getDictionary().encode(this.fixed_values[column]);
+                fill_codes[column] = new int[]{code};
+            }else{
+                fill_codes[column] = codeFill(data,column,strategies[column],missing_codes[column],statistics);
+            }
+            if(fill_values[column] == null && fill_codes[column] == null){
+                missing[column] = null;
+            }
+        }
+        //fill the cells the bitmaps mark
+        ArrayList<ForkJoinTask<?>> fills = new ArrayList<>();
+        for(int column = 0;column<columns;column++){
+            if(missing[column] == null){
+                continue;
+            }
+            for(int chunk = 0;chunk<chunks;chunk++){
+                final int current = column;
+                final int from = chunk_starts[chunk];
+                final int to = chunk_starts[chunk + 1];
+                final long[] bitmap = missing[column];
+                final int[] codes = fill_codes[column];
+                final double[] values = fill_values[column];
+                fills.add(this.pool.submit(() -> fill(data,current,bitmap,codes,values,from,to)));
+            }
+        }
+        for(ForkJoinTask<?> fill : fills){
+            fill.join();
+        }
+        return missing;
+    }
+    /**
+     * Go over a range of rows of a column, marking the missing cells and gathering what the strategy needs
+     * @param data the dataset holding the column
+     * @param column the column
+     * @param strategy the strategy of the column
+     * @param missing_code code of a missing value, for columns that are not numeric
+     * @param bitmap where the missing cells are marked
+     * @param from first row
+     * @param to row to stop at (exclusive)
+     * @return what the range adds up to
+     */
+    private static Statistics gather(EncodedDataset data, int column, ImputeStrategy strategy, int missing_code,
+                                     long[] bitmap, int from, int to){
+        Statistics statistics = new Statistics();
+        int[] codes = data.getCodes();
+        int class_start = data.columnOffset(data.getClassIndex());
+        int classes = data.getClassCount();
+        double[] values = data.getNumeric(column);
+        if(values != null){
+            BinSketch column_sketch = data.getColumn(column).getSketch();
+            boolean needs_sample = strategy == ImputeStrategy.MEDIAN || strategy == ImputeStrategy.MODE;
+            //the column's own sketch is used when it kept a sample, since it may have been merged over other parts
+            if(needs_sample && !column_sketch.hasSample()){
+                statistics.sketch = new BinSketch(SAMPLE_SIZE);
+            }
+            if(strategy == ImputeStrategy.CLASS_MODE){
+                statistics.class_counts = new long[classes];
+                statistics.class_sums = new double[classes];
+            }
+            for(int row = from;row<to;row++){
+                double value = values[row];
+                if(Double.isNaN(value)){
+                    bitmap[row >>> 6] |= 1L << row;
+                    continue;
+                }
+                if(statistics.sketch != null){
+                    statistics.sketch.add(value,row);
+                }
+                if(statistics.class_counts != null){
+                    int class_code = codes[class_start + row];
+                    statistics.class_counts[class_code]++;
+                    statistics.class_sums[class_code] += value;
+                }
+            }
+            return statistics;
+        }
+        int size = data.getColumn(column).getDictionary().size();
+        int start = data.columnOffset(column);
+        if(strategy == ImputeStrategy.CLASS_MODE){
+            statistics.class_code_counts = new long[size * classes];
+        }
+        statistics.code_counts = new long[size];
+        for(int row = from;row<to;row++){
+            int code = codes[start + row];
+            if(code == missing_code){
+                bitmap[row >>> 6] |= 1L << row;
+            }
+            statistics.code_counts[code]++;
+            if(statistics.class_code_counts != null){
+                statistics.class_code_counts[code * classes + codes[class_start + row]]++;
+            }
+        }
+        return statistics;
+    }
+    /**
+     * Work out what the missing cells of a numeric column are filled with, and set the column's impute value
+     * @param data the dataset holding the column
+     * @param column the numeric column
+     * @param strategy the strategy of the column
+     * @param statistics what the whole column added up to
+     * @return the value to fill in for each class, or a single value for every class, null if there is nothing to
+     * take it from
+     */
+    private static double[] numericFill(EncodedDataset data, int column, ImputeStrategy strategy,
+                                        Statistics statistics){
+        ColumnInfo info = data.getColumn(column);
+        BinSketch sketch = statistics.sketch != null ? statistics.sketch : info.getSketch();
+        double value;
+        switch(strategy){
+            case MEDIAN:
+                value = sketch.quantile(0.5);
+                break;
+            case MODE:
+                value = sketch.mode();
+                break;
+            default:
+                value = info.getSketch().getMean();
+        }
+        //nothing to take a value from
+        if(Double.isNaN(value)){
+            return null;
+        }
+        if(info.shouldRoundImpute()){
+            value = Math.round(value);
+        }
+        info.setImputeValue(String.valueOf(value));
+        if(strategy != ImputeStrategy.CLASS_MODE){
+            return new double[]{value};
+        }
+        double[] fill = new double[statistics.class_counts.length];
+        for(int class_code = 0;class_code<fill.length;class_code++){
+            long count = statistics.class_counts[class_code];
+            //a class that never has a value gets the mean of the whole column
+            double class_value = count == 0 ? value : statistics.class_sums[class_code] / count;
+            fill[class_code] = info.shouldRoundImpute() ? Math.round(class_value) : class_value;
+        }
+        return fill;
+    }
+    /**
+     * Work out what the missing cells of a column that is not numeric are filled with, and set the column's impute
+     * value
+     * @param data the dataset holding the column
+     * @param column the column
+     * @param strategy the strategy of the column
+     * @param missing_code code of a missing value
+     * @param statistics what the whole column added up to
+     * @return the code to fill in for each class, or a single code for every class, null if there is nothing to take
+     * it from
+     */
+    private static int[] codeFill(EncodedDataset data, int column, ImputeStrategy strategy, int missing_code,
+                                  Statistics statistics){
+        ColumnDictionary dictionary = data.getColumn(column).getDictionary();
+        int code = fillCode(dictionary,statistics.code_counts,missing_code,strategy);
+        if(code == -1){
+            return null;
+        }
+        data.getColumn(column).setImputeValue(dictionary.decode(code));
+        if(strategy != ImputeStrategy.CLASS_MODE){
+            return new int[]{code};
+        }
+        int classes = data.getClassCount();
+        int[] fill = new int[classes];
+        for(int class_code = 0;class_code<classes;class_code++){
+            int class_mode = modeCode(statistics.class_code_counts,class_code,classes,missing_code);
+            //a class that never has a value gets the mode of the whole column
+            fill[class_code] = class_mode == -1 ? code : class_mode;
+        }
+        return fill;
+    }
+    /**
+     * Work out the value the missing cells of a column that is not numeric are filled with from how often each of its
+     * values shows up, ex. counts merged over every part of a file. Class mode takes the mode, since it needs the class
+     * of each cell
+     * @param dictionary values of the column, the rounded mean is added to it if it is not already there
+     * @param counts how many cells had each code of the dictionary
+     * @param missing_value_designation the value used to indicate a missing value
+     * @param strategy the strategy of the column
+     * @return the value to fill in, null if nothing is missing or there is nothing to take it from
+     */
+    public static String fillValue(ColumnDictionary dictionary, long[] counts, String missing_value_designation,
+                                   ImputeStrategy strategy){
+        int missing_code = dictionary.lookup(missing_value_designation);
+        if(missing_code == -1 || missing_code >= counts.length || counts[missing_code] == 0){
+            return null;
+        }
+        int code = fillCode(dictionary,counts,missing_code,strategy);
+        return code == -1 ? null : dictionary.decode(code);
+    }
+    /**
+     * @param data the dataset holding the column
+     * @param column a column that is not numeric
+     * @return how many cells had each code of the column's dictionary
+     */
+    public static long[] countCodes(EncodedDataset data, int column){
+        long[] counts = new long[data.getColumn(column).getDictionary().size()];
+        int[] codes = data.getCodes();
+        int start = data.columnOffset(column);
+        for(int row = 0;row<data.getRows();row++){
+            counts[codes[start + row]]++;
+        }
+        return counts;
+    }
+    /**
+     * @param dictionary dictionary of the column, the rounded mean is added to it if it is not already there
+     * @param counts how many cells had each code
+     * @param missing_code code of a missing value
+     * @param strategy the strategy of the column, class mode takes the mode of the whole column
+     * @return the code to fill in, -1 if every cell is missing or the values can't be parsed for a mean or median
+     */
+    private static int fillCode(ColumnDictionary dictionary, long[] counts, int missing_code, ImputeStrategy strategy){
+        if(strategy != ImputeStrategy.MEAN && strategy != ImputeStrategy.MEDIAN){
+            return modeCode(counts,0,1,missing_code);
+        }
+        double[] parsed = new double[counts.length];
+        for(int x = 0;x<counts.length;x++){
+            if(x == missing_code || counts[x] == 0){
+                continue;
+            }
+            try{
+                parsed[x] = Double.parseDouble(dictionary.decode(x));
+            }catch(NumberFormatException nfe){
+                //We tried to convert a double that could not be converted, give warning and leave the column
+                //on stderr, stdout carries the results of the command line and the protocol of the workers
+                System.err.println("When Imputing missing data value was unable to parse double: "
+                        + dictionary.decode(x));
+                return -1;
+            }
+        }
+        return strategy == ImputeStrategy.MEAN ? meanCode(dictionary,counts,parsed,missing_code)
+                : medianCode(counts,parsed,missing_code);
+    }
+    /**
+     * @param dictionary dictionary of the column, the rounded mean is added to it if it is not already there
+     * @param counts how many cells had each code
+     * @param parsed the number of each code
+     * @param missing_code code of a missing value
+     * @return the code of the rounded mean, -1 if every cell is missing
+     */
+    private static int meanCode(ColumnDictionary dictionary, long[] counts, double[] parsed, int missing_code){
+        double total_value = 0;
+        long count = 0;
+        for(int x = 0;x<counts.length;x++){
+            if(x != missing_code){
+                total_value += parsed[x] * counts[x];
+                count += counts[x];
+            }
+        }
+        if(count == 0){
+            return -1;
+        }
+        return dictionary.encode(String.valueOf((int)Math.round(total_value / count)));
+    }
+    /**
+     * @param counts how many cells had each code
+     * @param parsed the number of each code
+     * @param missing_code code of a missing value
+     * @return the code whose number is the median (the lower one of the middle two), -1 if every cell is missing
+     */
+    private static int medianCode(long[] counts, double[] parsed, int missing_code){
+        //sort the codes that show up by their number, there are only as many as the column has distinct values
+        Integer[] by_number = new Integer[counts.length];
+        long count = 0;
+        int present = 0;
+        for(int x = 0;x<counts.length;x++){
+            if(x != missing_code && counts[x] > 0){
+                by_number[present++] = x;
+                count += counts[x];
+            }
+        }
+        if(count == 0){
+            return -1;
+        }
+        Arrays.sort(by_number,0,present,(first, second) -> Double.compare(parsed[first],parsed[second]));
+        //walk up the codes until half the cells are behind us
+        long seen = 0;
+        for(int x = 0;x<present;x++){
+            seen += counts[by_number[x]];
+            if(seen * 2 >= count){
+                return by_number[x];
+            }
+        }
+        return by_number[present - 1];
+    }
+    /**
+     * @param counts counts of each code, at code * stride + offset
+     * @param offset where the counts start
+     * @param stride distance between the counts of two codes
+     * @param missing_code code of a missing value, never picked
+     * @return the code showing up most often (the smallest on a tie), -1 if none show up
+     */
+    private static int modeCode(long[] counts, int offset, int stride, int missing_code){
+        int best = -1;
+        long best_count = 0;
+        for(int code = 0;offset + code * stride<counts.length;code++){
+            long count = counts[offset + code * stride];
+            if(code != missing_code && count > best_count){
+                best = code;
+                best_count = count;
+            }
+        }
+        return best;
+    }
+    /**
+     * Fill the missing cells of a range of rows of a column
+     * @param data the dataset holding the column
+     * @param column the column
+     * @param bitmap the missing cells of the column
+     * @param codes code to fill in for each class, or one for every class, null for a numeric column
+     * @param values value to fill in for each class, or one for every class, null for other columns
+     * @param from first row, a multiple of 64
+     * @param to row to stop at (exclusive)
+     */
+    private static void fill(EncodedDataset data, int column, long[] bitmap, int[] codes, double[] values, int from,
+                             int to){
+        int[] column_codes = data.getCodes();
+        int start = data.columnOffset(column);
+        int class_start = data.columnOffset(data.getClassIndex());
+        double[] numeric = data.getNumeric(column);
+        for(int word = from >>> 6;word<(to + 63) >>> 6;word++){
+            long bits = bitmap[word];
+            //only visit the set bits
+            while(bits != 0){
+                int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if(codes != null){
+                    column_codes[start + row] = codes.length == 1 ? codes[0] : codes[column_codes[class_start + row]];
+                }else{
+                    numeric[row] = values.length == 1 ? values[0] : values[column_codes[class_start + row]];
+                }
+            }
+        }
+    }
+}
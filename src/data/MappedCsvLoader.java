@@ -0,0 +1,381 @@
+package data;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Loads a csv file from disk by memory mapping it, splitting it into segments that start and end on line breaks, and
+ * parsing the segments at the same time straight out of the mapped memory. Each segment is encoded with dictionaries
+ * of its own, which are merged into one set of dictionaries at the end, along with the sketches of numeric columns. The
+ * segments are merged in file order, so the codes come out the same as reading the file from start to end. Samples of
+ * numeric columns are taken once the rows are merged and each knows its row in the file, so they come out the same too
+ */
+public class MappedCsvLoader {
+    //a single mapping can't be bigger than 2GB, stay well under that
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private ForkJoinPool pool;
+    /**
+     * @param pool the pool segments are parsed on
+     */
+    public MappedCsvLoader(ForkJoinPool pool){
+        this.pool = pool;
+    }
+    /**
+     * @param path path of the csv file, the first line being the header
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return the encoded dataset
+     * @throws IOException if the file can't be read or has no header
+     */
+    public EncodedDataset load(Path path, String missing_value_designation, int default_bins) throws IOException{
+        long[] range = splitLines(path,1);
+        return loadRange(path,range[0],range[1],0,missing_value_designation,default_bins);
+    }
+    /**
+     * Load only part of a file, ex. the share of one worker when the file is split between processes
+     * @param path path of the csv file, the first line being the header
+     * @param start first byte of the part, the start of a line after the header (see splitLines)
+     * @param end byte the part stops at (exclusive), just after a line break or the end of the file
+     * @param first_row the row of the file the part starts on (see countRows), which the samples of numeric columns
+     *                  need to come out the same however the file is split
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return the rows of the part, encoded
+     * @throws IOException if the file can't be read or has no header
+     */
+    public EncodedDataset loadRange(Path path, long start, long end, long first_row, String missing_value_designation,
+                                    int default_bins) throws IOException{
+        try(FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size == 0){
+                throw new IOException("File has no header");
+            }
+            String header = readHeader(channel,findLineEnd(channel,0,size));
+            int segments = (int)Math.max(this.pool.getParallelism(),(end - start + MAX_SEGMENT_BYTES - 1) / MAX_SEGMENT_BYTES);
+            long[] segment_starts = splitRange(channel,start,end,segments);
+            //parse every segment with its own dictionaries
+            ArrayList<ForkJoinTask<EncodedDataset>> tasks = new ArrayList<>();
+            for(int x = 0;x<segments;x++){
+                final long segment_start = segment_starts[x];
+                final long segment_end = segment_starts[x + 1];
+                tasks.add(this.pool.submit(() -> parseSegment(channel,segment_start,segment_end,header,
+                        missing_value_designation,default_bins)));
+            }
+            ArrayList<EncodedDataset> parsed = new ArrayList<>();
+            for(ForkJoinTask<EncodedDataset> task : tasks){
+                parsed.add(task.join());
+            }
+            return merge(parsed,ColumnInfo.parseHeader(header,default_bins),first_row,missing_value_designation);
+        }
+    }
+    /**
+     * Split the rows of a file (everything after the header) into parts that start and end on line breaks
+     * @param path path of the csv file, the first line being the header
+     * @param parts amount of parts wanted
+     * @return parts + 1 positions, part x is from position x until position x + 1, some parts may be empty
+     * @throws IOException if the file can't be read or has no header
+     */
+    public static long[] splitLines(Path path, int parts) throws IOException{
+        try(FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size == 0){
+                throw new IOException("File has no header");
+            }
+            long data_start = Math.min(findLineEnd(channel,0,size) + 1,size);
+            return splitRange(channel,data_start,size,parts);
+        }
+    }
+    /**
+     * Count the rows in part of a file the way they are parsed, skipping blank lines
+     * @param path path of the csv file
+     * @param start first byte of the part, the start of a line
+     * @param end byte the part stops at (exclusive), just after a line break or the end of the file
+     * @return amount of rows in the part
+     * @throws IOException if the file can't be read
+     */
+    public static long countRows(Path path, long start, long end) throws IOException{
+        try(FileChannel channel = FileChannel.open(path,StandardOpenOption.READ)){
+            long rows = 0;
+            //bytes of the current line so far, and if the last of them was a carriage return
+            long line_length = 0;
+            boolean carriage_return = false;
+            for(long window = start;window<end;window+=MAX_SEGMENT_BYTES){
+                int length = (int)Math.min(MAX_SEGMENT_BYTES,end - window);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,window,length);
+                for(int x = 0;x<length;x++){
+                    byte current = buffer.get(x);
+                    if(current == '\n'){
+                        //a line of nothing but a carriage return is blank too
+                        if(line_length > (carriage_return ? 1 : 0)){
+                            rows++;
+                        }
+                        line_length = 0;
+                        carriage_return = false;
+                    }else{
+                        line_length++;
+                        carriage_return = current == '\r';
+                    }
+                }
+            }
+            //the last line may not end in a line break
+            if(line_length > (carriage_return ? 1 : 0)){
+                rows++;
+            }
+            return rows;
+        }
+    }
+    /**
+     * Work out where each part of a range starts, moving each split forward to just after a line break
+     * @param channel the open file
+     * @param start first byte of the range, the start of a line
+     * @param end byte the range stops at (exclusive)
+     * @param parts amount of parts wanted
+     * @return parts + 1 positions, part x is from position x until position x + 1
+     * @throws IOException if the file can't be mapped
+     */
+    private static long[] splitRange(FileChannel channel, long start, long end, int parts) throws IOException{
+        long[] starts = new long[parts + 1];
+        starts[0] = start;
+        for(int x = 1;x<parts;x++){
+            long split = Math.max(start + (end - start) * x / parts,starts[x - 1]);
+            starts[x] = split == start ? split : Math.min(findLineEnd(channel,split - 1,end) + 1,end);
+        }
+        starts[parts] = end;
+        return starts;
+    }
+    /**
+     * Parse the lines of one segment of the file
+     * @param channel the open file
+     * @param start first byte of the segment, the start of a line
+     * @param end byte the segment stops at (exclusive), just after a line break or the end of the file
+     * @param header the header line of the file
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return the rows of the segment, encoded with dictionaries of their own
+     */
+    private EncodedDataset parseSegment(FileChannel channel, long start, long end, String header,
+                                        String missing_value_designation, int default_bins){
+        ColumnInfo[] columns = ColumnInfo.parseHeader(header,default_bins);
+        //the segment doesn't know which row of the file it starts on yet, so its values are sampled once merged
+        for(ColumnInfo column : columns){
+            if(column.isNumeric()){
+                column.setSketch(new BinSketch(0));
+            }
+        }
+        DatasetEncoder encoder = new DatasetEncoder(columns,missing_value_designation);
+        if(end == start){
+            return encoder.build();
+        }
+        MappedByteBuffer buffer;
+        try{
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY,start,end - start);
+        }catch(IOException ioe){
+            throw new IllegalStateException("Could not map segment of file",ioe);
+        }
+        byte[] missing_bytes = missing_value_designation.getBytes(StandardCharsets.UTF_8);
+        int[] row_codes = new int[columns.length];
+        double[] row_values = new double[columns.length];
+        //numeric fields are copied here to be parsed
+        byte[] field = new byte[64];
+        int limit = (int)(end - start);
+        int line_start = 0;
+        for(int x = 0;x<=limit;x++){
+            if(x < limit && buffer.get(x) != '\n'){
+                continue;
+            }
+            int line_end = x;
+            if(line_end > line_start && buffer.get(line_end - 1) == '\r'){
+                line_end--;
+            }
+            //skip blank lines
+            if(line_end > line_start){
+                field = encodeLine(columns,missing_value_designation,missing_bytes,buffer,line_start,line_end,
+                        row_codes,row_values,field);
+                encoder.addCodes(row_codes,row_values,0);
+            }
+            line_start = x + 1;
+        }
+        return encoder.build();
+    }
+    /**
+     * Put the segments back together in file order, giving every value the code the merged dictionaries have for it and
+     * merging the sketches of numeric columns. The values of numeric columns that keep a sample are sampled as they are
+     * copied over, now that the row of each in the file is known
+     * @param parsed the segments, in file order
+     * @param columns the columns of the merged dataset, with empty dictionaries
+     * @param first_row the row of the file the first segment starts on
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @return the whole file as one dataset
+     */
+    private EncodedDataset merge(ArrayList<EncodedDataset> parsed, ColumnInfo[] columns, long first_row,
+                                 String missing_value_designation){
+        //remaps[segment][column][local code] -> merged code, built in file order so codes are handed out in order
+        int[][][] remaps = new int[parsed.size()][columns.length][];
+        int[] row_starts = new int[parsed.size() + 1];
+        for(int x = 0;x<parsed.size();x++){
+            EncodedDataset segment = parsed.get(x);
+            for(int column = 0;column<columns.length;column++){
+                if(columns[column].isNumeric()){
+                    columns[column].getSketch().merge(segment.getColumn(column).getSketch());
+                    continue;
+                }
+                ColumnDictionary local = segment.getColumn(column).getDictionary();
+                remaps[x][column] = new int[local.size()];
+                for(int code = 0;code<local.size();code++){
+                    remaps[x][column][code] = columns[column].getDictionary().encode(local.decode(code));
+                }
+            }
+            //checked before it is added up, so the row count can't wrap around either
+            EncodedDataset.cellCount((long)row_starts[x] + segment.getRows(),columns.length);
+            row_starts[x + 1] = row_starts[x] + segment.getRows();
+        }
+        int rows = row_starts[parsed.size()];
+        int[] codes = new int[EncodedDataset.cellCount(rows,columns.length)];
+        double[][] numeric = new double[columns.length][];
+        for(int column = 0;column<columns.length;column++){
+            if(columns[column].isNumeric()){
+                numeric[column] = new double[rows];
+            }
+        }
+        //each segment writes its own range of rows, so they can be copied over at the same time
+        ArrayList<ForkJoinTask<BinSketch[]>> tasks = new ArrayList<>();
+        for(int x = 0;x<parsed.size();x++){
+            final int current = x;
+            tasks.add(this.pool.submit(() -> {
+                EncodedDataset segment = parsed.get(current);
+                int[] segment_codes = segment.getCodes();
+                BinSketch[] samples = new BinSketch[columns.length];
+                for(int column = 0;column<columns.length;column++){
+                    //numeric columns only have a code of 0 until binned, their values are copied instead
+                    if(numeric[column] != null){
+                        double[] values = segment.getNumeric(column);
+                        System.arraycopy(values,0,numeric[column],row_starts[current],segment.getRows());
+                        int sample_size = columns[column].getSketch().getSampleSize();
+                        if(sample_size > 0){
+                            samples[column] = new BinSketch(sample_size);
+                            long segment_row = first_row + row_starts[current];
+                            for(int row = 0;row<segment.getRows();row++){
+                                samples[column].sample(values[row],segment_row + row);
+                            }
+                        }
+                        continue;
+                    }
+                    int[] remap = remaps[current][column];
+                    int from = segment.columnOffset(column);
+                    int to = column * rows + row_starts[current];
+                    for(int row = 0;row<segment.getRows();row++){
+                        codes[to + row] = remap[segment_codes[from + row]];
+                    }
+                }
+                return samples;
+            }));
+        }
+        //the samples only hold sampled values, so merging them leaves the rest of each sketch as it is
+        for(ForkJoinTask<BinSketch[]> task : tasks){
+            BinSketch[] samples = task.join();
+            for(int column = 0;column<columns.length;column++){
+                if(samples[column] != null){
+                    columns[column].getSketch().merge(samples[column]);
+                }
+            }
+        }
+        return new EncodedDataset(columns,ColumnInfo.findClassIndex(columns),rows,codes,numeric,
+                missing_value_designation);
+    }
+    /**
+     * Split one line on commas and encode each field, extra fields are ignored and missing ones count as missing.
+     * Fields of numeric columns are parsed and added to the sketch of the column instead, and get a code of 0
+     * @param columns information about each column, holding the dictionaries and sketches
+     * @param missing_value_designation the value used to indicate a missing value
+     * @param missing_bytes utf-8 bytes of the missing value designation
+     * @param buffer mapped memory holding the line
+     * @param start first byte of the line
+     * @param end byte the line stops at (exclusive), without the line break
+     * @param row_codes where the codes go
+     * @param row_values where the values of numeric columns go, in the same places as row_codes
+     * @param field scratch space numeric fields are copied to for parsing
+     * @return the scratch space, grown if a field did not fit in it
+     */
+    private static byte[] encodeLine(ColumnInfo[] columns, String missing_value_designation, byte[] missing_bytes,
+                                     MappedByteBuffer buffer, int start, int end, int[] row_codes,
+                                     double[] row_values, byte[] field){
+        int field_start = start;
+        int column = 0;
+        for(int x = start;x<=end && column<columns.length;x++){
+            if(x == end || buffer.get(x) == ','){
+                ColumnInfo info = columns[column];
+                if(info.isNumeric()){
+                    int length = x - field_start;
+                    if(length > field.length){
+                        field = new byte[length * 2];
+                    }
+                    for(int y = 0;y<length;y++){
+                        field[y] = buffer.get(field_start + y);
+                    }
+                    double value = NumberParser.parse(field,0,length,missing_bytes);
+                    //segments keep no sample, so the row does not matter
+                    info.getSketch().add(value,0);
+                    row_values[column] = value;
+                    row_codes[column] = 0;
+                }else{
+                    row_codes[column] = info.getDictionary().encode(buffer,field_start,x);
+                }
+                column++;
+                field_start = x + 1;
+            }
+        }
+        for(;column<columns.length;column++){
+            if(columns[column].isNumeric()){
+                row_values[column] = Double.NaN;
+                row_codes[column] = 0;
+            }else{
+                row_codes[column] = columns[column].getDictionary().encode(missing_value_designation);
+            }
+        }
+        return field;
+    }
+    /**
+     * Find the first line break at or after a position, mapping a window of the file at a time
+     * @param channel the open file
+     * @param from position to start looking at
+     * @param size size of the file
+     * @return position of the line break, or size if there is none
+     * @throws IOException if the file can't be mapped
+     */
+    private static long findLineEnd(FileChannel channel, long from, long size) throws IOException{
+        long window = 1 << 20;
+        for(long start = from;start<size;start+=window){
+            long length = Math.min(window,size - start);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,start,length);
+            for(int x = 0;x<length;x++){
+                if(buffer.get(x) == '\n'){
+                    return start + x;
+                }
+            }
+        }
+        return size;
+    }
+    /**
+     * @param channel the open file
+     * @param header_end position of the line break after the header
+     * @return the header line, without a trailing carriage return
+     * @throws IOException if the file can't be mapped
+     */
+    private static String readHeader(FileChannel channel, long header_end) throws IOException{
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,0,header_end);
+        byte[] bytes = new byte[(int)header_end];
+        buffer.get(bytes);
+        int length = bytes.length;
+        if(length > 0 && bytes[length - 1] == '\r'){
+            length--;
+        }
+        return new String(bytes,0,length,StandardCharsets.UTF_8);
+    }
+}
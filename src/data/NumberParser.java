@@ -0,0 +1,200 @@
+package data;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses numbers straight out of the bytes of a file, so continuous columns don't need a string made for every cell.
+ * Plain decimals (ex. "-1.52101", "13", "2.5e3") are handled directly, anything else falls back to Double.parseDouble
+ */
+public class NumberParser {
+    //powers of ten that are exact as doubles, so dividing by one rounds correctly
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static{
+        POWERS_OF_TEN[0] = 1;
+        for(int x = 1;x<POWERS_OF_TEN.length;x++){
+            POWERS_OF_TEN[x] = POWERS_OF_TEN[x - 1] * 10;
+        }
+    }
+    /**
+     * @param bytes buffer holding the utf-8 bytes of the number
+     * @param start first byte of the number
+     * @param end byte to stop at (exclusive)
+     * @return the number, or NaN if the bytes are not a number (ex. a missing value)
+     */
+    public static double parse(byte[] bytes, int start, int end){
+        int x = start;
+        boolean negative = false;
+        if(x < end && (bytes[x] == '-' || bytes[x] == '+')){
+            negative = bytes[x] == '-';
+            x++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean seen_point = false;
+        for(;x<end;x++){
+            byte current = bytes[x];
+            if(current >= '0' && current <= '9'){
+                //past 18 digits the mantissa could overflow, let the slow path deal with it
+                if(digits == 18){
+                    return parseSlow(bytes,start,end);
+                }
+                mantissa = mantissa * 10 + (current - '0');
+                digits++;
+                if(seen_point){
+                    decimals++;
+                }
+            }else if(current == '.' && !seen_point){
+                seen_point = true;
+            }else{
+                break;
+            }
+        }
+        if(digits == 0){
+            return parseSlow(bytes,start,end);
+        }
+        int exponent = -decimals;
+        if(x < end){
+            //only an exponent is allowed after the digits
+            if(bytes[x] != 'e' && bytes[x] != 'E'){
+                return parseSlow(bytes,start,end);
+            }
+            x++;
+            boolean negative_exponent = false;
+            if(x < end && (bytes[x] == '-' || bytes[x] == '+')){
+                negative_exponent = bytes[x] == '-';
+                x++;
+            }
+            if(x == end){
+                return parseSlow(bytes,start,end);
+            }
+            int written_exponent = 0;
+            for(;x<end;x++){
+                if(bytes[x] < '0' || bytes[x] > '9' || written_exponent > 1000){
+                    return parseSlow(bytes,start,end);
+                }
+                written_exponent = written_exponent * 10 + (bytes[x] - '0');
+            }
+            exponent += negative_exponent ? -written_exponent : written_exponent;
+        }
+        double value = exact(mantissa,exponent,negative);
+        return Double.isNaN(value) ? parseSlow(bytes,start,end) : value;
+    }
+    /**
+     * @param bytes buffer holding the utf-8 bytes of the number
+     * @param start first byte of the number
+     * @param end byte to stop at (exclusive)
+     * @param missing utf-8 bytes of the value used to indicate a missing value
+     * @return the number, or NaN if the bytes are the missing value or not a number
+     */
+    public static double parse(byte[] bytes, int start, int end, byte[] missing){
+        //checked first, so a missing value doesn't have to fail its way through parsing
+        if(end - start == missing.length){
+            boolean same = true;
+            for(int x = 0;x<missing.length && same;x++){
+                same = bytes[start + x] == missing[x];
+            }
+            if(same){
+                return Double.NaN;
+            }
+        }
+        return parse(bytes,start,end);
+    }
+    /**
+     * Same as parsing the bytes, but straight from the characters so no bytes have to be made
+     * @param value the raw value
+     * @return the number, or NaN if the value is not a number (ex. a missing value)
+     */
+    public static double parse(CharSequence value){
+        int end = value.length();
+        int x = 0;
+        boolean negative = false;
+        if(x < end && (value.charAt(x) == '-' || value.charAt(x) == '+')){
+            negative = value.charAt(x) == '-';
+            x++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean seen_point = false;
+        for(;x<end;x++){
+            char current = value.charAt(x);
+            if(current >= '0' && current <= '9'){
+                if(digits == 18){
+                    return parseSlow(value);
+                }
+                mantissa = mantissa * 10 + (current - '0');
+                digits++;
+                if(seen_point){
+                    decimals++;
+                }
+            }else if(current == '.' && !seen_point){
+                seen_point = true;
+            }else{
+                break;
+            }
+        }
+        if(digits == 0){
+            return parseSlow(value);
+        }
+        int exponent = -decimals;
+        if(x < end){
+            if(value.charAt(x) != 'e' && value.charAt(x) != 'E'){
+                return parseSlow(value);
+            }
+            x++;
+            boolean negative_exponent = false;
+            if(x < end && (value.charAt(x) == '-' || value.charAt(x) == '+')){
+                negative_exponent = value.charAt(x) == '-';
+                x++;
+            }
+            if(x == end){
+                return parseSlow(value);
+            }
+            int written_exponent = 0;
+            for(;x<end;x++){
+                if(value.charAt(x) < '0' || value.charAt(x) > '9' || written_exponent > 1000){
+                    return parseSlow(value);
+                }
+                written_exponent = written_exponent * 10 + (value.charAt(x) - '0');
+            }
+            exponent += negative_exponent ? -written_exponent : written_exponent;
+        }
+        double parsed = exact(mantissa,exponent,negative);
+        return Double.isNaN(parsed) ? parseSlow(value) : parsed;
+    }
+    /**
+     * An exact mantissa and an exact power of ten give a correctly rounded result with one operation
+     * @param mantissa the digits of the number
+     * @param exponent power of ten the digits are multiplied by
+     * @param negative if the number is negative
+     * @return the number, or NaN if it can't be worked out exactly this way
+     */
+    private static double exact(long mantissa, int exponent, boolean negative){
+        if(mantissa >= (1L << 53) || exponent < -22 || exponent > 22){
+            return Double.NaN;
+        }
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+    /**
+     * @param bytes buffer holding the utf-8 bytes of the number
+     * @param start first byte of the number
+     * @param end byte to stop at (exclusive)
+     * @return the number, or NaN if it is not a number
+     */
+    private static double parseSlow(byte[] bytes, int start, int end){
+        return parseSlow(new String(bytes,start,end - start,StandardCharsets.UTF_8));
+    }
+    /**
+     * @param value the raw value
+     * @return the number, or NaN if it is not a number
+     */
+    private static double parseSlow(CharSequence value){
+        try{
+            return Double.parseDouble(value.toString());
+        }catch(NumberFormatException nfe){
+            return Double.NaN;
+        }
+    }
+}
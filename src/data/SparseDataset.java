@@ -0,0 +1,166 @@
+package data;
+
+/**
+ * A dataset where most cells hold a default value, so only the other cells are stored, row by row in compressed sparse
+ * row (CSR) form. The cells of row y are indexes[row_starts[y]] until indexes[row_starts[y + 1]], each being the
+ * feature the cell belongs to, with its value at the same place in values. A feature a row leaves out has its default
+ * value. Values are codes like those of an EncodedDataset, or for count features how many times the feature occurred
+ */
+public class SparseDataset {
+    private int rows;
+    private int features;
+    private int[] row_starts;
+    private int[] indexes;
+    private int[] values;
+    private int[] class_codes;
+    private ColumnDictionary class_dictionary;
+    //amount of values each feature can have, the default included
+    private int[] cardinality;
+    //value of each feature in rows that leave it out
+    private int[] defaults;
+    /**
+     * @param rows amount of rows present
+     * @param features amount of features
+     * @param row_starts where each row starts in indexes and values, and where the last row ends, rows + 1 long
+     * @param indexes feature of each stored cell
+     * @param values value of each stored cell
+     * @param class_codes code of the class of each row
+     * @param class_dictionary dictionary of the class codes
+     * @param cardinality amount of values each feature can have, the default included
+     * @param defaults value of each feature in rows that leave it out
+     */
+    public SparseDataset(int rows, int features, int[] row_starts, int[] indexes, int[] values, int[] class_codes,
+                         ColumnDictionary class_dictionary, int[] cardinality, int[] defaults){
+        this.rows = rows;
+        this.features = features;
+        this.row_starts = row_starts;
+        this.indexes = indexes;
+        this.values = values;
+        this.class_codes = class_codes;
+        this.class_dictionary = class_dictionary;
+        this.cardinality = cardinality;
+        this.defaults = defaults;
+    }
+    /**
+     * Store a dense dataset sparsely, with the most common value of each column as its default. The codes are kept as
+     * they are, so a model trained on either scores the same
+     * @param data an imputed and binned dataset, the features being every column but the class in order
+     * @return the dataset with only the cells that differ from their column's default
+     * @throws IllegalArgumentException if a column is gaussian, since it has no codes
+     */
+    public static SparseDataset fromDense(EncodedDataset data){
+        int rows = data.getRows();
+        int class_index = data.getClassIndex();
+        int features = data.getColumnCount() - 1;
+        int[] codes = data.getCodes();
+        int[] cardinality = new int[features];
+        int[] defaults = new int[features];
+        int[] row_starts = new int[rows + 1];
+        for(int column = 0;column<data.getColumnCount();column++){
+            if(column == class_index){
+                continue;
+            }
+            if(data.getColumn(column).isGaussian()){
+                throw new IllegalArgumentException("Column " + data.getColumn(column).getName() + " is gaussian");
+            }
+            int feature = column < class_index ? column : column - 1;
+            cardinality[feature] = Math.max(1,data.getColumn(column).getDictionary().size());
+            //the most common code is the default
+            long[] counts = new long[cardinality[feature]];
+            int start = data.columnOffset(column);
+            for(int row = 0;row<rows;row++){
+                counts[codes[start + row]]++;
+            }
+            for(int value = 1;value<counts.length;value++){
+                if(counts[value] > counts[defaults[feature]]){
+                    defaults[feature] = value;
+                }
+            }
+            //count the cells each row keeps, offset by one so the counts become the starts below
+            for(int row = 0;row<rows;row++){
+                if(codes[start + row] != defaults[feature]){
+                    row_starts[row + 1]++;
+                }
+            }
+        }
+        for(int row = 0;row<rows;row++){
+            row_starts[row + 1] += row_starts[row];
+        }
+        int[] indexes = new int[row_starts[rows]];
+        int[] values = new int[row_starts[rows]];
+        int[] next = row_starts.clone();
+        int[] class_codes = new int[rows];
+        for(int column = 0;column<data.getColumnCount();column++){
+            int start = data.columnOffset(column);
+            if(column == class_index){
+                System.arraycopy(codes,start,class_codes,0,rows);
+                continue;
+            }
+            //going column by column keeps the cells of every row in feature order
+            int feature = column < class_index ? column : column - 1;
+            for(int row = 0;row<rows;row++){
+                int code = codes[start + row];
+                if(code != defaults[feature]){
+                    indexes[next[row]] = feature;
+                    values[next[row]++] = code;
+                }
+            }
+        }
+        return new SparseDataset(rows,features,row_starts,indexes,values,class_codes,
+                data.getColumn(class_index).getDictionary(),cardinality,defaults);
+    }
+    /**
+     * @param row the row
+     * @return where the row's cells start in indexes and values
+     */
+    public int rowStart(int row){
+        return this.row_starts[row];
+    }
+    /**
+     * @param row the row
+     * @return where the row's cells end in indexes and values (exclusive)
+     */
+    public int rowEnd(int row){
+        return this.row_starts[row + 1];
+    }
+    /**
+     * @param row the row we want the class of
+     * @return the code of the class of the row
+     */
+    public int classCode(int row){
+        return this.class_codes[row];
+    }
+    public int getRows(){
+        return this.rows;
+    }
+    public int getFeatureCount(){
+        return this.features;
+    }
+    /**
+     * @return amount of cells stored, the ones that are not a default
+     */
+    public int getStoredCount(){
+        return this.row_starts[this.rows];
+    }
+    public int[] getIndexes(){
+        return this.indexes;
+    }
+    public int[] getValues(){
+        return this.values;
+    }
+    public int[] getClassCodes(){
+        return this.class_codes;
+    }
+    public ColumnDictionary getClassDictionary(){
+        return this.class_dictionary;
+    }
+    public int getClassCount(){
+        return this.class_dictionary.size();
+    }
+    public int[] getCardinality(){
+        return this.cardinality;
+    }
+    public int[] getDefaults(){
+        return this.defaults;
+    }
+}
@@ -0,0 +1,164 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Builds a SparseDataset one row at a time, either from rows already split into features or from lines in the svmlight
+ * style "class feature:value feature:value ..." (a feature without ":value" has the value 1). Features are numbered
+ * from 0 and have a default of 0, cells with the default are not stored. The cells of a row are kept in feature order,
+ * with the values of a feature given more than once in a row added together (ex. counts of a word). The amount of
+ * features and the cardinality of each grow with the largest feature and value seen
+ */
+public class SparseDatasetBuilder {
+    private int rows;
+    private int[] row_starts;
+    private int[] indexes;
+    private int[] values;
+    private int[] class_codes;
+    private ColumnDictionary class_dictionary;
+    private int[] cardinality;
+    private int features;
+    public SparseDatasetBuilder(){
+        this(new ColumnDictionary());
+    }
+    /**
+     * @param class_dictionary dictionary to encode the classes with, ex. one shared with another dataset
+     */
+    public SparseDatasetBuilder(ColumnDictionary class_dictionary){
+        this.rows = 0;
+        this.row_starts = new int[64];
+        this.indexes = new int[256];
+        this.values = new int[256];
+        this.class_codes = new int[64];
+        this.class_dictionary = class_dictionary;
+        this.cardinality = new int[64];
+        this.features = 0;
+    }
+    /**
+     * Make the dataset have at least a given amount of features, ex. every bucket of a TextHasher even if some never
+     * get a value
+     * @param features the least amount of features the dataset should have
+     */
+    public void reserveFeatures(int features){
+        if(features > this.cardinality.length){
+            this.cardinality = Arrays.copyOf(this.cardinality,features);
+        }
+        this.features = Math.max(this.features,features);
+    }
+    /**
+     * Add a row given as an svmlight style line
+     * @param line the class followed by the row's cells, separated by whitespace
+     * @throws IllegalArgumentException if a cell is not a feature number optionally followed by ":value"
+     */
+    public void addLine(String line){
+        String[] parts = line.trim().split("\\s+");
+        int[] row_indexes = new int[parts.length - 1];
+        int[] row_values = new int[parts.length - 1];
+        for(int x = 1;x<parts.length;x++){
+            int colon = parts[x].indexOf(':');
+            try{
+                if(colon < 0){
+                    row_indexes[x - 1] = Integer.parseInt(parts[x]);
+                    row_values[x - 1] = 1;
+                }else{
+                    row_indexes[x - 1] = Integer.parseInt(parts[x].substring(0,colon));
+                    row_values[x - 1] = Integer.parseInt(parts[x].substring(colon + 1));
+                }
+            }catch(NumberFormatException e){
+                throw new IllegalArgumentException("Bad cell " + parts[x] + " in line " + line);
+            }
+        }
+        addRow(parts[0],row_indexes,row_values,row_indexes.length);
+    }
+    /**
+     * Add a row given as its cells
+     * @param class_value the class of the row
+     * @param row_indexes feature of each cell
+     * @param row_values value of each cell, cells with the default of 0 are left out
+     * @param length amount of cells
+     * @throws IllegalArgumentException if a feature or value is negative
+     */
+    public void addRow(String class_value, int[] row_indexes, int[] row_values, int length){
+        //row_starts needs one more than class_codes for the end of the last row
+        if(this.rows + 1 == this.row_starts.length){
+            this.row_starts = Arrays.copyOf(this.row_starts,this.row_starts.length * 2);
+            this.class_codes = Arrays.copyOf(this.class_codes,this.row_starts.length);
+        }
+        int row_start = this.row_starts[this.rows];
+        int stored = row_start;
+        if(stored + length > this.indexes.length){
+            int grown = Math.max(this.indexes.length * 2,stored + length);
+            this.indexes = Arrays.copyOf(this.indexes,grown);
+            this.values = Arrays.copyOf(this.values,grown);
+        }
+        boolean sorted = true;
+        for(int x = 0;x<length;x++){
+            int feature = row_indexes[x];
+            int value = row_values[x];
+            if(feature < 0 || value < 0){
+                throw new IllegalArgumentException("Features and values can't be negative");
+            }
+            if(value == 0){
+                continue;
+            }
+            sorted &= stored == row_start || this.indexes[stored - 1] < feature;
+            this.features = Math.max(this.features,feature + 1);
+            this.indexes[stored] = feature;
+            this.values[stored++] = value;
+        }
+        if(!sorted){
+            stored = sortRow(row_start,stored);
+        }
+        for(int x = row_start;x<stored;x++){
+            int feature = this.indexes[x];
+            if(feature >= this.cardinality.length){
+                this.cardinality = Arrays.copyOf(this.cardinality,Math.max(this.cardinality.length * 2,feature + 1));
+            }
+            this.cardinality[feature] = Math.max(this.cardinality[feature],this.values[x] + 1);
+        }
+        this.class_codes[this.rows] = this.class_dictionary.encode(class_value);
+        this.rows++;
+        this.row_starts[this.rows] = stored;
+    }
+    /**
+     * Put the cells of a row in feature order, adding the values of repeated features together
+     * @param start where the row's cells start
+     * @param end where the row's cells end (exclusive)
+     * @return where the row's cells end once repeats are merged
+     */
+    private int sortRow(int start, int end){
+        //feature in the high half and value in the low half, so sorting the longs sorts by feature
+        long[] cells = new long[end - start];
+        for(int x = start;x<end;x++){
+            cells[x - start] = ((long)this.indexes[x] << 32) | this.values[x];
+        }
+        Arrays.sort(cells);
+        int stored = start;
+        for(long cell : cells){
+            int feature = (int)(cell >>> 32);
+            int value = (int)cell;
+            if(stored > start && this.indexes[stored - 1] == feature){
+                this.values[stored - 1] += value;
+            }else{
+                this.indexes[stored] = feature;
+                this.values[stored++] = value;
+            }
+        }
+        return stored;
+    }
+    /**
+     * @return the rows added so far as a dataset
+     */
+    public SparseDataset build(){
+        int[] feature_cardinality = Arrays.copyOf(this.cardinality,this.features);
+        for(int feature = 0;feature<this.features;feature++){
+            //a feature always has its default
+            feature_cardinality[feature] = Math.max(1,feature_cardinality[feature]);
+        }
+        int stored = this.row_starts[this.rows];
+        return new SparseDataset(this.rows,this.features,Arrays.copyOf(this.row_starts,this.rows + 1),
+                Arrays.copyOf(this.indexes,stored),Arrays.copyOf(this.values,stored),
+                Arrays.copyOf(this.class_codes,this.rows),this.class_dictionary,feature_cardinality,
+                new int[this.features]);
+    }
+}
@@ -0,0 +1,120 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Reads the documents of a csv file a line at a time, so a file of any size can be hashed and counted without keeping
+ * it. The header names the columns like every other dataset, a column whose name starts with "class" holds the class
+ * and the text comes from a column picked by name. The csv has no quoting, so the text column takes whatever commas
+ * are left once the columns before and after it have been split off, ex. "class,text" with a line of "spam,buy now,
+ * today" has the text "buy now, today". Other columns are skipped
+ */
+public class TextColumnReader {
+    private BufferedReader input;
+    private int columns;
+    private int class_index;
+    private int text_index;
+    private long rows;
+    private String class_value;
+    private CharSequence text;
+    /**
+     * Read the header of the file
+     * @param input the file, positioned at its header
+     * @param text_column name of the column holding the text, attributes like "!impute" are ignored
+     * @throws IOException if the header can't be read
+     * @throws IllegalArgumentException if the header has no class column or no column with the name
+     */
+    public TextColumnReader(BufferedReader input, String text_column) throws IOException{
+        this.input = input;
+        String header = input.readLine();
+        if(header == null){
+            throw new IllegalArgumentException("The file has no header");
+        }
+        String[] cells = header.split(",");
+        this.columns = cells.length;
+        this.class_index = -1;
+        this.text_index = -1;
+        for(int column = 0;column<cells.length;column++){
+            String name = cells[column].split("!")[0];
+            if(this.class_index == -1 && name.regionMatches(true,0,"class",0,5)){
+                this.class_index = column;
+            }else if(this.text_index == -1 && name.equals(text_column)){
+                this.text_index = column;
+            }
+        }
+        if(this.class_index == -1){
+            throw new IllegalArgumentException("Could not find class column in header");
+        }
+        if(this.text_index == -1){
+            throw new IllegalArgumentException("Could not find text column " + text_column + " in header");
+        }
+        this.rows = 0;
+    }
+    /**
+     * Move to the next line that isn't blank
+     * @return if there was one, after which getClassValue and getText give its cells
+     * @throws IOException if the file can't be read
+     * @throws IllegalArgumentException if the line has fewer cells than the header
+     */
+    public boolean next() throws IOException{
+        String line;
+        do{
+            line = this.input.readLine();
+            if(line == null){
+                return false;
+            }
+        }while(line.trim().isEmpty());
+        //the text runs from the comma ending the cells before it to the comma starting the cells after it
+        int text_start = 0;
+        for(int column = 0;column<this.text_index;column++){
+            text_start = line.indexOf(',',text_start) + 1;
+            if(text_start == 0){
+                throw new IllegalArgumentException("Expected " + this.columns + " cells in line " + line);
+            }
+        }
+        int text_end = line.length();
+        for(int column = this.columns - 1;column>this.text_index;column--){
+            text_end = line.lastIndexOf(',',text_end - 1);
+            if(text_end < text_start){
+                throw new IllegalArgumentException("Expected " + this.columns + " cells in line " + line);
+            }
+        }
+        this.text = line.subSequence(text_start,text_end);
+        this.class_value = cell(line,this.class_index < this.text_index ? 0 : text_end + 1,
+                this.class_index < this.text_index ? this.class_index : this.class_index - this.text_index - 1);
+        this.rows++;
+        return true;
+    }
+    /**
+     * @return the class of the current line
+     */
+    public String getClassValue(){
+        return this.class_value;
+    }
+    /**
+     * @return the text of the current line, only valid until next is called
+     */
+    public CharSequence getText(){
+        return this.text;
+    }
+    /**
+     * @return amount of lines read so far, so the current line is row getRows() - 1
+     */
+    public long getRows(){
+        return this.rows;
+    }
+    /**
+     * @param line the line
+     * @param start where the cells to look through start, the text is never among them
+     * @param skip how many cells to skip
+     * @return the cell after the skipped ones
+     */
+    private static String cell(String line, int start, int skip){
+        for(int x = 0;x<skip;x++){
+            start = line.indexOf(',',start) + 1;
+        }
+        int end = line.indexOf(',',start);
+        return line.substring(start,end < 0 ? line.length() : end);
+    }
+}
@@ -0,0 +1,146 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Turns text into sparse count features without keeping a vocabulary, by hashing each token into one of a fixed amount
+ * of buckets (feature hashing). Memory stays bounded however many distinct words show up, at the cost of unrelated
+ * words sometimes sharing a bucket, which more bits makes rarer. Tokens are runs of letters and digits, lower cased and
+ * hashed straight out of the text without making a string for each. A hasher keeps scratch space for the last text it
+ * tokenized, so use one hasher per thread. Rows can be gathered into a dataset with addText, or counted as they are
+ * read without keeping them, ex. cells = hasher.tokenize(text) then trainer.addRow(class, hasher.getIndexes(),
+ * hasher.getValues(), cells). Call tokenize before getIndexes and getValues, a long text can swap in bigger arrays
+ */
+public class TextHasher {
+    private int bits;
+    private int mask;
+    //bucket of each token of the last text
+    private int[] tokens;
+    //feature and count of each distinct bucket of the last text, in feature order
+    private int[] indexes;
+    private int[] values;
+    private int cells;
+    /**
+     * @param bits the amount of buckets is 2^bits, ex. 20 for about a million
+     * @throws IllegalArgumentException if bits is not between 1 and 30
+     */
+    public TextHasher(int bits){
+        if(bits < 1 || bits > 30){
+            throw new IllegalArgumentException("Bits has to be between 1 and 30, got " + bits);
+        }
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.tokens = new int[64];
+        this.indexes = new int[64];
+        this.values = new int[64];
+        this.cells = 0;
+    }
+    /**
+     * Split text into tokens and count how many times each bucket was hit, see getIndexes and getValues
+     * @param text the text
+     * @return amount of distinct buckets hit
+     */
+    public int tokenize(CharSequence text){
+        int token_count = 0;
+        int length = text.length();
+        int x = 0;
+        while(x < length){
+            //skip to the start of a token
+            while(x < length && !Character.isLetterOrDigit(text.charAt(x))){
+                x++;
+            }
+            if(x == length){
+                break;
+            }
+            //fnv-1a over the lower cased characters of the token
+            int hash = 0x811c9dc5;
+            while(x < length && Character.isLetterOrDigit(text.charAt(x))){
+                hash = (hash ^ Character.toLowerCase(text.charAt(x))) * 0x01000193;
+                x++;
+            }
+            if(token_count == this.tokens.length){
+                this.tokens = Arrays.copyOf(this.tokens,token_count * 2);
+            }
+            this.tokens[token_count++] = mix(hash) & this.mask;
+        }
+        //sort the buckets so the hits of each can be counted in one run
+        Arrays.sort(this.tokens,0,token_count);
+        if(token_count > this.indexes.length){
+            this.indexes = new int[this.tokens.length];
+            this.values = new int[this.tokens.length];
+        }
+        this.cells = 0;
+        for(int token = 0;token<token_count;token++){
+            if(this.cells > 0 && this.indexes[this.cells - 1] == this.tokens[token]){
+                this.values[this.cells - 1]++;
+            }else{
+                this.indexes[this.cells] = this.tokens[token];
+                this.values[this.cells++] = 1;
+            }
+        }
+        return this.cells;
+    }
+    /**
+     * Tokenize text and add it as a row
+     * @param builder where the row goes, made with reserveFeatures(getFeatureCount()) so every bucket is a feature
+     * @param class_value the class of the row
+     * @param text the text of the row
+     */
+    public void addText(SparseDatasetBuilder builder, String class_value, CharSequence text){
+        //tokenize first, it may swap in bigger arrays
+        int cells = tokenize(text);
+        builder.addRow(class_value,this.indexes,this.values,cells);
+    }
+    /**
+     * Add a line holding a class, a tab and the text, so a file of documents can be read a line at a time
+     * @param builder where the row goes
+     * @param line the line
+     * @throws IllegalArgumentException if the line has no tab
+     */
+    public void addLine(SparseDatasetBuilder builder, String line){
+        int tab = line.indexOf('\t');
+        if(tab < 0){
+            throw new IllegalArgumentException("Expected a class and a tab before the text in line " + line);
+        }
+        addText(builder,line.substring(0,tab),line.subSequence(tab + 1,line.length()));
+    }
+    /**
+     * @return a builder for rows of this hasher, with every bucket as a feature
+     */
+    public SparseDatasetBuilder newBuilder(){
+        SparseDatasetBuilder builder = new SparseDatasetBuilder();
+        builder.reserveFeatures(getFeatureCount());
+        return builder;
+    }
+    /**
+     * @return amount of buckets, which is the amount of features
+     */
+    public int getFeatureCount(){
+        return 1 << this.bits;
+    }
+    /**
+     * @return each distinct bucket of the last text in order, as many as tokenize returned
+     */
+    public int[] getIndexes(){
+        return this.indexes;
+    }
+    /**
+     * @return how many tokens of the last text fell in each bucket, in the same places as getIndexes()
+     */
+    public int[] getValues(){
+        return this.values;
+    }
+    /**
+     * Spread the bits of a hash, so the low bits used for the bucket depend on every character
+     * @param hash the hash
+     * @return the mixed hash (the murmur3 finalizer)
+     */
+    private static int mix(int hash){
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,187 @@
+package distributed;
+
+import classifier.NaiveBayesTrainer;
+import classifier.TrainerFile;
+import data.MappedCsvLoader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Trains on a csv file with several worker processes on this machine, as a small map and reduce. The rows of the file
+ * are split into byte ranges that start and end on line breaks, and each worker (see TrainerWorker) loads and counts
+ * its own range. Since naive bayes counts just add up, the trainers the workers write are merged into one, matching
+ * their values up by what they are since every worker hands out its own codes. Before counting, a summary of every
+ * worker's range (see WorkerSummary) is merged and sent back, so every worker bins and imputes with the edges and fill
+ * values of the whole file, and the model comes out the same as training in one process. Each worker is told which row
+ * of the file its range starts on, so the samples it takes for quantile bins merge into the same sample a single
+ * process takes
+ */
+public class LocalClusterTrainer {
+    private int workers;
+    private int threads_per_worker;
+    /**
+     * @param workers amount of worker processes to start, the cores of the machine are shared between them
+     */
+    public LocalClusterTrainer(int workers){
+        this.workers = workers;
+        this.threads_per_worker = Math.max(1,Runtime.getRuntime().availableProcessors() / workers);
+    }
+    /**
+     * @param path path of the csv file, the first line being the header
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @return the counts of every row in the file, merged from every worker
+     * @throws IOException if the file can't be read, or a worker fails
+     */
+    public NaiveBayesTrainer train(Path path, String missing_value_designation, int default_bins) throws IOException{
+        long[] ranges = MappedCsvLoader.splitLines(path,this.workers);
+        long[] first_rows = firstRows(path,ranges);
+        Path directory = Files.createTempDirectory("naive-bayes-workers");
+        Process[] processes = new Process[this.workers];
+        try{
+            //map, every worker loads its range and writes its summary
+            for(int worker = 0;worker<this.workers;worker++){
+                processes[worker] = start(path,ranges[worker],ranges[worker + 1],first_rows[worker],
+                        missing_value_designation,default_bins,directory,worker);
+            }
+            for(int worker = 0;worker<this.workers;worker++){
+                BufferedReader output = new BufferedReader(new InputStreamReader(processes[worker].getInputStream(),
+                        StandardCharsets.UTF_8));
+                if(!TrainerWorker.SUMMARIZED.equals(output.readLine())){
+                    throw new IOException("Worker " + worker + " failed while loading its part of the file");
+                }
+            }
+            //merge the summaries in file order and send them back, so every worker bins and imputes the same way
+            WorkerSummary merged = WorkerSummary.read(TrainerWorker.summaryPath(directory,0));
+            for(int worker = 1;worker<this.workers;worker++){
+                merged.merge(WorkerSummary.read(TrainerWorker.summaryPath(directory,worker)));
+            }
+            Path merged_path = directory.resolve("summary-merged.bin");
+            merged.write(merged_path);
+            for(Process process : processes){
+                OutputStream input = process.getOutputStream();
+                input.write((merged_path.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+                input.close();
+            }
+            //reduce, add every worker's counts together
+            NaiveBayesTrainer trainer = null;
+            for(int worker = 0;worker<this.workers;worker++){
+                if(processes[worker].waitFor() != 0){
+                    throw new IOException("Worker " + worker + " failed while training");
+                }
+                NaiveBayesTrainer part = TrainerFile.read(TrainerWorker.trainerPath(directory,worker));
+                if(trainer == null){
+                    trainer = part;
+                }else{
+                    trainer.merge(part);
+                }
+            }
+            return trainer;
+        }catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for workers",ie);
+        }finally{
+            for(Process process : processes){
+                if(process != null){
+                    process.destroy();
+                }
+            }
+            deleteDirectory(directory);
+        }
+    }
+    /**
+     * Start a worker process running this program's classpath
+     * @param path path of the csv file
+     * @param start first byte of the worker's range
+     * @param end byte the worker's range stops at (exclusive)
+     * @param first_row the row of the file the worker's range starts on
+     * @param missing_value_designation the value used in the file to indicate a missing value
+     * @param default_bins amount of bins to use when the header says "!bin" without a count
+     * @param directory the work directory shared with the worker
+     * @param worker the worker number
+     * @return the started process
+     * @throws IOException if the process can't be started
+     */
+    private Process start(Path path, long start, long end, long first_row, String missing_value_designation,
+                          int default_bins, Path directory, int worker) throws IOException{
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"),"bin","java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(TrainerWorker.class.getName());
+        command.add(path.toAbsolutePath().toString());
+        command.add(String.valueOf(start));
+        command.add(String.valueOf(end));
+        command.add(String.valueOf(first_row));
+        command.add(missing_value_designation);
+        command.add(String.valueOf(default_bins));
+        command.add(String.valueOf(this.threads_per_worker));
+        command.add(directory.toString());
+        command.add(String.valueOf(worker));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+    /**
+     * Count the rows of every range at the same time, each only scanning for line breaks
+     * @param path path of the csv file
+     * @param ranges where each worker's range starts, and the end of the last one
+     * @return the row of the file each range starts on
+     * @throws IOException if the file can't be read
+     */
+    private static long[] firstRows(Path path, long[] ranges) throws IOException{
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ArrayList<ForkJoinTask<Long>> tasks = new ArrayList<>();
+        //the rows of the last range are not needed
+        for(int x = 0;x<ranges.length - 2;x++){
+            final long start = ranges[x];
+            final long end = ranges[x + 1];
+            tasks.add(pool.submit(() -> MappedCsvLoader.countRows(path,start,end)));
+        }
+        long[] first_rows = new long[ranges.length - 1];
+        for(int x = 1;x<first_rows.length;x++){
+            first_rows[x] = first_rows[x - 1] + join(tasks.get(x - 1));
+        }
+        return first_rows;
+    }
+    /**
+     * @param task a task counting rows
+     * @return the count
+     * @throws IOException if the task could not read the file
+     */
+    private static long join(ForkJoinTask<Long> task) throws IOException{
+        try{
+            return task.get();
+        }catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while counting rows",ie);
+        }catch(ExecutionException ee){
+            throw new IOException("Could not count the rows of the file",ee.getCause());
+        }
+    }
+    /**
+     * @param directory the work directory to delete, along with every file in it
+     */
+    private static void deleteDirectory(Path directory){
+        File[] files = directory.toFile().listFiles();
+        if(files != null){
+            for(File file : files){
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+}
@@ -0,0 +1,92 @@
+package distributed;
+
+import classifier.NaiveBayesTrainer;
+import classifier.TrainerFile;
+import data.ColumnInfo;
+import data.EncodedDataset;
+import data.ImputeStrategy;
+import data.Imputer;
+import data.MappedCsvLoader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * One worker process of a LocalClusterTrainer. It loads its range of the file, writes its summary (the sketches of its
+ * numeric columns and the counts of the values it imputes from) and says so on standard output, then waits for the path
+ * of the summary merged over every worker on standard input. With that every worker imputes and bins the same way,
+ * after which it counts its rows and writes its trainer.
+ * Arguments: file, start, end, first row, missing value designation, default bins, threads, work directory, worker
+ * number
+ */
+public class TrainerWorker {
+    //written on standard output once the summary is written
+    static final String SUMMARIZED = "summarized";
+    public static void main(String[] args) throws IOException{
+        if(args.length != 9){
+            System.err.println("Usage: TrainerWorker file start end first_row missing bins threads directory worker");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[0]);
+        long start = Long.parseLong(args[1]);
+        long end = Long.parseLong(args[2]);
+        long first_row = Long.parseLong(args[3]);
+        String missing_value_designation = args[4];
+        int default_bins = Integer.parseInt(args[5]);
+        int threads = Integer.parseInt(args[6]);
+        Path directory = Paths.get(args[7]);
+        int worker = Integer.parseInt(args[8]);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        EncodedDataset data = new MappedCsvLoader(pool).loadRange(path,start,end,first_row,
+                missing_value_designation,default_bins);
+        //the class mode fills each cell from the counts of its own class, which are never merged
+        for(int column = 0;column<data.getColumnCount();column++){
+            ColumnInfo info = data.getColumn(column);
+            if(info.shouldImpute() && info.getImputeStrategy() == ImputeStrategy.CLASS_MODE){
+                System.err.println("Worker " + worker + ": " + info.getName()
+                        + " can't be imputed with the class mode by workers");
+                System.exit(2);
+            }
+        }
+        WorkerSummary.of(data).write(summaryPath(directory,worker));
+        System.out.println(SUMMARIZED);
+        System.out.flush();
+        //the driver answers with the merged summary once every worker has written theirs
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in,StandardCharsets.UTF_8));
+        String merged_path = input.readLine();
+        if(merged_path == null){
+            System.err.println("Worker " + worker + " was not sent the merged summary");
+            System.exit(1);
+        }
+        String[] fill_values = WorkerSummary.read(Paths.get(merged_path)).apply(data);
+        Imputer imputer = new Imputer(pool);
+        imputer.setFixedValues(fill_values);
+        imputer.impute(data);
+        pool.shutdown();
+        data.binContinuousValues();
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(data);
+        trainer.addAll(data);
+        TrainerFile.write(trainer,trainerPath(directory,worker));
+    }
+    /**
+     * @param directory the work directory shared with the driver
+     * @param worker the worker number
+     * @return where the worker writes its summary
+     */
+    static Path summaryPath(Path directory, int worker){
+        return directory.resolve("summary-" + worker + ".bin");
+    }
+    /**
+     * @param directory the work directory shared with the driver
+     * @param worker the worker number
+     * @return where the worker writes its trainer
+     */
+    static Path trainerPath(Path directory, int worker){
+        return directory.resolve("trainer-" + worker + ".bin");
+    }
+}
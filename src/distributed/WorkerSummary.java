@@ -0,0 +1,159 @@
+package distributed;
+
+import data.BinSketch;
+import data.BinaryFormat;
+import data.ColumnDictionary;
+import data.ColumnInfo;
+import data.EncodedDataset;
+import data.ImputeStrategy;
+import data.Imputer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * What a worker has seen of its range of the file, before imputing and binning: the sketch of each numeric column, and
+ * how often each value of the dictionary coded "!impute" columns shows up. The driver merges the summaries of every
+ * worker in file order and sends the result back, so every worker bins and imputes from the whole file like a single
+ * process does
+ */
+class WorkerSummary {
+    private static final String MAGIC = "NBSK";
+    private static final int VERSION = 2;
+    //sketch of each column, null for columns that are not numeric
+    private BinSketch[] sketches;
+    //column -> values of a dictionary coded "!impute" column in the order they first show up, null for other columns
+    private ColumnDictionary[] values;
+    //column -> code in values -> how many cells had it
+    private long[][] counts;
+    /**
+     * @param sketches sketch of each column, null for columns that are not numeric
+     * @param values values of each counted column, null for the other columns
+     * @param counts how many cells had each value of each counted column
+     */
+    private WorkerSummary(BinSketch[] sketches, ColumnDictionary[] values, long[][] counts){
+        this.sketches = sketches;
+        this.values = values;
+        this.counts = counts;
+    }
+    /**
+     * @param data a worker's rows, before imputing and binning
+     * @return the summary of the rows
+     */
+    static WorkerSummary of(EncodedDataset data){
+        int columns = data.getColumnCount();
+        BinSketch[] sketches = new BinSketch[columns];
+        ColumnDictionary[] values = new ColumnDictionary[columns];
+        long[][] counts = new long[columns][];
+        for(int column = 0;column<columns;column++){
+            ColumnInfo info = data.getColumn(column);
+            sketches[column] = info.getSketch();
+            if(info.shouldImpute() && !info.isNumeric() && column != data.getClassIndex()){
+                values[column] = info.getDictionary();
+                counts[column] = Imputer.countCodes(data,column);
+            }
+        }
+        return new WorkerSummary(sketches,values,counts);
+    }
+    /**
+     * Add the summary of the next range of the file, values new to this summary go after the ones it has
+     * @param other the summary of the range after the ones already merged
+     */
+    void merge(WorkerSummary other){
+        for(int column = 0;column<this.sketches.length;column++){
+            if(this.sketches[column] != null){
+                this.sketches[column].merge(other.sketches[column]);
+            }
+            if(this.values[column] == null){
+                continue;
+            }
+            ColumnDictionary other_values = other.values[column];
+            for(int code = 0;code<other_values.size();code++){
+                int into = this.values[column].encode(other_values.decode(code));
+                if(into >= this.counts[column].length){
+                    this.counts[column] = Arrays.copyOf(this.counts[column],this.values[column].size());
+                }
+                this.counts[column][into] += other.counts[column][code];
+            }
+        }
+    }
+    /**
+     * Use the merged summary on a worker's rows. Numeric columns take the merged sketches, and every value of the
+     * counted columns is given a code in the order it first shows up in the file, which for the first worker (whose
+     * codes the merged model keeps) are the codes a single process hands out
+     * @param data a worker's rows, before imputing and binning
+     * @return column -> value the missing cells of a counted column are filled with, null to leave the column as it is
+     */
+    String[] apply(EncodedDataset data){
+        String[] fill_values = new String[this.sketches.length];
+        for(int column = 0;column<this.sketches.length;column++){
+            ColumnInfo info = data.getColumn(column);
+            if(this.sketches[column] != null){
+                info.setSketch(this.sketches[column]);
+            }
+            if(this.values[column] == null){
+                continue;
+            }
+            ImputeStrategy strategy = info.getImputeStrategy() != null ? info.getImputeStrategy()
+                    : ImputeStrategy.MEAN;
+            ColumnDictionary dictionary = info.getDictionary();
+            for(int code = 0;code<this.values[column].size();code++){
+                dictionary.encode(this.values[column].decode(code));
+            }
+            fill_values[column] = Imputer.fillValue(this.values[column].copy(),this.counts[column],
+                    data.getMissingValueDesignation(),strategy);
+        }
+        return fill_values;
+    }
+    /**
+     * @param path where to write the summary
+     * @throws IOException if the file can't be written
+     */
+    void write(Path path) throws IOException{
+        try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))){
+            BinaryFormat.writeHeader(output,MAGIC,VERSION);
+            output.writeInt(this.sketches.length);
+            for(int column = 0;column<this.sketches.length;column++){
+                BinaryFormat.writeSketch(output,this.sketches[column]);
+                output.writeBoolean(this.values[column] != null);
+                if(this.values[column] != null){
+                    output.writeInt(this.values[column].size());
+                    for(int code = 0;code<this.values[column].size();code++){
+                        BinaryFormat.writeString(output,this.values[column].decode(code));
+                    }
+                    BinaryFormat.writeLongs(output,this.counts[column]);
+                }
+            }
+        }
+    }
+    /**
+     * @param path a file written by write
+     * @return the summary in the file
+     * @throws IOException if the file can't be read or is not a summary file
+     */
+    static WorkerSummary read(Path path) throws IOException{
+        ByteBuffer input = BinaryFormat.map(path);
+        BinaryFormat.readHeader(input,MAGIC,VERSION);
+        int columns = input.getInt();
+        BinSketch[] sketches = new BinSketch[columns];
+        ColumnDictionary[] values = new ColumnDictionary[columns];
+        long[][] counts = new long[columns][];
+        for(int column = 0;column<columns;column++){
+            sketches[column] = BinaryFormat.readSketch(input);
+            if(input.get() != 0){
+                values[column] = new ColumnDictionary();
+                int size = input.getInt();
+                for(int code = 0;code<size;code++){
+                    values[column].encode(BinaryFormat.readString(input));
+                }
+                counts[column] = BinaryFormat.readLongs(input);
+            }
+        }
+        return new WorkerSummary(sketches,values,counts);
+    }
+}
@@ -0,0 +1,265 @@
+package serving;
+
+import data.ColumnInfo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Reads rows given as lines of json (ndjson) and writes strings into json. A row is either an array of the fields in
+ * the same order as the header, or an object from column name to field, columns left out being missing. Fields can be
+ * strings, numbers, booleans or null (missing), nothing nested is allowed since a row is flat
+ */
+public class JsonRows {
+    private final String missing_value_designation;
+    private final HashMap<String,Integer> column_indexes;
+    private final int column_count;
+    /**
+     * @param columns the columns of the model
+     * @param missing_value_designation the value used to indicate a missing value, what null and left out columns
+     *                                  turn into
+     */
+    public JsonRows(ColumnInfo[] columns, String missing_value_designation){
+        this.missing_value_designation = missing_value_designation;
+        this.column_count = columns.length;
+        this.column_indexes = new HashMap<>();
+        for(int column = 0;column<columns.length;column++){
+            this.column_indexes.put(columns[column].getName(),column);
+        }
+    }
+    /**
+     * @param line a json array or object
+     * @return the fields of the row in the same order as the header
+     * @throws IllegalArgumentException if the line is not a flat json array or object, or names an unknown column
+     */
+    public String[] parse(String line){
+        Parser parser = new Parser(line);
+        parser.skipWhitespace();
+        String[] fields;
+        if(parser.peek() == '['){
+            fields = parser.parseArray();
+        }else if(parser.peek() == '{'){
+            fields = parser.parseObject();
+        }else{
+            throw parser.error("Expected an array or an object");
+        }
+        parser.skipWhitespace();
+        if(parser.position < line.length()){
+            throw parser.error("Unexpected text after the row");
+        }
+        return fields;
+    }
+    /**
+     * @param output where to write
+     * @param value the string to write as a json string, quotes included
+     */
+    public static void appendString(StringBuilder output, String value){
+        output.append('"');
+        for(int x = 0;x<value.length();x++){
+            char character = value.charAt(x);
+            switch(character){
+                case '"':
+                    output.append("\\\"");
+                    break;
+                case '\\':
+                    output.append("\\\\");
+                    break;
+                case '\n':
+                    output.append("\\n");
+                    break;
+                case '\r':
+                    output.append("\\r");
+                    break;
+                case '\t':
+                    output.append("\\t");
+                    break;
+                default:
+                    if(character < 0x20){
+                        output.append(String.format("\\u%04x",(int)character));
+                    }else{
+                        output.append(character);
+                    }
+            }
+        }
+        output.append('"');
+    }
+    /**
+     * Walks through a single line of json
+     */
+    private class Parser {
+        private final String text;
+        private int position;
+        private Parser(String text){
+            this.text = text;
+            this.position = 0;
+        }
+        /**
+         * @return the fields of a json array, in order
+         */
+        private String[] parseArray(){
+            expect('[');
+            String[] fields = new String[column_count];
+            int count = 0;
+            skipWhitespace();
+            if(peek() == ']'){
+                this.position++;
+            }else{
+                while(true){
+                    String value = parseValue();
+                    if(count == fields.length){
+                        fields = Arrays.copyOf(fields,fields.length * 2 + 1);
+                    }
+                    fields[count++] = value;
+                    if(!next()){
+                        expect(']');
+                        break;
+                    }
+                }
+            }
+            //fields left out at the end are missing
+            for(int x = count;x<column_count;x++){
+                fields[x] = missing_value_designation;
+            }
+            return count > column_count ? Arrays.copyOf(fields,count) : fields;
+        }
+        /**
+         * @return the fields of a json object put in the order of the header, columns left out are missing
+         */
+        private String[] parseObject(){
+            expect('{');
+            String[] fields = new String[column_count];
+            Arrays.fill(fields,missing_value_designation);
+            skipWhitespace();
+            if(peek() == '}'){
+                this.position++;
+                return fields;
+            }
+            while(true){
+                skipWhitespace();
+                String name = parseString();
+                Integer column = column_indexes.get(name);
+                if(column == null){
+                    throw error("Unknown column " + name);
+                }
+                skipWhitespace();
+                expect(':');
+                fields[column] = parseValue();
+                if(!next()){
+                    expect('}');
+                    return fields;
+                }
+            }
+        }
+        /**
+         * @return the value as it would appear in a csv file, null being the missing value designation
+         */
+        private String parseValue(){
+            skipWhitespace();
+            char first = peek();
+            if(first == '"'){
+                return parseString();
+            }
+            if(first == '[' || first == '{'){
+                throw error("Nested values are not allowed in a row");
+            }
+            //numbers, true, false and null are taken as they are written
+            int start = this.position;
+            while(this.position < this.text.length() && ",]} \t\r\n".indexOf(this.text.charAt(this.position)) < 0){
+                this.position++;
+            }
+            if(start == this.position){
+                throw error("Expected a value");
+            }
+            String literal = this.text.substring(start,this.position);
+            return literal.equals("null") ? missing_value_designation : literal;
+        }
+        /**
+         * @return the contents of a json string, with escapes turned into what they stand for
+         */
+        private String parseString(){
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while(true){
+                if(this.position >= this.text.length()){
+                    throw error("Unterminated string");
+                }
+                char character = this.text.charAt(this.position++);
+                if(character == '"'){
+                    return value.toString();
+                }
+                if(character != '\\'){
+                    value.append(character);
+                    continue;
+                }
+                if(this.position >= this.text.length()){
+                    throw error("Unterminated string");
+                }
+                char escape = this.text.charAt(this.position++);
+                switch(escape){
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if(this.position + 4 > this.text.length()){
+                            throw error("Bad unicode escape");
+                        }
+                        try{
+                            String hex = this.text.substring(this.position,this.position + 4);
+                            value.append((char)Integer.parseInt(hex,16));
+                        }catch(NumberFormatException e){
+                            throw error("Bad unicode escape");
+                        }
+                        this.position += 4;
+                        break;
+                    default:
+                        //\" \\ and \/ stand for themselves
+                        value.append(escape);
+                }
+            }
+        }
+        /**
+         * Skip to past the next comma if there is one
+         * @return if there was a comma, meaning another value follows
+         */
+        private boolean next(){
+            skipWhitespace();
+            if(peek() == ','){
+                this.position++;
+                return true;
+            }
+            return false;
+        }
+        private void expect(char expected){
+            if(peek() != expected){
+                throw error("Expected " + expected);
+            }
+            this.position++;
+        }
+        /**
+         * @return the character at the current position, 0 at the end
+         */
+        private char peek(){
+            return this.position < this.text.length() ? this.text.charAt(this.position) : 0;
+        }
+        private void skipWhitespace(){
+            while(this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))){
+                this.position++;
+            }
+        }
+        private IllegalArgumentException error(String message){
+            return new IllegalArgumentException(message + " at position " + this.position + " of " + this.text);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package serving;
+
+import classifier.BatchScorer;
+import classifier.NaiveBayesModel;
+import data.ColumnInfo;
+import data.EncodedDataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the rows of concurrent requests into batches for a BatchScorer, so many small requests are scored a block
+ * at a time column by column instead of row by row. Request threads submit rows that are already encoded and wait,
+ * while a few batching threads take whatever is queued, up to a maximum amount of rows, score it as one dataset and
+ * hand each request its part of the predictions. A batching thread can wait a little for more requests to arrive,
+ * trading latency for bigger batches, or only take what is already queued
+ */
+public class MicroBatcher {
+    private final ColumnInfo[] columns;
+    private final int class_index;
+    private final int classes;
+    private final boolean[] gaussian;
+    private final String missing_value_designation;
+    private final int max_batch_rows;
+    private final long max_wait_nanos;
+    private final ServerStats stats;
+    private final BlockingQueue<Request> queue;
+    private final Thread[] threads;
+    private volatile boolean running;
+    /**
+     * Rows waiting to be scored, and once done their predictions
+     */
+    public static class Request {
+        private final int rows;
+        //row * columns + column, as written by Predictor.encode
+        private final int[] codes;
+        private final double[] values;
+        private final int[] predictions;
+        private final double[] posteriors;
+        private final CountDownLatch done;
+        private volatile RuntimeException failure;
+        private Request(int rows, int[] codes, double[] values, int classes, boolean posteriors){
+            this.rows = rows;
+            this.codes = codes;
+            this.values = values;
+            this.predictions = new int[rows];
+            this.posteriors = posteriors ? new double[rows * classes] : null;
+            this.done = new CountDownLatch(1);
+        }
+        /**
+         * Wait until the rows have been scored
+         * @return the predicted class code of each row
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public int[] await() throws InterruptedException{
+            this.done.await();
+            if(this.failure != null){
+                throw this.failure;
+            }
+            return this.predictions;
+        }
+        /**
+         * @return P(class|row) at row * classes + class, null if not asked for
+         */
+        public double[] getPosteriors(){
+            return this.posteriors;
+        }
+    }
+    /**
+     * @param model the model to score against
+     * @param missing_value_designation the value used to indicate a missing value
+     * @param batch_threads amount of threads scoring batches
+     * @param max_batch_rows stop adding requests to a batch once it has this many rows, a bigger request is scored
+     *                       on its own
+     * @param max_wait_nanos how long to wait for more requests once a batch has one, 0 to only take what is queued
+     * @param stats where to count batches
+     */
+    public MicroBatcher(NaiveBayesModel model, String missing_value_designation, int batch_threads,
+                        int max_batch_rows, long max_wait_nanos, ServerStats stats){
+        this.columns = model.getColumns();
+        this.class_index = model.getClassIndex();
+        this.classes = model.getClassCount();
+        this.gaussian = new boolean[this.columns.length];
+        for(int column = 0;column<this.columns.length;column++){
+            this.gaussian[column] = model.isGaussian(column);
+        }
+        this.missing_value_designation = missing_value_designation;
+        this.max_batch_rows = max_batch_rows;
+        this.max_wait_nanos = max_wait_nanos;
+        this.stats = stats;
+        this.queue = new LinkedBlockingQueue<>();
+        this.running = true;
+        this.threads = new Thread[batch_threads];
+        for(int x = 0;x<batch_threads;x++){
+            BatchScorer scorer = new BatchScorer(model);
+            this.threads[x] = new Thread(() -> run(scorer),"batcher-" + x);
+            this.threads[x].setDaemon(true);
+            this.threads[x].start();
+        }
+    }
+    /**
+     * Queue rows to be scored
+     * @param rows amount of rows
+     * @param codes code of each column of each row at row * columns + column
+     * @param values value of each gaussian column of each row in the same places as codes
+     * @param posteriors if the posteriors should be kept
+     * @return the request, to wait on
+     */
+    public Request submit(int rows, int[] codes, double[] values, boolean posteriors){
+        if(!this.running){
+            throw new IllegalStateException("The batcher has been shut down");
+        }
+        Request request = new Request(rows,codes,values,this.classes,posteriors);
+        this.queue.add(request);
+        //shut down in between, take the request back unless a batching thread or shutdown already has it
+        if(!this.running && this.queue.remove(request)){
+            throw new IllegalStateException("The batcher has been shut down");
+        }
+        return request;
+    }
+    /**
+     * Stop the batching threads, requests still queued are not scored and fail instead
+     */
+    public void shutdown(){
+        this.running = false;
+        for(Thread thread : this.threads){
+            thread.interrupt();
+        }
+        //nothing takes from the queue anymore, so fail what is left or its callers wait forever
+        List<Request> left = new ArrayList<>();
+        this.queue.drainTo(left);
+        fail(left,new IllegalStateException("The batcher has been shut down"));
+    }
+    /**
+     * Keep taking batches off the queue and scoring them until shut down
+     * @param scorer the scorer of this thread
+     */
+    private void run(BatchScorer scorer){
+        List<Request> batch = new ArrayList<>();
+        while(this.running){
+            batch.clear();
+            int rows;
+            try{
+                Request first = this.queue.take();
+                batch.add(first);
+                rows = first.rows;
+                long deadline = System.nanoTime() + this.max_wait_nanos;
+                while(rows < this.max_batch_rows){
+                    Request next = this.queue.poll(deadline - System.nanoTime(),TimeUnit.NANOSECONDS);
+                    if(next == null){
+                        break;
+                    }
+                    batch.add(next);
+                    rows += next.rows;
+                }
+            }catch(InterruptedException e){
+                //shut down, fail whatever was taken so nobody waits forever
+                fail(batch,new IllegalStateException("The batcher has been shut down"));
+                return;
+            }
+            try{
+                score(scorer,batch,rows);
+            }catch(RuntimeException e){
+                fail(batch,e);
+                continue;
+            }
+            for(Request request : batch){
+                request.done.countDown();
+            }
+        }
+    }
+    /**
+     * Score the rows of every request in the batch as one dataset
+     * @param scorer the scorer to use
+     * @param batch the requests
+     * @param rows total amount of rows in the requests
+     */
+    private void score(BatchScorer scorer, List<Request> batch, int rows){
+        int column_count = this.columns.length;
+        //lay the rows out column by column like every other dataset
+        int[] codes = new int[EncodedDataset.cellCount(rows,column_count)];
+        double[][] numeric = new double[column_count][];
+        for(int column = 0;column<column_count;column++){
+            if(this.gaussian[column]){
+                numeric[column] = new double[rows];
+            }
+        }
+        boolean posteriors = false;
+        int batch_row = 0;
+        for(Request request : batch){
+            for(int row = 0;row<request.rows;row++){
+                int row_start = row * column_count;
+                for(int column = 0;column<column_count;column++){
+                    codes[column * rows + batch_row] = request.codes[row_start + column];
+                    if(numeric[column] != null){
+                        numeric[column][batch_row] = request.values[row_start + column];
+                    }
+                }
+                batch_row++;
+            }
+            posteriors |= request.posteriors != null;
+        }
+        EncodedDataset data = new EncodedDataset(this.columns,this.class_index,rows,codes,numeric,
+                this.missing_value_designation);
+        int[] row_indexes = new int[rows];
+        for(int row = 0;row<rows;row++){
+            row_indexes[row] = row;
+        }
+        int[] predictions = new int[rows];
+        double[] batch_posteriors = posteriors ? new double[rows * this.classes] : null;
+        scorer.score(data,row_indexes,0,rows,predictions,batch_posteriors);
+        //hand each request its part
+        batch_row = 0;
+        for(Request request : batch){
+            System.arraycopy(predictions,batch_row,request.predictions,0,request.rows);
+            if(request.posteriors != null){
+                System.arraycopy(batch_posteriors,batch_row * this.classes,request.posteriors,0,
+                        request.rows * this.classes);
+            }
+            batch_row += request.rows;
+        }
+        this.stats.recordBatch(rows);
+    }
+    /**
+     * @param batch requests that could not be scored
+     * @param failure why
+     */
+    private static void fail(List<Request> batch, RuntimeException failure){
+        for(Request request : batch){
+            request.failure = failure;
+            request.done.countDown();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package serving;
+
+import classifier.ModelFile;
+import classifier.NaiveBayesModel;
+import classifier.Predictor;
+import data.EncodedDataset;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves a saved model over http on this machine. Endpoints:
+ * POST /score takes one or more rows, either csv lines or, with a json content type, one json row per line (see
+ * JsonRows), and answers with one line per row in the same format, holding the predicted class and with
+ * ?posteriors=true P(class|row) of every class. The class column is ignored, so it can be left out when it is last.
+ * GET /stats gives the counters of the server as json (see ServerStats).
+ * GET /health answers ok.
+ * A body bigger than the most a request may send (16 MiB unless set) is answered with 413 without being kept.
+ * Requests are handled by a fixed pool of threads, which encode their rows and hand them to a MicroBatcher, so
+ * concurrent requests get scored together
+ * Arguments: model file, missing value designation, port, then optionally request threads, batch threads, most rows
+ * in a batch and microseconds to wait for a batch to fill up
+ */
+public class ScoringServer {
+    private static final String JSON = "application/json";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+    private static final long DEFAULT_MAX_BODY_BYTES = 16L << 20;
+    private final Predictor predictor;
+    private final JsonRows json_rows;
+    private final MicroBatcher batcher;
+    private final ServerStats stats;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile long max_body_bytes;
+    /**
+     * @param model the model to serve
+     * @param missing_value_designation the value used to indicate a missing value
+     * @param port port to listen on, 0 for any free port
+     * @param request_threads amount of threads handling requests
+     * @param batch_threads amount of threads scoring batches
+     * @param max_batch_rows most rows to put in a batch
+     * @param max_wait_nanos how long to wait for a batch to fill up, 0 to only take requests already waiting
+     * @throws IOException if the port can't be listened on
+     */
+    public ScoringServer(NaiveBayesModel model, String missing_value_designation, int port, int request_threads,
+                         int batch_threads, int max_batch_rows, long max_wait_nanos) throws IOException{
+        this.predictor = new Predictor(model,missing_value_designation);
+        this.json_rows = new JsonRows(model.getColumns(),missing_value_designation);
+        this.stats = new ServerStats();
+        this.max_body_bytes = DEFAULT_MAX_BODY_BYTES;
+        this.batcher = new MicroBatcher(model,missing_value_designation,batch_threads,max_batch_rows,max_wait_nanos,
+                this.stats);
+        //only local, this is for scoring and load testing on one box
+        this.server = HttpServer.create(new InetSocketAddress("localhost",port),1024);
+        this.executor = Executors.newFixedThreadPool(request_threads);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/score",this::handleScore);
+        this.server.createContext("/stats",exchange -> respond(exchange,200,JSON,this.stats.toJson() + "\n"));
+        this.server.createContext("/health",exchange -> respond(exchange,200,"text/plain","ok\n"));
+    }
+    public static void main(String[] args) throws IOException{
+        if(args.length < 3 || args.length > 7){
+            System.err.println("Usage: ScoringServer model missing port [request threads] [batch threads] "
+                    + "[batch rows] [batch wait micros]");
+            System.exit(2);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        NaiveBayesModel model = ModelFile.read(Paths.get(args[0]));
+        int port = Integer.parseInt(args[2]);
+        int request_threads = args.length > 3 ? Integer.parseInt(args[3]) : cores * 4;
+        int batch_threads = args.length > 4 ? Integer.parseInt(args[4]) : Math.max(1,cores / 2);
+        int max_batch_rows = args.length > 5 ? Integer.parseInt(args[5]) : 1024;
+        long max_wait_nanos = args.length > 6 ? Long.parseLong(args[6]) * 1000 : 0;
+        ScoringServer server = new ScoringServer(model,args[1],port,request_threads,batch_threads,max_batch_rows,
+                max_wait_nanos);
+        server.start();
+        System.out.println("Serving on http://localhost:" + server.getPort());
+    }
+    public void start(){
+        this.server.start();
+    }
+    /**
+     * Stop taking requests, waiting a little for those being handled
+     */
+    public void stop(){
+        this.server.stop(1);
+        this.executor.shutdown();
+        try{
+            this.executor.awaitTermination(5,TimeUnit.SECONDS);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        this.batcher.shutdown();
+    }
+    /**
+     * @return the port being listened on, useful when started on port 0
+     */
+    public int getPort(){
+        return this.server.getAddress().getPort();
+    }
+    /**
+     * @param max_body_bytes the most bytes a request body may have, bigger ones are answered with 413
+     */
+    public void setMaxBodyBytes(long max_body_bytes){
+        this.max_body_bytes = max_body_bytes;
+    }
+    public ServerStats getStats(){
+        return this.stats;
+    }
+    /**
+     * Score the rows of a request
+     * @param exchange the request
+     * @throws IOException if the response can't be written
+     */
+    private void handleScore(HttpExchange exchange) throws IOException{
+        long start = System.nanoTime();
+        if(!exchange.getRequestMethod().equals("POST")){
+            respond(exchange,405,"text/plain","Use POST\n");
+            return;
+        }
+        String content_type = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean json = content_type != null && content_type.contains("json");
+        boolean posteriors = wantsPosteriors(exchange.getRequestURI());
+        String response;
+        int rows;
+        try{
+            String body = readBody(exchange,this.max_body_bytes);
+            if(body == null){
+                this.stats.recordError();
+                respond(exchange,413,"text/plain","The body is bigger than " + this.max_body_bytes + " bytes\n");
+                return;
+            }
+            List<String[]> fields = parseRows(body,json);
+            rows = fields.size();
+            response = score(fields,json,posteriors);
+        }catch(IllegalArgumentException e){
+            this.stats.recordError();
+            respond(exchange,400,"text/plain",e.getMessage() + "\n");
+            return;
+        }catch(InterruptedException | RuntimeException e){
+            this.stats.recordError();
+            respond(exchange,500,"text/plain",e.toString() + "\n");
+            return;
+        }
+        respond(exchange,200,json ? NDJSON : CSV,response);
+        this.stats.recordRequest(rows,System.nanoTime() - start);
+    }
+    /**
+     * @param body the body of a request
+     * @param json if the lines are json rather than csv
+     * @return the fields of each non empty line
+     * @throws IllegalArgumentException if a json line is malformed
+     */
+    private List<String[]> parseRows(String body, boolean json){
+        List<String[]> rows = new ArrayList<>();
+        int line_start = 0;
+        while(line_start < body.length()){
+            int line_end = body.indexOf('\n',line_start);
+            if(line_end < 0){
+                line_end = body.length();
+            }
+            String line = body.substring(line_start,line_end).trim();
+            line_start = line_end + 1;
+            if(line.isEmpty()){
+                continue;
+            }
+            rows.add(json ? this.json_rows.parse(line) : line.split(",",-1));
+        }
+        return rows;
+    }
+    /**
+     * Encode the rows, have them scored with the rows of other requests and write the predictions
+     * @param fields the fields of each row
+     * @param json if the response should be ndjson rather than csv
+     * @param posteriors if P(class|row) of every class should be in the response
+     * @return the response, one line per row
+     * @throws InterruptedException if interrupted while waiting on the batch
+     */
+    private String score(List<String[]> fields, boolean json, boolean posteriors) throws InterruptedException{
+        int rows = fields.size();
+        if(rows == 0){
+            return "";
+        }
+        int columns = this.predictor.getColumns().length;
+        int cells = EncodedDataset.cellCount(rows,columns);
+        int[] codes = new int[cells];
+        double[] values = new double[cells];
+        for(int row = 0;row<rows;row++){
+            this.predictor.encode(fields.get(row),codes,values,row * columns);
+        }
+        MicroBatcher.Request request = this.batcher.submit(rows,codes,values,posteriors);
+        int[] predictions = request.await();
+        double[] row_posteriors = request.getPosteriors();
+        int classes = this.predictor.getClassCount();
+        StringBuilder response = new StringBuilder();
+        for(int row = 0;row<rows;row++){
+            String class_name = this.predictor.className(predictions[row]);
+            if(json){
+                response.append("{\"class\":");
+                JsonRows.appendString(response,class_name);
+                if(posteriors){
+                    response.append(",\"posteriors\":{");
+                    for(int class_code = 0;class_code<classes;class_code++){
+                        if(class_code > 0){
+                            response.append(',');
+                        }
+                        JsonRows.appendString(response,this.predictor.className(class_code));
+                        response.append(':').append(row_posteriors[row * classes + class_code]);
+                    }
+                    response.append('}');
+                }
+                response.append('}');
+            }else{
+                response.append(class_name);
+                if(posteriors){
+                    for(int class_code = 0;class_code<classes;class_code++){
+                        response.append(',').append(row_posteriors[row * classes + class_code]);
+                    }
+                }
+            }
+            response.append('\n');
+        }
+        return response.toString();
+    }
+    /**
+     * @param uri the uri of the request
+     * @return if the query asks for posteriors=true
+     */
+    private static boolean wantsPosteriors(URI uri){
+        String query = uri.getQuery();
+        if(query == null){
+            return false;
+        }
+        for(String parameter : query.split("&")){
+            if(parameter.equals("posteriors=true") || parameter.equals("posteriors")){
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * @param exchange the request
+     * @param max_bytes the most bytes the body may have
+     * @return the body as text, null if it has more than max_bytes
+     * @throws IOException if the body can't be read
+     */
+    private static String readBody(HttpExchange exchange, long max_bytes) throws IOException{
+        //turn away a body that says it is too big before reading any of it
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if(length != null){
+            try{
+                if(Long.parseLong(length.trim()) > max_bytes){
+                    return null;
+                }
+            }catch(NumberFormatException e){
+                //leave it to the count below
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try(InputStream input = exchange.getRequestBody()){
+            while((read = input.read(buffer)) > 0){
+                if(body.size() + (long)read > max_bytes){
+                    return null;
+                }
+                body.write(buffer,0,read);
+            }
+        }
+        return new String(body.toByteArray(),StandardCharsets.UTF_8);
+    }
+    /**
+     * @param exchange the request to answer
+     * @param status the http status code
+     * @param content_type the content type of the response
+     * @param body the response
+     * @throws IOException if the response can't be written
+     */
+    private static void respond(HttpExchange exchange, int status, String content_type, String body)
+            throws IOException{
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",content_type + "; charset=utf-8");
+        exchange.sendResponseHeaders(status,bytes.length == 0 ? -1 : bytes.length);
+        try(OutputStream output = exchange.getResponseBody()){
+            output.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package serving;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a ScoringServer, updated by every request thread without locking. Latencies go into buckets by powers of
+ * two of microseconds, so percentiles are only known to within a factor of two, which is plenty to spot a slow tail
+ */
+public class ServerStats {
+    private static final int BUCKETS = 64;
+    private final long started;
+    private final LongAdder requests;
+    private final LongAdder rows;
+    private final LongAdder errors;
+    private final LongAdder batches;
+    private final LongAdder batched_rows;
+    private final LongAdder latency_nanos;
+    private final LongAccumulator max_latency_nanos;
+    //bucket b holds latencies of at least 2^(b-1) microseconds and less than 2^b microseconds
+    private final AtomicLongArray latency_buckets;
+    public ServerStats(){
+        this.started = System.nanoTime();
+        this.requests = new LongAdder();
+        this.rows = new LongAdder();
+        this.errors = new LongAdder();
+        this.batches = new LongAdder();
+        this.batched_rows = new LongAdder();
+        this.latency_nanos = new LongAdder();
+        this.max_latency_nanos = new LongAccumulator(Math::max,0);
+        this.latency_buckets = new AtomicLongArray(BUCKETS);
+    }
+    /**
+     * @param rows amount of rows the request scored
+     * @param nanos how long the request took, from reading it until the response was written
+     */
+    public void recordRequest(int rows, long nanos){
+        this.requests.increment();
+        this.rows.add(rows);
+        this.latency_nanos.add(nanos);
+        this.max_latency_nanos.accumulate(nanos);
+        long micros = nanos / 1000;
+        this.latency_buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(micros));
+    }
+    public void recordError(){
+        this.errors.increment();
+    }
+    /**
+     * @param rows amount of rows scored together in one batch
+     */
+    public void recordBatch(int rows){
+        this.batches.increment();
+        this.batched_rows.add(rows);
+    }
+    /**
+     * @return the counters as a json object
+     */
+    public String toJson(){
+        double seconds = (System.nanoTime() - this.started) / 1e9;
+        long request_count = this.requests.sum();
+        long row_count = this.rows.sum();
+        long batch_count = this.batches.sum();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"uptime_seconds\":").append(seconds);
+        json.append(",\"requests\":").append(request_count);
+        json.append(",\"rows\":").append(row_count);
+        json.append(",\"errors\":").append(this.errors.sum());
+        json.append(",\"batches\":").append(batch_count);
+        double rows_per_batch = batch_count == 0 ? 0 : (double)this.batched_rows.sum() / batch_count;
+        json.append(",\"rows_per_batch\":").append(rows_per_batch);
+        json.append(",\"requests_per_second\":").append(request_count / seconds);
+        json.append(",\"rows_per_second\":").append(row_count / seconds);
+        json.append(",\"latency_micros\":{\"mean\":");
+        json.append(request_count == 0 ? 0 : this.latency_nanos.sum() / 1000.0 / request_count);
+        json.append(",\"p50\":").append(percentile(0.5));
+        json.append(",\"p90\":").append(percentile(0.9));
+        json.append(",\"p99\":").append(percentile(0.99));
+        json.append(",\"max\":").append(this.max_latency_nanos.get() / 1000.0);
+        json.append("}}");
+        return json.toString();
+    }
+    /**
+     * @param fraction the fraction of requests that have to be at or below the latency, ex. 0.99
+     * @return upper bound of the bucket the percentile falls in, in microseconds
+     */
+    private long percentile(double fraction){
+        long total = 0;
+        for(int bucket = 0;bucket<BUCKETS;bucket++){
+            total += this.latency_buckets.get(bucket);
+        }
+        long needed = (long)Math.ceil(total * fraction);
+        long seen = 0;
+        for(int bucket = 0;bucket<BUCKETS;bucket++){
+            seen += this.latency_buckets.get(bucket);
+            if(seen >= needed && seen > 0){
+                return 1L << Math.min(bucket,62);
+            }
+        }
+        return 0;
+    }
+}
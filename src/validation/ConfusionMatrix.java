@@ -0,0 +1,72 @@
+package validation;
+
+/**
+ * Counts of how often each actual class was predicted as each class, actual * classes + predicted
+ */
+public class ConfusionMatrix {
+    private int classes;
+    private long[] counts;
+    /**
+     * @param classes amount of classes that can be predicted
+     */
+    public ConfusionMatrix(int classes){
+        this.classes = classes;
+        this.counts = new long[classes * classes];
+    }
+    /**
+     * @param actual the class the row really has
+     * @param predicted the class the row was predicted as
+     */
+    public void add(int actual, int predicted){
+        this.counts[actual * this.classes + predicted]++;
+    }
+    /**
+     * Add the counts of another matrix to this one
+     * @param other a matrix over the same classes
+     */
+    public void merge(ConfusionMatrix other){
+        for(int x = 0;x<this.counts.length;x++){
+            this.counts[x] += other.counts[x];
+        }
+    }
+    /**
+     * @param actual the class the row really has
+     * @param predicted the class the row was predicted as
+     * @return how many rows of the actual class were predicted as the predicted class
+     */
+    public long get(int actual, int predicted){
+        return this.counts[actual * this.classes + predicted];
+    }
+    public int getClassCount(){
+        return this.classes;
+    }
+    /**
+     * @return amount of rows classified right using 0-1 loss
+     */
+    public long getRight(){
+        long right = 0;
+        for(int x = 0;x<this.classes;x++){
+            right += this.counts[x * this.classes + x];
+        }
+        return right;
+    }
+    /**
+     * @return amount of rows classified wrong using 0-1 loss
+     */
+    public long getWrong(){
+        return getTotal() - getRight();
+    }
+    public long getTotal(){
+        long total = 0;
+        for(long count : this.counts){
+            total += count;
+        }
+        return total;
+    }
+    /**
+     * @return the fraction of rows classified right
+     */
+    public double getAccuracy(){
+        return (double)getRight() / getTotal();
+    }
+}
@@ -0,0 +1,277 @@
+package validation;
+
+import classifier.BatchScorer;
+import classifier.NaiveBayesModel;
+import classifier.NaiveBayesTrainer;
+import classifier.SparseNaiveBayesTrainer;
+import classifier.SparseScorer;
+import data.EncodedDataset;
+import data.SparseDataset;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs k fold cross validation, training and checking each fold at the same time on a fork join pool. Rows are never
+ * copied, FoldAssigner gives the fold of each row and every fold is a range of one shared order array over the dataset
+ */
+public class CrossValidator {
+    private int folds;
+    private ForkJoinPool pool;
+    private boolean incremental;
+    private int repeats;
+    private boolean skip_missing;
+    //where the fold split comes from, one stream that is never shared between threads
+    private SplittableRandom random;
+    /**
+     * @param folds amount of folds to split the data into
+     * @param pool the pool the folds are run on
+     */
+    public CrossValidator(int folds, ForkJoinPool pool){
+        this.folds = folds;
+        this.pool = pool;
+        this.incremental = false;
+        this.repeats = 1;
+        this.skip_missing = false;
+        this.random = new SplittableRandom();
+    }
+    /**
+     * In incremental mode every row is counted once into one global count, and each fold's training counts are the
+     * global count with the fold taken back out. This makes the counting O(rows) no matter how many folds there are,
+     * instead of O(folds * rows) when each fold counts its own training set
+     * @param incremental if incremental mode should be used
+     */
+    public void setIncremental(boolean incremental){
+        this.incremental = incremental;
+    }
+    /**
+     * @param seed seed of the shuffle that splits the rows into folds, so a run can be repeated exactly
+     */
+    public void setSeed(long seed){
+        this.random = new SplittableRandom(seed);
+    }
+    /**
+     * @param random where the shuffle that splits the rows into folds comes from, ex. a stream split off of one seeded
+     *               for a whole run
+     */
+    public void setRandom(SplittableRandom random){
+        this.random = random;
+    }
+    /**
+     * @param skip_missing if the fold models should leave missing cells out of the likelihood (see
+     *                     NaiveBayesTrainer.setSkipMissing) instead of treating them as a value of their own
+     */
+    public void setSkipMissing(boolean skip_missing){
+        this.skip_missing = skip_missing;
+    }
+    public int getFolds(){
+        return this.folds;
+    }
+    ForkJoinPool getPool(){
+        return this.pool;
+    }
+    /**
+     * @return a new stream split off of the one the folds come from, so whatever uses it is repeatable with the seed
+     */
+    SplittableRandom splitRandom(){
+        return this.random.split();
+    }
+    /**
+     * Repeated k fold cross validation splits the rows differently each repeat and adds every repeat's results
+     * together, which evens out how lucky a single split was
+     * @param repeats times to split the rows into folds (default 1)
+     */
+    public void setRepeats(int repeats){
+        this.repeats = repeats;
+    }
+    /**
+     * Cross validate a naive bayes classifier on a dataset
+     * @param data the dataset to use, it is only read
+     * @return the confusion matrix of every fold of every repeat added together
+     */
+    public ConfusionMatrix run(EncodedDataset data){
+        ArrayList<ForkJoinTask<ConfusionMatrix>> tasks = new ArrayList<>();
+        NaiveBayesTrainer global = null;
+        int[][] fold_of = new FoldAssigner(this.random).assignRepeatedFolds(data,this.folds,this.repeats);
+        for(int repeat = 0;repeat<this.repeats;repeat++){
+            //rows of fold x are order[fold_starts[x]] until order[fold_starts[x + 1]]
+            int[] fold_starts = new int[this.folds + 1];
+            int[] order = FoldAssigner.groupByFold(fold_of[repeat],this.folds,fold_starts);
+            //the global count is the same whichever way the rows are split
+            if(this.incremental && global == null){
+                global = countAll(data,order);
+            }
+            final NaiveBayesTrainer counts = global;
+            for(int fold = 0;fold<this.folds;fold++){
+                final int current = fold;
+                tasks.add(this.pool.submit(() -> check(trainFold(counts,data,order,fold_starts,current),data,order,
+                        fold_starts[current],fold_starts[current + 1])));
+            }
+        }
+        //merge in fold order so the result does not depend on which fold finished first
+        ConfusionMatrix total = new ConfusionMatrix(data.getClassCount());
+        for(ForkJoinTask<ConfusionMatrix> task : tasks){
+            total.merge(task.join());
+        }
+        return total;
+    }
+    /**
+     * Cross validate on the dataset stored sparsely (see SparseDataset.fromDense), so each fold only trains on and
+     * scores the cells that differ from their column's default. The rows are split the same way run splits them, and
+     * every fold counts its own training rows whether or not incremental mode is on
+     * @param data the dataset to use, it is only read
+     * @return the confusion matrix of every fold of every repeat added together
+     * @throws IllegalArgumentException if a column is gaussian, which has no codes to store
+     * @throws IllegalStateException if missing cells should be skipped, which the sparse trainer does not do
+     */
+    public ConfusionMatrix runSparse(EncodedDataset data){
+        if(this.skip_missing){
+            throw new IllegalStateException("Sparse datasets can't skip missing cells");
+        }
+        SparseDataset sparse = SparseDataset.fromDense(data);
+        ArrayList<ForkJoinTask<ConfusionMatrix>> tasks = new ArrayList<>();
+        int[][] fold_of = new FoldAssigner(this.random).assignRepeatedFolds(data,this.folds,this.repeats);
+        for(int repeat = 0;repeat<this.repeats;repeat++){
+            int[] fold_starts = new int[this.folds + 1];
+            int[] order = FoldAssigner.groupByFold(fold_of[repeat],this.folds,fold_starts);
+            for(int fold = 0;fold<this.folds;fold++){
+                final int start = fold_starts[fold];
+                final int end = fold_starts[fold + 1];
+                tasks.add(this.pool.submit(() -> {
+                    SparseNaiveBayesTrainer trainer = new SparseNaiveBayesTrainer(sparse);
+                    trainer.addRows(sparse,order,0,start);
+                    trainer.addRows(sparse,order,end,order.length);
+                    int[] predictions = new int[end - start];
+                    new SparseScorer(trainer.build()).score(sparse,order,start,end,predictions,null);
+                    ConfusionMatrix matrix = new ConfusionMatrix(sparse.getClassCount());
+                    for(int x = start;x<end;x++){
+                        matrix.add(sparse.classCode(order[x]),predictions[x - start]);
+                    }
+                    return matrix;
+                }));
+            }
+        }
+        ConfusionMatrix total = new ConfusionMatrix(data.getClassCount());
+        for(ForkJoinTask<ConfusionMatrix> task : tasks){
+            total.merge(task.join());
+        }
+        return total;
+    }
+    /**
+     * Train on a share of the rows and check how well the rest are classified, with the same share of each class on
+     * both sides
+     * @param data the dataset to use, it is only read
+     * @param test_fraction share of the rows to hold out for checking, between 0 and 1
+     * @return the confusion matrix of the held out rows
+     */
+    public ConfusionMatrix runHoldout(EncodedDataset data, double test_fraction){
+        int[] fold_of = new FoldAssigner(this.random).assignHoldout(data,test_fraction);
+        int[] fold_starts = new int[3];
+        int[] order = FoldAssigner.groupByFold(fold_of,2,fold_starts);
+        NaiveBayesTrainer trainer = new NaiveBayesTrainer(data);
+        trainer.addRows(data,order,0,fold_starts[1]);
+        trainer.setSkipMissing(this.skip_missing ? data.getMissingValueDesignation() : null);
+        return check(trainer.build(),data,order,fold_starts[1],fold_starts[2]);
+    }
+    /**
+     * Train the model of every fold at the same time, each on every row outside its fold
+     * @param data the dataset to use
+     * @param order rows of the dataset, grouped by fold
+     * @param fold_starts where each fold starts in order
+     * @return the model of each fold
+     */
+    NaiveBayesModel[] trainFolds(EncodedDataset data, int[] order, int[] fold_starts){
+        NaiveBayesTrainer global = this.incremental ? countAll(data,order) : null;
+        ArrayList<ForkJoinTask<NaiveBayesModel>> tasks = new ArrayList<>();
+        for(int fold = 0;fold<this.folds;fold++){
+            final int current = fold;
+            tasks.add(this.pool.submit(() -> trainFold(global,data,order,fold_starts,current)));
+        }
+        NaiveBayesModel[] models = new NaiveBayesModel[this.folds];
+        for(int fold = 0;fold<this.folds;fold++){
+            models[fold] = tasks.get(fold).join();
+        }
+        return models;
+    }
+    /**
+     * Train on every fold but one, either by counting the rows outside the fold or by taking the fold out of a copy of
+     * the global count
+     * @param global counts of every row, or null to count the training rows
+     * @param data the dataset to use
+     * @param order rows of the dataset, grouped by fold
+     * @param fold_starts where each fold starts in order
+     * @param fold the fold to leave out
+     * @return the model trained without the fold
+     */
+    private NaiveBayesModel trainFold(NaiveBayesTrainer global, EncodedDataset data, int[] order, int[] fold_starts,
+                                      int fold){
+        int start = fold_starts[fold];
+        int end = fold_starts[fold + 1];
+        NaiveBayesTrainer trainer;
+        if(global == null){
+            //the training set is everything before and after the fold
+            trainer = new NaiveBayesTrainer(data);
+            trainer.addRows(data,order,0,start);
+            trainer.addRows(data,order,end,order.length);
+        }else{
+            trainer = new NaiveBayesTrainer(global);
+            trainer.removeRows(data,order,start,end);
+        }
+        trainer.setSkipMissing(this.skip_missing ? data.getMissingValueDesignation() : null);
+        return trainer.build();
+    }
+    /**
+     * Count every row once, splitting the rows into one range per thread of the pool, each counted at the same time
+     * into its own trainer and then added together
+     * @param data the dataset to use
+     * @param order rows of the dataset
+     * @return a trainer holding the counts of every row
+     */
+    private NaiveBayesTrainer countAll(EncodedDataset data, int[] order){
+        int chunks = Math.max(1,Math.min(this.pool.getParallelism(),order.length));
+        ArrayList<ForkJoinTask<NaiveBayesTrainer>> tasks = new ArrayList<>();
+        for(int chunk = 0;chunk<chunks;chunk++){
+            final int start = (int)((long)order.length * chunk / chunks);
+            final int end = (int)((long)order.length * (chunk + 1) / chunks);
+            tasks.add(this.pool.submit(() -> {
+                NaiveBayesTrainer trainer = new NaiveBayesTrainer(data);
+                trainer.addRows(data,order,start,end);
+                return trainer;
+            }));
+        }
+        NaiveBayesTrainer global = new NaiveBayesTrainer(data);
+        for(ForkJoinTask<NaiveBayesTrainer> task : tasks){
+            global.merge(task.join());
+        }
+        return global;
+    }
+    /**
+     * @param model the model to check
+     * @param data the dataset holding the rows
+     * @param order rows of the dataset
+     * @param start first position in order to check
+     * @param end position in order to stop checking at (exclusive)
+     * @return the confusion matrix of the checked rows
+     */
+    static ConfusionMatrix check(NaiveBayesModel model, EncodedDataset data, int[] order, int start, int end){
+        int[] predictions = new int[end - start];
+        new BatchScorer(model).score(data,order,start,end,predictions,null);
+        ConfusionMatrix matrix = new ConfusionMatrix(data.getClassCount());
+        for(int x = start;x<end;x++){
+            matrix.add(data.classCode(order[x]),predictions[x - start]);
+        }
+        return matrix;
+    }
+    /**
+     * Split the rows into folds with close to the same amount of each class in every fold, see FoldAssigner
+     * @param data the dataset to split
+     * @param fold_starts filled in with where each fold starts in the returned order, and the end of the last fold
+     * @return every row of the dataset, grouped by fold
+     */
+    int[] splitIntoFolds(EncodedDataset data, int[] fold_starts){
+        int[] fold_of = new FoldAssigner(this.random).assignFolds(data,this.folds);
+        return FoldAssigner.groupByFold(fold_of,this.folds,fold_starts);
+    }
+}
@@ -0,0 +1,136 @@
+package validation;
+
+import data.EncodedDataset;
+
+import java.util.SplittableRandom;
+
+/**
+ * Assigns every row of a dataset to a fold, keeping close to the same share of each class in every fold (stratified).
+ * The rows of each class are shuffled once and then dealt out to the folds like cards, so an assignment takes O(rows)
+ * however many rows and folds there are. An assignment is an array holding the fold of each row, the rows themselves
+ * are never copied
+ */
+public class FoldAssigner {
+    private SplittableRandom random;
+    /**
+     * @param random where the shuffles come from, seed it to get the same folds every time
+     */
+    public FoldAssigner(SplittableRandom random){
+        this.random = random;
+    }
+    /**
+     * Split the rows into k folds
+     * @param data the dataset to split
+     * @param folds amount of folds
+     * @return the fold of each row
+     * @throws IllegalArgumentException if there are less than 2 folds
+     */
+    public int[] assignFolds(EncodedDataset data, int folds){
+        if(folds < 2){
+            throw new IllegalArgumentException("Need at least 2 folds, got " + folds);
+        }
+        int[] class_starts = new int[data.getClassCount() + 1];
+        int[] by_class = shuffleByClass(data,class_starts);
+        //deal the rows out, carrying on from the fold the last class stopped at so the folds stay the same size
+        int[] fold_of = new int[by_class.length];
+        int current_fold = 0;
+        for(int x = 0;x<by_class.length;x++){
+            fold_of[by_class[x]] = current_fold;
+            current_fold = current_fold + 1 == folds ? 0 : current_fold + 1;
+        }
+        return fold_of;
+    }
+    /**
+     * Split the rows into k folds several times over, each time shuffled differently (repeated k fold)
+     * @param data the dataset to split
+     * @param folds amount of folds
+     * @param repeats amount of times to split
+     * @return the fold of each row for each repeat
+     */
+    public int[][] assignRepeatedFolds(EncodedDataset data, int folds, int repeats){
+        int[][] fold_of = new int[repeats][];
+        for(int repeat = 0;repeat<repeats;repeat++){
+            fold_of[repeat] = assignFolds(data,folds);
+        }
+        return fold_of;
+    }
+    /**
+     * Split the rows into a training set (fold 0) and a test set (fold 1) with the same share of each class
+     * @param data the dataset to split
+     * @param test_fraction share of the rows that go in the test set, between 0 and 1
+     * @return the fold of each row, 0 to train on and 1 to test on
+     * @throws IllegalArgumentException if the fraction is not between 0 and 1
+     */
+    public int[] assignHoldout(EncodedDataset data, double test_fraction){
+        if(!(test_fraction > 0 && test_fraction < 1)){
+            throw new IllegalArgumentException("The test fraction has to be between 0 and 1, got " + test_fraction);
+        }
+        int[] class_starts = new int[data.getClassCount() + 1];
+        int[] by_class = shuffleByClass(data,class_starts);
+        int[] fold_of = new int[by_class.length];
+        for(int x = 0;x<class_starts.length - 1;x++){
+            //rounding where each class starts and ends keeps the total on the fraction, not just each class
+            int test_end = class_starts[x] + (int)Math.round(class_starts[x + 1] * test_fraction)
+                    - (int)Math.round(class_starts[x] * test_fraction);
+            for(int y = class_starts[x];y<test_end;y++){
+                fold_of[by_class[y]] = 1;
+            }
+        }
+        return fold_of;
+    }
+    /**
+     * Group the rows by fold with a counting sort, keeping the order they had within each fold
+     * @param fold_of the fold of each row
+     * @param folds amount of folds
+     * @param fold_starts filled in with where each fold starts in the returned order, and the end of the last fold,
+     *                    needs room for folds + 1
+     * @return every row, grouped by fold
+     */
+    public static int[] groupByFold(int[] fold_of, int folds, int[] fold_starts){
+        for(int x = 0;x<=folds;x++){
+            fold_starts[x] = 0;
+        }
+        for(int row = 0;row<fold_of.length;row++){
+            fold_starts[fold_of[row] + 1]++;
+        }
+        for(int x = 0;x<folds;x++){
+            fold_starts[x + 1] += fold_starts[x];
+        }
+        int[] order = new int[fold_of.length];
+        int[] next = fold_starts.clone();
+        for(int row = 0;row<fold_of.length;row++){
+            order[next[fold_of[row]]++] = row;
+        }
+        return order;
+    }
+    /**
+     * Group the rows by class with a counting sort, then shuffle each class (Fisher-Yates)
+     * @param data the dataset holding the rows
+     * @param class_starts filled in with where each class starts in the returned rows, and the end of the last class
+     * @return every row, grouped by class and shuffled within each class
+     */
+    private int[] shuffleByClass(EncodedDataset data, int[] class_starts){
+        int rows = data.getRows();
+        int classes = class_starts.length - 1;
+        for(int row = 0;row<rows;row++){
+            class_starts[data.classCode(row) + 1]++;
+        }
+        for(int x = 0;x<classes;x++){
+            class_starts[x + 1] += class_starts[x];
+        }
+        int[] by_class = new int[rows];
+        int[] next = class_starts.clone();
+        for(int row = 0;row<rows;row++){
+            by_class[next[data.classCode(row)]++] = row;
+        }
+        for(int x = 0;x<classes;x++){
+            for(int y = class_starts[x + 1] - 1;y>class_starts[x];y--){
+                int swap = class_starts[x] + this.random.nextInt(y - class_starts[x] + 1);
+                int held = by_class[y];
+                by_class[y] = by_class[swap];
+                by_class[swap] = held;
+            }
+        }
+        return by_class;
+    }
+}
@@ -0,0 +1,82 @@
+package validation;
+
+import data.ColumnInfo;
+
+/**
+ * How much the cross validated accuracy drops when each feature is shuffled, over several shuffles of each feature. A
+ * feature the classifier leans on drops a lot, one it ignores drops about nothing (or even goes up a little by chance)
+ */
+public class ImportanceReport {
+    private ColumnInfo[] columns;
+    private int class_index;
+    private int repeats;
+    private double baseline_accuracy;
+    //column -> mean and sample standard deviation of the drop in accuracy over the repeats, NaN for the class column
+    private double[] mean_drops;
+    private double[] drop_deviations;
+    /**
+     * @param columns the columns of the dataset
+     * @param class_index the index of the class column
+     * @param repeats times each feature was shuffled
+     * @param baseline_accuracy accuracy with nothing shuffled
+     * @param accuracies column * repeats + repeat -> accuracy with the column shuffled, the class column is skipped
+     */
+    ImportanceReport(ColumnInfo[] columns, int class_index, int repeats, double baseline_accuracy,
+                     double[] accuracies){
+        this.columns = columns;
+        this.class_index = class_index;
+        this.repeats = repeats;
+        this.baseline_accuracy = baseline_accuracy;
+        this.mean_drops = new double[columns.length];
+        this.drop_deviations = new double[columns.length];
+        for(int column = 0;column<columns.length;column++){
+            if(column == class_index){
+                this.mean_drops[column] = Double.NaN;
+                this.drop_deviations[column] = Double.NaN;
+                continue;
+            }
+            int start = column * repeats;
+            double total = 0;
+            for(int repeat = 0;repeat<repeats;repeat++){
+                total += baseline_accuracy - accuracies[start + repeat];
+            }
+            double mean = total / repeats;
+            double squares = 0;
+            for(int repeat = 0;repeat<repeats;repeat++){
+                double difference = baseline_accuracy - accuracies[start + repeat] - mean;
+                squares += difference * difference;
+            }
+            this.mean_drops[column] = mean;
+            this.drop_deviations[column] = repeats > 1 ? Math.sqrt(squares / (repeats - 1)) : 0;
+        }
+    }
+    /**
+     * @param column a column of the dataset
+     * @return the mean drop in accuracy when the column is shuffled, NaN for the class column
+     */
+    public double getMeanDrop(int column){
+        return this.mean_drops[column];
+    }
+    /**
+     * @param column a column of the dataset
+     * @return the sample standard deviation of the drop over the repeats, 0 with a single repeat
+     */
+    public double getDropDeviation(int column){
+        return this.drop_deviations[column];
+    }
+    public String getColumnName(int column){
+        return this.columns[column].getName();
+    }
+    public double getBaselineAccuracy(){
+        return this.baseline_accuracy;
+    }
+    public int getColumnCount(){
+        return this.columns.length;
+    }
+    public int getClassIndex(){
+        return this.class_index;
+    }
+    public int getRepeats(){
+        return this.repeats;
+    }
+}
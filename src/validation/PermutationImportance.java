@@ -0,0 +1,223 @@
+package validation;
+
+import classifier.BatchScorer;
+import classifier.NaiveBayesModel;
+import data.EncodedDataset;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Works out how much each feature matters by shuffling it in the held out folds and seeing how much the cross validated
+ * accuracy drops. The fold models are trained once and reused for every feature. Since naive bayes sums a log term per
+ * column, every held out row is scored once and a shuffled column only swaps its own term: the old value's log
+ * likelihood comes out of the row's scores and the new value's goes in. Each feature and repeat costs O(rows * classes)
+ * instead of rescoring every column, and they are spread over the pool, each thread reusing its own scratch space
+ */
+public class PermutationImportance {
+    private CrossValidator validator;
+    private int repeats;
+    //where the shuffles come from, null to carry on from the validator's stream once the folds are split
+    private SplittableRandom random;
+    /**
+     * @param validator splits the rows into folds and trains the fold models, on its pool
+     * @param repeats times to shuffle each feature
+     */
+    public PermutationImportance(CrossValidator validator, int repeats){
+        this.validator = validator;
+        this.repeats = repeats;
+        this.random = null;
+    }
+    /**
+     * By default the shuffles carry on from the validator's random stream, so seeding the validator seeds the whole run
+     * and the folds match a cross validation with the same seed
+     * @param seed seed of the shuffles, each feature and repeat shuffles with its own stream split off of it
+     */
+    public void setSeed(long seed){
+        this.random = new SplittableRandom(seed);
+    }
+    /**
+     * Shuffle every feature in turn and measure the drop in accuracy
+     * @param data the dataset to use, it is only read
+     * @return the drop in accuracy of every feature
+     */
+    public ImportanceReport run(EncodedDataset data){
+        ForkJoinPool pool = this.validator.getPool();
+        int folds = this.validator.getFolds();
+        int[] fold_starts = new int[folds + 1];
+        int[] order = this.validator.splitIntoFolds(data,fold_starts);
+        NaiveBayesModel[] models = this.validator.trainFolds(data,order,fold_starts);
+        SplittableRandom random = this.random != null ? this.random : this.validator.splitRandom();
+        int rows = order.length;
+        int classes = data.getClassCount();
+        //order position * classes + class -> log score of the row against the model of its fold
+        double[] log_scores = new double[rows * classes];
+        ArrayList<ForkJoinTask<?>> scoring = new ArrayList<>();
+        for(int fold = 0;fold<folds;fold++){
+            final int current = fold;
+            scoring.add(pool.submit(() -> new BatchScorer(models[current]).logScores(data,order,
+                    fold_starts[current],fold_starts[current + 1],log_scores,fold_starts[current] * classes)));
+        }
+        for(ForkJoinTask<?> task : scoring){
+            task.join();
+        }
+        int[] predictions = new int[rows];
+        int right = 0;
+        for(int x = 0;x<rows;x++){
+            predictions[x] = best(log_scores,x * classes,classes);
+            if(predictions[x] == data.classCode(order[x])){
+                right++;
+            }
+        }
+        //one job per feature and repeat, each with its own stream so the result does not depend on the threads
+        int columns = data.getColumnCount();
+        int class_index = data.getClassIndex();
+        int jobs = (columns - 1) * this.repeats;
+        int[] job_columns = new int[jobs];
+        SplittableRandom[] randoms = new SplittableRandom[jobs];
+        int job = 0;
+        for(int column = 0;column<columns;column++){
+            if(column == class_index){
+                continue;
+            }
+            for(int repeat = 0;repeat<this.repeats;repeat++){
+                job_columns[job] = column;
+                randoms[job++] = random.split();
+            }
+        }
+        double[] accuracies = new double[columns * this.repeats];
+        int largest_fold = 0;
+        for(int fold = 0;fold<folds;fold++){
+            largest_fold = Math.max(largest_fold,fold_starts[fold + 1] - fold_starts[fold]);
+        }
+        //a few chunks per thread so one slow chunk does not hold up the rest
+        int chunks = Math.max(1,Math.min(pool.getParallelism() * 4,jobs));
+        final int scratch_size = largest_fold;
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int chunk = 0;chunk<chunks;chunk++){
+            final int from = (int)((long)jobs * chunk / chunks);
+            final int to = (int)((long)jobs * (chunk + 1) / chunks);
+            tasks.add(pool.submit(() -> {
+                int[] shuffled_codes = new int[scratch_size];
+                double[] shuffled_values = new double[scratch_size];
+                for(int x = from;x<to;x++){
+                    int column = job_columns[x];
+                    int repeat = x % this.repeats;
+                    int shuffled_right = 0;
+                    for(int fold = 0;fold<folds;fold++){
+                        shuffled_right += checkShuffled(data,models[fold],order,fold_starts[fold],
+                                fold_starts[fold + 1],column,randoms[x],log_scores,predictions,shuffled_codes,
+                                shuffled_values);
+                    }
+                    accuracies[column * this.repeats + repeat] = (double)shuffled_right / rows;
+                }
+            }));
+        }
+        for(ForkJoinTask<?> task : tasks){
+            task.join();
+        }
+        return new ImportanceReport(data.getColumns(),class_index,this.repeats,(double)right / rows,accuracies);
+    }
+    /**
+     * Shuffle a column within one held out fold and count how many of the fold's rows are still classified right
+     * @param data the dataset to use
+     * @param model the model of the fold
+     * @param order rows of the dataset, grouped by fold
+     * @param start where the fold starts in order
+     * @param end where the fold ends in order (exclusive)
+     * @param column the column to shuffle
+     * @param random where the shuffle comes from
+     * @param log_scores log scores of every row with nothing shuffled, by order position
+     * @param predictions predicted class of every row with nothing shuffled, by order position
+     * @param shuffled_codes scratch space for the shuffled codes, at least as long as the fold
+     * @param shuffled_values scratch space for the shuffled values of a gaussian column, at least as long as the fold
+     * @return amount of the fold's rows classified right with the column shuffled
+     */
+    private static int checkShuffled(EncodedDataset data, NaiveBayesModel model, int[] order, int start, int end,
+                                     int column, SplittableRandom random, double[] log_scores, int[] predictions,
+                                     int[] shuffled_codes, double[] shuffled_values){
+        int classes = model.getClassCount();
+        int length = end - start;
+        boolean gaussian = model.isGaussian(column);
+        int[] codes = data.getCodes();
+        int offset = data.columnOffset(column);
+        double[] values = data.getNumeric(column);
+        //copy the fold's cells of the column, then shuffle the copy (Fisher-Yates) so the dataset is never touched
+        for(int x = 0;x<length;x++){
+            if(gaussian){
+                shuffled_values[x] = values[order[start + x]];
+            }else{
+                shuffled_codes[x] = codes[offset + order[start + x]];
+            }
+        }
+        for(int x = length - 1;x>0;x--){
+            int swap = random.nextInt(x + 1);
+            if(gaussian){
+                double held = shuffled_values[x];
+                shuffled_values[x] = shuffled_values[swap];
+                shuffled_values[swap] = held;
+            }else{
+                int held = shuffled_codes[x];
+                shuffled_codes[x] = shuffled_codes[swap];
+                shuffled_codes[swap] = held;
+            }
+        }
+        int right = 0;
+        for(int x = start;x<end;x++){
+            int row = order[x];
+            int old_code = gaussian ? 0 : codes[offset + row];
+            int new_code = gaussian ? 0 : shuffled_codes[x - start];
+            double old_value = gaussian ? values[row] : 0;
+            double new_value = gaussian ? shuffled_values[x - start] : 0;
+            int prediction = predictions[x];
+            //a row that kept its value keeps its prediction
+            if(old_code != new_code || Double.compare(old_value,new_value) != 0){
+                prediction = 0;
+                double best_score = Double.NEGATIVE_INFINITY;
+                for(int class_code = 0;class_code<classes;class_code++){
+                    double score = log_scores[x * classes + class_code]
+                            - logTerm(model,column,gaussian,old_code,old_value,class_code)
+                            + logTerm(model,column,gaussian,new_code,new_value,class_code);
+                    if(score > best_score){
+                        best_score = score;
+                        prediction = class_code;
+                    }
+                }
+            }
+            if(prediction == data.classCode(row)){
+                right++;
+            }
+        }
+        return right;
+    }
+    /**
+     * @param model the model of the fold
+     * @param column the column of the cell
+     * @param gaussian if the column is gaussian
+     * @param code the code of the cell, read if the column is not gaussian
+     * @param value the value of the cell, read if the column is gaussian
+     * @param class_code the code of the class
+     * @return what the cell adds to the log score of the class
+     */
+    private static double logTerm(NaiveBayesModel model, int column, boolean gaussian, int code, double value,
+                                  int class_code){
+        return gaussian ? model.logDensity(column,value,class_code) : model.logLikelihood(column,code,class_code);
+    }
+    /**
+     * @param scores log scores of a row
+     * @param start where the row's scores start
+     * @param classes amount of classes
+     * @return the class with the highest score, the first one on a tie like BatchScorer
+     */
+    private static int best(double[] scores, int start, int classes){
+        int best = 0;
+        for(int class_code = 1;class_code<classes;class_code++){
+            if(scores[start + class_code] > scores[start + best]){
+                best = class_code;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,77 @@
+package classifier;
+
+import data.DatasetEncoder;
+import data.EncodedDataset;
+import data.SparseDataset;
+import org.junit.Test;
+import util.FileReader;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A dense dataset stored sparsely has to score the same as it does dense, since the sparse model is the dense one with
+ * each feature's default folded into the all defaults score
+ */
+public class SparseScorerTest {
+    //bundled dataset -> its missing value designation
+    private static final String[][] DATASETS = {
+            {"data/voting-records/house-votes-84.csv",""},
+            {"data/breast-cancer/breast-cancer-wisconsin.csv","?"},
+            {"data/glass/glass.csv","?"},
+            {"data/iris/iris.csv","?"},
+            {"data/soybean/soybean-small.csv","?"}
+    };
+    @Test
+    public void sparsePosteriorsMatchDense(){
+        for(String[] dataset : DATASETS){
+            ArrayList<String> lines = new FileReader(getClass().getClassLoader().getResourceAsStream(dataset[0]))
+                    .getFileContentsAsArrayList();
+            EncodedDataset data = DatasetEncoder.encode(lines,dataset[1],1);
+            data.imputeMissing();
+            data.binContinuousValues();
+            NaiveBayesTrainer dense_trainer = new NaiveBayesTrainer(data);
+            dense_trainer.addAll(data);
+            SparseDataset sparse = SparseDataset.fromDense(data);
+            SparseNaiveBayesTrainer sparse_trainer = new SparseNaiveBayesTrainer(sparse);
+            sparse_trainer.addAll(sparse);
+            int rows = data.getRows();
+            int classes = data.getClassCount();
+            int[] order = new int[rows];
+            for(int row = 0;row<rows;row++){
+                order[row] = row;
+            }
+            int[] dense_predictions = new int[rows];
+            double[] dense_posteriors = new double[rows * classes];
+            new BatchScorer(dense_trainer.build()).score(data,order,0,rows,dense_predictions,dense_posteriors);
+            int[] sparse_predictions = new int[rows];
+            double[] sparse_posteriors = new double[rows * classes];
+            new SparseScorer(sparse_trainer.build()).score(sparse,order,0,rows,sparse_predictions,sparse_posteriors);
+            for(int x = 0;x<rows * classes;x++){
+                assertEquals(dataset[0],dense_posteriors[x],sparse_posteriors[x],1e-14);
+            }
+            for(int row = 0;row<rows;row++){
+                //a tie within rounding could go either way, the posteriors above already agree
+                int dense = dense_predictions[row];
+                int sparse_prediction = sparse_predictions[row];
+                assertEquals(dataset[0],dense_posteriors[row * classes + dense],
+                        dense_posteriors[row * classes + sparse_prediction],1e-14);
+            }
+        }
+    }
+    @Test
+    public void posteriorsAddUpToOneWithoutOverflowing(){
+        //scores far below what exp can hold on their own
+        double[] scores = {-2000,-2001,-2003};
+        double[] posteriors = new double[3];
+        assertEquals(0,Posteriors.finish(scores,0,3,posteriors,0));
+        assertEquals(1.0,posteriors[0] + posteriors[1] + posteriors[2],1e-15);
+        assertEquals(Math.exp(-1) * posteriors[0],posteriors[1],1e-15);
+        //in place, at an offset
+        double[] in_place = {7,-1,-2,-3};
+        assertEquals(0,Posteriors.finish(in_place,1,3,in_place,1));
+        assertEquals(7,in_place[0],0);
+        assertEquals(1.0,in_place[1] + in_place[2] + in_place[3],1e-15);
+    }
+}